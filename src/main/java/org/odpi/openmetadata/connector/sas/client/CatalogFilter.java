@@ -0,0 +1,372 @@
+//---------------------------------------------------------------------------
+// Copyright (c) 2020, SAS Institute Inc., Cary, NC, USA.  All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+//---------------------------------------------------------------------------
+
+package org.odpi.openmetadata.connector.sas.client;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * A SAS Catalog filter expression, e.g. {@code and(eq(type,"table"),contains(name,"sales"))}.
+ *
+ * Filters are immutable trees, and are always kept in a canonical form: nested {@code and} and {@code or} operands are
+ * flattened into a single n-ary operation, operands and {@code in} values are de-duplicated and sorted, and an
+ * {@code in} with a single value becomes {@code eq}.  Equivalent filters therefore serialize to the same string, which
+ * can be used to identify the query.  String values are always double quoted, with quotes and backslashes escaped.
+ */
+public abstract class CatalogFilter {
+
+    /**
+     * The longest filter to send in a single request, to keep the request URL within server limits.
+     */
+    public static final int MAX_LENGTH = 1500;
+
+    public static final String EQ = "eq";
+    public static final String CONTAINS = "contains";
+    public static final String STARTS_WITH = "startsWith";
+    public static final String ENDS_WITH = "endsWith";
+    public static final String IN = "in";
+    public static final String AND = "and";
+    public static final String OR = "or";
+
+    private final String operator;
+    private final String serialized;
+
+    private CatalogFilter(String operator, String serialized) {
+        this.operator = operator;
+        this.serialized = serialized;
+    }
+
+    /**
+     * @return a filter matching instances whose field equals the value
+     */
+    public static CatalogFilter eq(String field, String value) {
+        return new Comparison(EQ, field, Collections.singletonList(value));
+    }
+
+    /**
+     * @return a filter matching instances whose field contains the value
+     */
+    public static CatalogFilter contains(String field, String value) {
+        return new Comparison(CONTAINS, field, Collections.singletonList(value));
+    }
+
+    /**
+     * @return a filter matching instances whose field starts with the value
+     */
+    public static CatalogFilter startsWith(String field, String value) {
+        return new Comparison(STARTS_WITH, field, Collections.singletonList(value));
+    }
+
+    /**
+     * @return a filter matching instances whose field ends with the value
+     */
+    public static CatalogFilter endsWith(String field, String value) {
+        return new Comparison(ENDS_WITH, field, Collections.singletonList(value));
+    }
+
+    /**
+     * @return a filter matching instances whose field equals any of the values (which must not be empty)
+     */
+    public static CatalogFilter in(String field, Collection<String> values) {
+        TreeSet<String> distinct = new TreeSet<>();
+        for (String value : values) {
+            if (value != null) {
+                distinct.add(value);
+            }
+        }
+        if (distinct.isEmpty()) {
+            throw new IllegalArgumentException("An in() filter needs at least one value.");
+        }
+        return distinct.size() == 1 ? eq(field, distinct.first()) : new Comparison(IN, field, new ArrayList<>(distinct));
+    }
+
+    /**
+     * @return a filter matching instances that match every operand, or null if there are no operands
+     */
+    public static CatalogFilter and(CatalogFilter... operands) {
+        return and(Arrays.asList(operands));
+    }
+
+    /**
+     * @return a filter matching instances that match every operand, or null if there are no operands
+     */
+    public static CatalogFilter and(Collection<CatalogFilter> operands) {
+        return junction(AND, operands);
+    }
+
+    /**
+     * @return a filter matching instances that match any operand, or null if there are no operands
+     */
+    public static CatalogFilter or(CatalogFilter... operands) {
+        return or(Arrays.asList(operands));
+    }
+
+    /**
+     * @return a filter matching instances that match any operand, or null if there are no operands
+     */
+    public static CatalogFilter or(Collection<CatalogFilter> operands) {
+        return junction(OR, operands);
+    }
+
+    private static CatalogFilter junction(String operator, Collection<CatalogFilter> operands) {
+        // Keyed by serialized form, which both de-duplicates and orders the operands
+        TreeMap<String, CatalogFilter> flattened = new TreeMap<>();
+        for (CatalogFilter operand : operands) {
+            if (operand == null) {
+                continue;
+            }
+            if (operand.operator.equals(operator)) {
+                for (CatalogFilter nested : operand.getOperands()) {
+                    flattened.put(nested.serialized, nested);
+                }
+            } else {
+                flattened.put(operand.serialized, operand);
+            }
+        }
+        if (flattened.isEmpty()) {
+            return null;
+        }
+        if (flattened.size() == 1) {
+            return flattened.firstEntry().getValue();
+        }
+        return new Junction(operator, new ArrayList<>(flattened.values()));
+    }
+
+    /**
+     * @return the operation of this filter: eq, contains, startsWith, endsWith, in, and or or
+     */
+    public String getOperator() {
+        return operator;
+    }
+
+    /**
+     * @return the field compared, or null for and and or
+     */
+    public String getField() {
+        return null;
+    }
+
+    /**
+     * @return the values compared against, or an empty list for and and or
+     */
+    public List<String> getValues() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * @return the operands of and and or, or an empty list for comparisons
+     */
+    public List<CatalogFilter> getOperands() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * @return the length of the filter once serialized
+     */
+    public int length() {
+        return serialized.length();
+    }
+
+    /**
+     * Split the filter into filters of at most maxLength characters, such that an instance matches this filter if
+     * and only if it matches one of them.  An {@code in} is split into several, an {@code or} into groups of its
+     * operands, and an {@code and} by splitting its longest operand.  Instances may match more than one of the
+     * resulting filters when an {@code or} is split, so results should be de-duplicated.  A filter that cannot be
+     * split any further is returned as it is, even if too long.
+     *
+     * @param maxLength the maximum length of each filter
+     * @return the filters, in canonical order
+     */
+    public List<CatalogFilter> split(int maxLength) {
+        if (length() <= maxLength) {
+            return Collections.singletonList(this);
+        }
+        return splitTooLong(maxLength);
+    }
+
+    abstract List<CatalogFilter> splitTooLong(int maxLength);
+
+    /**
+     * @return the filter in its canonical form, as sent to Catalog
+     */
+    @Override
+    public String toString() {
+        return serialized;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || (o instanceof CatalogFilter && serialized.equals(((CatalogFilter) o).serialized));
+    }
+
+    @Override
+    public int hashCode() {
+        return serialized.hashCode();
+    }
+
+    /**
+     * @return the value as a Catalog string literal
+     */
+    static String quote(String value) {
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\');
+            }
+            quoted.append(c);
+        }
+        return quoted.append('"').toString();
+    }
+
+    /**
+     * A comparison of a single field: eq, contains, startsWith, endsWith or in.
+     */
+    private static final class Comparison extends CatalogFilter {
+        private final String field;
+        private final List<String> values;
+
+        private Comparison(String operator, String field, List<String> values) {
+            super(operator, serialize(operator, field, values));
+            this.field = field;
+            this.values = Collections.unmodifiableList(values);
+        }
+
+        private static String serialize(String operator, String field, List<String> values) {
+            StringBuilder filter = new StringBuilder(operator).append('(').append(field);
+            for (String value : values) {
+                filter.append(',').append(quote(Objects.toString(value)));
+            }
+            return filter.append(')').toString();
+        }
+
+        @Override
+        public String getField() {
+            return field;
+        }
+
+        @Override
+        public List<String> getValues() {
+            return values;
+        }
+
+        @Override
+        List<CatalogFilter> splitTooLong(int maxLength) {
+            if (!getOperator().equals(IN)) {
+                return Collections.singletonList(this);
+            }
+            int overhead = IN.length() + field.length() + 2;
+            List<CatalogFilter> parts = new ArrayList<>();
+            List<String> chunk = new ArrayList<>();
+            int length = overhead;
+            for (String value : values) {
+                int valueLength = quote(value).length() + 1;
+                if (!chunk.isEmpty() && length + valueLength > maxLength) {
+                    parts.add(in(field, chunk));
+                    chunk = new ArrayList<>();
+                    length = overhead;
+                }
+                chunk.add(value);
+                length += valueLength;
+            }
+            parts.add(in(field, chunk));
+            return parts;
+        }
+    }
+
+    /**
+     * An and or or of two or more operands.
+     */
+    private static final class Junction extends CatalogFilter {
+        private final List<CatalogFilter> operands;
+
+        private Junction(String operator, List<CatalogFilter> operands) {
+            super(operator, serialize(operator, operands));
+            this.operands = Collections.unmodifiableList(operands);
+        }
+
+        private static String serialize(String operator, List<CatalogFilter> operands) {
+            int length = operator.length() + operands.size() + 1;
+            for (CatalogFilter operand : operands) {
+                length += operand.length();
+            }
+            StringBuilder filter = new StringBuilder(length).append(operator).append('(');
+            for (int i = 0; i < operands.size(); i++) {
+                if (i > 0) {
+                    filter.append(',');
+                }
+                filter.append(operands.get(i).serialized);
+            }
+            return filter.append(')').toString();
+        }
+
+        @Override
+        public List<CatalogFilter> getOperands() {
+            return operands;
+        }
+
+        @Override
+        List<CatalogFilter> splitTooLong(int maxLength) {
+            return getOperator().equals(OR) ? splitOr(maxLength) : splitAnd(maxLength);
+        }
+
+        private List<CatalogFilter> splitOr(int maxLength) {
+            // Each operand (split further if need be) is a disjunct; pack as many as fit into each or()
+            List<CatalogFilter> disjuncts = new ArrayList<>();
+            for (CatalogFilter operand : operands) {
+                disjuncts.addAll(operand.split(maxLength - OR.length() - 2));
+            }
+            List<CatalogFilter> parts = new ArrayList<>();
+            List<CatalogFilter> group = new ArrayList<>();
+            int length = OR.length() + 1;
+            for (CatalogFilter disjunct : disjuncts) {
+                if (!group.isEmpty() && length + disjunct.length() + 1 > maxLength) {
+                    parts.add(or(group));
+                    group = new ArrayList<>();
+                    length = OR.length() + 1;
+                }
+                group.add(disjunct);
+                length += disjunct.length() + 1;
+            }
+            parts.add(or(group));
+            return parts;
+        }
+
+        private List<CatalogFilter> splitAnd(int maxLength) {
+            // Split the longest operand that can be split, keeping the others in every part
+            CatalogFilter longest = null;
+            for (CatalogFilter operand : operands) {
+                if ((operand.getOperator().equals(IN) || operand.getOperator().equals(OR))
+                        && (longest == null || operand.length() > longest.length())) {
+                    longest = operand;
+                }
+            }
+            if (longest == null) {
+                return Collections.singletonList(this);
+            }
+            List<CatalogFilter> operandParts = longest.split(Math.max(1, maxLength - (length() - longest.length())));
+            if (operandParts.size() < 2) {
+                return Collections.singletonList(this);
+            }
+            List<CatalogFilter> others = new ArrayList<>(operands);
+            others.remove(longest);
+            List<CatalogFilter> parts = new ArrayList<>();
+            for (CatalogFilter operandPart : operandParts) {
+                List<CatalogFilter> conjuncts = new ArrayList<>(others);
+                conjuncts.add(operandPart);
+                // Another operand may still be too long
+                parts.addAll(and(conjuncts).split(maxLength));
+            }
+            return parts;
+        }
+    }
+}
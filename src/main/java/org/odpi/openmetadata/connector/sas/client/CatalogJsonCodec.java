@@ -0,0 +1,140 @@
+//---------------------------------------------------------------------------
+// Copyright (c) 2020, SAS Institute Inc., Cary, NC, USA.  All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+//---------------------------------------------------------------------------
+
+package org.odpi.openmetadata.connector.sas.client;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.ToNumberPolicy;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Map;
+
+/**
+ * Decodes SAS Catalog responses.
+ *
+ * Collection responses are read token by token: each entry of {@code items} is decoded on its own and handed to an
+ * {@link ItemHandler} before the next is read, so a large page is never held in memory as a whole.  Whole numbers
+ * are decoded as {@code Long} and everything else as {@code Double}.
+ *
+ * Instances are stateless and safe to share between threads.
+ */
+final class CatalogJsonCodec {
+
+    static final CatalogJsonCodec INSTANCE = new CatalogJsonCodec();
+
+    private final TypeAdapter<Map> mapAdapter;
+
+    private CatalogJsonCodec() {
+        Gson gson = new GsonBuilder()
+                .setObjectToNumberStrategy(ToNumberPolicy.LONG_OR_DOUBLE)
+                .create();
+        this.mapAdapter = gson.getAdapter(Map.class);
+    }
+
+    @FunctionalInterface
+    interface ItemHandler {
+        void accept(Map<String, Object> item) throws Exception;
+    }
+
+    /**
+     * Decode a single JSON object, e.g. an instance, a definition or a token response.
+     */
+    Map readObject(Reader reader) throws IOException {
+        return mapAdapter.read(new JsonReader(reader));
+    }
+
+    /**
+     * Stream a collection response, passing each item to the handler as soon as it has been decoded.
+     *
+     * @param reader the response body
+     * @param handler receives each entry of {@code items}, in order
+     * @return the paging information of the collection
+     * @throws IOException if the response is not a collection (e.g. an error), so that it cannot pass for an empty one
+     */
+    Page readPage(Reader reader, ItemHandler handler) throws Exception {
+        Page page = new Page();
+        boolean collection = false;
+        JsonReader json = new JsonReader(reader);
+        json.beginObject();
+        while (json.hasNext()) {
+            String name = json.nextName();
+            if (name.equals("items")) {
+                collection = true;
+                if (json.peek() != JsonToken.BEGIN_ARRAY) {
+                    json.skipValue();
+                    continue;
+                }
+                json.beginArray();
+                while (json.hasNext()) {
+                    handler.accept((Map<String, Object>) mapAdapter.read(json));
+                    page.itemCount++;
+                }
+                json.endArray();
+            } else if (name.equals("count")) {
+                page.count = readLong(json);
+            } else if (name.equals("start")) {
+                page.start = readLong(json);
+            } else if (name.equals("limit")) {
+                page.limit = readLong(json);
+            } else {
+                json.skipValue();
+            }
+        }
+        json.endObject();
+        if (!collection) {
+            throw new IOException("Catalog response is not a collection.");
+        }
+        return page;
+    }
+
+    private static long readLong(JsonReader json) throws IOException {
+        if (json.peek() == JsonToken.NUMBER) {
+            return (long) json.nextDouble();
+        }
+        json.skipValue();
+        return -1;
+    }
+
+    /**
+     * Paging information of a collection response.  Values missing from the response are -1.
+     */
+    static final class Page {
+        private long count = -1;
+        private long start = -1;
+        private long limit = -1;
+        private int itemCount;
+
+        Page() {
+        }
+
+        Page(long count, long start, long limit, int itemCount) {
+            this.count = count;
+            this.start = start;
+            this.limit = limit;
+            this.itemCount = itemCount;
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        long getStart() {
+            return start;
+        }
+
+        long getLimit() {
+            return limit;
+        }
+
+        int getItemCount() {
+            return itemCount;
+        }
+    }
+}
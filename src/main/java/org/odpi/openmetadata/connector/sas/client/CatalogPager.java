@@ -0,0 +1,358 @@
+//---------------------------------------------------------------------------
+// Copyright (c) 2020, SAS Institute Inc., Cary, NC, USA.  All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+//---------------------------------------------------------------------------
+
+package org.odpi.openmetadata.connector.sas.client;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Iterates over a Catalog listing, requesting pages only as the caller consumes them.
+ *
+ * The window to return is given as a start position and a maximum number of results.  When every item Catalog
+ * returns is passed on (there is no filtering after the fact), the window is handed to Catalog as its start and limit
+ * parameters.  Otherwise pages are read from the beginning and the skipping is done here, after filtering.
+ *
+ * With a non-blocking fetcher, {@link #prefetch()} sends the request for the next page straight away, so that several
+ * pagers can wait on Catalog at the same time.  A {@link ListingObserver} can be told about each page as it is read.
+ *
+ * {@link #getResumePoint()} gives the position in the listing after the results read so far, from which a later pager
+ * over the same listing can carry on with {@link #resumeFrom(ResumePoint)}, rather than reading (and filtering) every
+ * page before it again.
+ *
+ * A listing asked for in full can be capped with {@link #limitTo(long)}, so that a broad search never reads the whole
+ * of a large catalog; reaching the cap is logged, as the results are then incomplete.
+ *
+ * @param <T> the type of result
+ */
+public class CatalogPager<T> implements Iterator<T> {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogPager.class);
+
+    /**
+     * Retrieves one page of a listing.
+     */
+    @FunctionalInterface
+    interface PageFetcher<T> {
+        /**
+         * @param start the position in Catalog's results of the first item to retrieve
+         * @param limit the number of items to retrieve
+         * @param sink receives the results for the page, in order
+         * @return the paging information of the page
+         */
+        CatalogJsonCodec.Page fetch(long start, int limit, Consumer<T> sink) throws Exception;
+    }
+
+    /**
+     * Retrieves one page of a listing without blocking.
+     */
+    @FunctionalInterface
+    interface AsyncPageFetcher<T> {
+        /**
+         * @param start the position in Catalog's results of the first item to retrieve
+         * @param limit the number of items to retrieve
+         * @return the results for the page, in order, with its paging information
+         */
+        CompletableFuture<FetchedPage<T>> fetch(long start, int limit);
+    }
+
+    /**
+     * The results of one page, and its paging information.
+     */
+    static final class FetchedPage<T> {
+        private final CatalogJsonCodec.Page page;
+        private final List<T> results;
+
+        FetchedPage(CatalogJsonCodec.Page page, List<T> results) {
+            this.page = page;
+            this.results = results;
+        }
+
+        CatalogJsonCodec.Page getPage() {
+            return page;
+        }
+
+        List<T> getResults() {
+            return results;
+        }
+    }
+
+    /**
+     * A position in a listing: the start of a page in Catalog's results, and the number of results (those that pass
+     * any filtering) to skip from there.
+     */
+    public static final class ResumePoint {
+        /**
+         * The end of a listing.
+         */
+        public static final ResumePoint END = new ResumePoint(-1, 0);
+
+        private final long start;
+        private final long skip;
+
+        ResumePoint(long start, long skip) {
+            this.start = start;
+            this.skip = skip;
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        public long getSkip() {
+            return skip;
+        }
+
+        public boolean isEnd() {
+            return start < 0;
+        }
+
+        @Override
+        public String toString() {
+            return isEnd() ? "ResumePoint{end}" : "ResumePoint{start=" + start + ", skip=" + skip + '}';
+        }
+    }
+
+    private final PageFetcher<T> fetcher;
+    private final AsyncPageFetcher<T> asyncFetcher;
+    private final int pageSize;
+    private final boolean filtered;
+    private final Deque<T> buffer = new ArrayDeque<>();
+
+    private long nextStart;
+    private long toSkip;
+    private long remaining;
+    private boolean exhausted;
+    private int pagesFetched;
+    private CompletableFuture<FetchedPage<T>> pending;
+    private int pendingLimit;
+    private ListingObserver observer;
+    // The page the buffered results came from, and how many of its results have been skipped or read
+    private long pageStart;
+    private long pageResultsUsed;
+    // The most results read when the window asked for all of them, or 0 if not capped
+    private long cap;
+
+    /**
+     * @param fetcher retrieves each page
+     * @param start the number of results to skip
+     * @param maxResults the maximum number of results to return, or 0 for all of them
+     * @param pageSize the number of items to request from Catalog at a time
+     * @param filtered whether the fetcher may drop some of the items Catalog returns
+     */
+    CatalogPager(PageFetcher<T> fetcher, long start, long maxResults, int pageSize, boolean filtered) {
+        this(fetcher, null, start, maxResults, pageSize, filtered);
+    }
+
+    /**
+     * @param asyncFetcher retrieves each page without blocking
+     * @param start the number of results to skip
+     * @param maxResults the maximum number of results to return, or 0 for all of them
+     * @param pageSize the number of items to request from Catalog at a time
+     * @param filtered whether the fetcher may drop some of the items Catalog returns
+     */
+    CatalogPager(AsyncPageFetcher<T> asyncFetcher, long start, long maxResults, int pageSize, boolean filtered) {
+        this(null, asyncFetcher, start, maxResults, pageSize, filtered);
+    }
+
+    private CatalogPager(PageFetcher<T> fetcher, AsyncPageFetcher<T> asyncFetcher, long start, long maxResults, int pageSize, boolean filtered) {
+        this.fetcher = fetcher;
+        this.asyncFetcher = asyncFetcher;
+        this.pageSize = Math.max(1, pageSize);
+        this.filtered = filtered;
+        this.nextStart = filtered ? 0 : Math.max(0, start);
+        this.toSkip = filtered ? Math.max(0, start) : 0;
+        this.remaining = maxResults > 0 ? maxResults : -1;
+    }
+
+    /**
+     * Send the request for the next page now, rather than when the results are first needed.  Only has an effect
+     * with a non-blocking fetcher, and when more results are still to be read.
+     *
+     * @return this pager
+     */
+    public CatalogPager<T> prefetch() {
+        if (asyncFetcher != null && pending == null && !exhausted && remaining != 0) {
+            pendingLimit = nextLimit();
+            pending = asyncFetcher.fetch(nextStart, pendingLimit);
+        }
+        return this;
+    }
+
+    /**
+     * Never return more than a number of results, even when the window asks for all of them.  A window with a limit
+     * of its own smaller than the cap is unaffected.  Must be called before any page is requested.
+     *
+     * @param maxResults the most results to return, or 0 for no cap
+     * @return this pager
+     */
+    public CatalogPager<T> limitTo(long maxResults) {
+        if (pending != null || pagesFetched > 0) {
+            throw new IllegalStateException("Cannot limit a listing that has already been read.");
+        }
+        if (maxResults > 0 && (remaining < 0 || remaining > maxResults)) {
+            remaining = maxResults;
+            cap = maxResults;
+        }
+        return this;
+    }
+
+    /**
+     * @return true if the cap set by {@link #limitTo(long)} stopped the listing before its end
+     */
+    public boolean isTruncated() {
+        return cap > 0 && remaining == 0 && (!buffer.isEmpty() || !exhausted);
+    }
+
+    /**
+     * Tell an observer about each page from now on.
+     *
+     * @param observer the observer, or null for none
+     * @return this pager
+     */
+    public CatalogPager<T> observe(ListingObserver observer) {
+        this.observer = observer;
+        return this;
+    }
+
+    /**
+     * Carry on from where an earlier pager over the same listing stopped, instead of from the start of the window.
+     * Must be called before any page is requested.
+     *
+     * @param resumePoint the position reached by the earlier pager, or null to start from the window as usual
+     * @return this pager
+     */
+    public CatalogPager<T> resumeFrom(ResumePoint resumePoint) {
+        if (pending != null || pagesFetched > 0) {
+            throw new IllegalStateException("Cannot resume a listing that has already been read.");
+        }
+        if (resumePoint != null) {
+            exhausted = resumePoint.isEnd();
+            nextStart = Math.max(0, resumePoint.getStart());
+            toSkip = resumePoint.getSkip();
+        }
+        return this;
+    }
+
+    /**
+     * @return the position in the listing just after the last result returned by {@link #next()}
+     */
+    public ResumePoint getResumePoint() {
+        if (buffer.isEmpty()) {
+            return exhausted ? ResumePoint.END : new ResumePoint(nextStart, toSkip);
+        }
+        // Without filtering every item is a result, so the position is exact
+        return filtered ? new ResumePoint(pageStart, pageResultsUsed) : new ResumePoint(pageStart + pageResultsUsed, 0);
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (buffer.isEmpty() && !exhausted && remaining != 0) {
+            fetchPage();
+        }
+        return remaining != 0 && !buffer.isEmpty();
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        if (remaining > 0) {
+            remaining--;
+        }
+        pageResultsUsed++;
+        T result = buffer.poll();
+        if (isTruncated()) {
+            log.warn("Stopped reading a catalog listing after {} results, the most read for any one listing; the rest are left out.", cap);
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of pages requested from Catalog so far
+     */
+    public int getPagesFetched() {
+        return pagesFetched;
+    }
+
+    /**
+     * @return the remaining results as a sequential stream, which requests further pages only as it is consumed
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    private int nextLimit() {
+        // Without filtering we know exactly how many items are still wanted, so never ask for more
+        return !filtered && remaining > 0 ? (int) Math.min(pageSize, remaining) : pageSize;
+    }
+
+    private void fetchPage() {
+        int limit;
+        CatalogJsonCodec.Page page;
+        int[] matched = new int[1];
+        pageStart = nextStart;
+        pageResultsUsed = 0;
+        Consumer<T> sink = result -> {
+            matched[0]++;
+            if (toSkip > 0) {
+                toSkip--;
+                pageResultsUsed++;
+            } else {
+                buffer.add(result);
+            }
+        };
+        if (asyncFetcher != null) {
+            prefetch();
+            limit = pendingLimit;
+            FetchedPage<T> fetched;
+            try {
+                fetched = pending.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause()
+                        : new RuntimeException("Could not retrieve catalog results starting at " + nextStart + ".", e.getCause());
+            } finally {
+                pending = null;
+            }
+            fetched.results.forEach(sink);
+            page = fetched.page;
+        } else {
+            limit = nextLimit();
+            try {
+                page = fetcher.fetch(nextStart, limit, sink);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new RuntimeException("Could not retrieve catalog results starting at " + nextStart + ".", e);
+            }
+        }
+        pagesFetched++;
+        int received = page.getItemCount();
+        if (observer != null) {
+            observer.pageRead(page.getCount(), received, matched[0]);
+        }
+        nextStart += received;
+        if (page.getCount() >= 0) {
+            // Catalog may return fewer items than asked for, so trust the total when it is known
+            exhausted = received == 0 || nextStart >= page.getCount();
+        } else {
+            exhausted = received < limit;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+//---------------------------------------------------------------------------
+// Copyright (c) 2020, SAS Institute Inc., Cary, NC, USA.  All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+//---------------------------------------------------------------------------
+
+package org.odpi.openmetadata.connector.sas.client;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded, thread-safe cache of Catalog definitions keyed by definition id.
+ *
+ * A catalog holds a few hundred definitions but many instances, so almost every instance lookup would otherwise
+ * re-fetch a definition it has already seen.  Entries are evicted least-recently-used once the cache is full, and
+ * are considered stale once their time-to-live has passed.  Stale entries are kept (along with their ETag) so the
+ * caller can revalidate them with a conditional request rather than downloading the definition again.
+ */
+public class DefinitionCache {
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final LongSupplier clock;
+    private final Map<String, Entry> entries;
+
+    public DefinitionCache(int maxEntries, long ttlMillis) {
+        this(maxEntries, ttlMillis, System::currentTimeMillis);
+    }
+
+    DefinitionCache(int maxEntries, long ttlMillis, LongSupplier clock) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > DefinitionCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Retrieve the cached entry for a definition, whether or not it is still fresh.
+     *
+     * @param definitionId the id of the definition
+     * @return the cached entry, or null if the definition is not cached
+     */
+    public synchronized Entry get(String definitionId) {
+        return entries.get(definitionId);
+    }
+
+    /**
+     * Cache a definition that was just retrieved from Catalog.
+     *
+     * @param definitionId the id of the definition
+     * @param definition the definition as returned by Catalog
+     * @param etag the ETag returned with the definition (or null if none)
+     */
+    public synchronized void put(String definitionId, Map definition, String etag) {
+        if (maxEntries > 0) {
+            entries.put(definitionId, new Entry(definition, etag, clock.getAsLong()));
+        }
+    }
+
+    /**
+     * Mark a cached definition as fresh again, after Catalog confirmed it has not changed.
+     *
+     * @param definitionId the id of the definition
+     */
+    public synchronized void revalidated(String definitionId) {
+        Entry entry = entries.get(definitionId);
+        if (entry != null) {
+            entries.put(definitionId, new Entry(entry.definition, entry.etag, clock.getAsLong()));
+        }
+    }
+
+    /**
+     * Drop a definition from the cache, e.g. because Catalog reported it was changed or removed.
+     *
+     * @param definitionId the id of the definition
+     */
+    public synchronized void invalidate(String definitionId) {
+        entries.remove(definitionId);
+    }
+
+    public synchronized void invalidateAll() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Check whether a cached entry can be used without asking Catalog.
+     *
+     * @param entry the cached entry
+     * @return true if the entry is within its time-to-live
+     */
+    public boolean isFresh(Entry entry) {
+        return clock.getAsLong() - entry.fetchedAt < ttlMillis;
+    }
+
+    public static final class Entry {
+        private final Map definition;
+        private final String etag;
+        private final long fetchedAt;
+
+        private Entry(Map definition, String etag, long fetchedAt) {
+            this.definition = definition;
+            this.etag = etag;
+            this.fetchedAt = fetchedAt;
+        }
+
+        public Map getDefinition() {
+            return definition;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+//---------------------------------------------------------------------------
+// Copyright (c) 2020, SAS Institute Inc., Cary, NC, USA.  All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+//---------------------------------------------------------------------------
+
+package org.odpi.openmetadata.connector.sas.client;
+
+/**
+ * Told about each page of a Catalog listing as it is read, e.g. to learn how selective the filtering done after the
+ * fact is.  May be called from the non-blocking client's threads.
+ */
+@FunctionalInterface
+public interface ListingObserver {
+    /**
+     * @param count the total number of instances matching the listing's filter in Catalog, or -1 if not known
+     * @param itemsRead the number of items Catalog returned for the page
+     * @param itemsMatched the number of those items that passed the filtering after the fact
+     */
+    void pageRead(long count, int itemsRead, int itemsMatched);
+}
@@ -0,0 +1,29 @@
+//---------------------------------------------------------------------------
+// Copyright (c) 2020, SAS Institute Inc., Cary, NC, USA.  All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+//---------------------------------------------------------------------------
+
+package org.odpi.openmetadata.connector.sas.client;
+
+import org.odpi.openmetadata.connector.sas.repository.connector.mapping.SASCatalogObject;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking counterpart of {@link SASCatalogClient}.  Each call returns immediately; the returned future completes
+ * once Catalog has responded, so many requests can be outstanding without tying up a thread each.
+ */
+public interface SASCatalogAsyncClient {
+    CompletableFuture<SASCatalogObject> getInstanceByGuid(String guid, String type);
+    CompletableFuture<Map<String, SASCatalogObject>> getInstancesByGuids(Collection<String> guids, String type);
+    CompletableFuture<List<SASCatalogObject>> getEntitiesWithParams(Map<String, String> params, Map<String, String> attributeFilter);
+    CompletableFuture<List<SASCatalogObject>> getEntitiesWithParams(Map<String, String> params, Map<String, String> attributeFilter, int pageSize, ListingObserver observer);
+    CatalogPager<SASCatalogObject> iterateEntitiesWithParams(Map<String, String> params, Map<String, String> attributeFilter);
+    CatalogPager<SASCatalogObject> iterateEntitiesWithParams(Map<String, String> params, Map<String, String> attributeFilter, int pageSize, ListingObserver observer);
+    CompletableFuture<List<SASCatalogObject>> getRelationshipsByEntityGuid(String guid);
+    CompletableFuture<List<SASCatalogObject>> getRelationshipsByEntityGuid(String guid, Collection<String> relationshipTypes);
+    CompletableFuture<Map> getDefinition(String definitionId, String type);
+}
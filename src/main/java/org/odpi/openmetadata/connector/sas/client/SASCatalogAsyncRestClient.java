@@ -0,0 +1,623 @@
+//---------------------------------------------------------------------------
+// Copyright (c) 2020, SAS Institute Inc., Cary, NC, USA.  All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+//---------------------------------------------------------------------------
+
+package org.odpi.openmetadata.connector.sas.client;
+
+import org.apache.http.client.utils.URIBuilder;
+import org.odpi.openmetadata.connector.sas.repository.connector.mapping.SASCatalogObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.SSLContext;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Asynchronous SAS Catalog client built on the JDK HTTP client.
+ *
+ * Requests are sent without blocking the caller, and at most {@code maxInFlight} are outstanding at once; the rest
+ * wait in a queue and are sent as earlier responses arrive.  The SASLogon token and definition cache are shared with
+ * the {@link SASCatalogRestClient} that created this client.
+ */
+public class SASCatalogAsyncRestClient implements SASCatalogAsyncClient, Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(SASCatalogAsyncRestClient.class);
+
+    private static final int MAX_RETRIES = 1;
+    private static final int CALLBACK_THREADS = 2;
+    // Pages of a single listing requested at once, so that one large listing does not take every in-flight slot
+    static final int MAX_PAGES_IN_FLIGHT = 4;
+
+    private final String catalogURI;
+    private final TokenManager tokenManager;
+    private final DefinitionCache definitionCache;
+    private final Duration requestTimeout;
+    private final ExecutorService executor;
+    // Obtaining a token may call SASLogon, so it is done here rather than on the HTTP client's callback threads
+    private final ExecutorService tokenExecutor;
+    // Response bodies are streamed into the codec, which blocks while waiting for data, so they are read on threads
+    // of their own (one per in-flight request) rather than on the HTTP client's
+    private final ExecutorService bodyExecutor;
+    private final HttpClient httpClient;
+    private final CatalogJsonCodec codec = CatalogJsonCodec.INSTANCE;
+
+    private final int pageSize;
+    private final int maxPageSize;
+    private final int maxResults;
+    private final int maxInFlight;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Queue<Runnable> waiting = new ConcurrentLinkedQueue<>();
+
+    // Concurrent lookups of the same definition share a single request
+    private final Map<String, CompletableFuture<Map>> pendingDefinitions = new ConcurrentHashMap<>();
+
+    /**
+     * @param catalogURI the base URI of the Catalog service, e.g. https://sas-catalog
+     * @param maxResults the most results read from a listing asked for in full, or 0 for no cap
+     */
+    SASCatalogAsyncRestClient(String catalogURI, SSLContext sslContext, TokenManager tokenManager, DefinitionCache definitionCache,
+                              int maxInFlight, int pageSize, int maxPageSize, int maxResults, int connectTimeoutMillis, int requestTimeoutMillis) {
+        this.catalogURI = catalogURI;
+        this.tokenManager = tokenManager;
+        this.definitionCache = definitionCache;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.pageSize = Math.max(1, pageSize);
+        this.maxPageSize = Math.max(this.pageSize, maxPageSize);
+        this.maxResults = Math.max(0, maxResults);
+        this.requestTimeout = Duration.ofMillis(requestTimeoutMillis);
+        this.executor = Executors.newFixedThreadPool(CALLBACK_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "sas-catalog-async");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.bodyExecutor = Executors.newFixedThreadPool(this.maxInFlight, runnable -> {
+            Thread thread = new Thread(runnable, "sas-catalog-async-body");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.tokenExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sas-catalog-async-token");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.httpClient = HttpClient.newBuilder()
+                // Match the blocking client, and avoid h2c upgrade attempts against plain HTTP services
+                .version(HttpClient.Version.HTTP_1_1)
+                .sslContext(sslContext)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMillis))
+                .executor(executor)
+                .build();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        tokenExecutor.shutdownNow();
+        bodyExecutor.shutdownNow();
+    }
+
+    /**
+     * @return the number of requests currently sent and awaiting a response
+     */
+    public int getInFlightCount() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return the number of requests waiting for an in-flight slot
+     */
+    public int getQueuedCount() {
+        return waiting.size();
+    }
+
+    @Override
+    public CompletableFuture<SASCatalogObject> getInstanceByGuid(String guid, String type) {
+        URI uri = buildUri("/catalog/instances/" + guid, Collections.emptyMap());
+        return send(uri, 0, response -> {
+                    log.info("Get Instance (" + guid + "): " + response.statusCode());
+                    return response.statusCode() == 200 ? readObject(response.body()) : null;
+                }, "Accept", String.format("application/vnd.sas.metadata.instance.%s+json", type))
+                .thenCompose(instance -> instance == null
+                        ? CompletableFuture.completedFuture(null)
+                        : toCatalogObject(instance, type));
+    }
+
+    @Override
+    public CompletableFuture<Map<String, SASCatalogObject>> getInstancesByGuids(Collection<String> guids, String type) {
+        List<List<String>> chunks = SASCatalogRestClient.partitionForIdFilter(guids, SASCatalogRestClient.MAX_FILTER_LENGTH);
+        List<CompletableFuture<List<SASCatalogObject>>> futures = new ArrayList<>();
+        for (List<String> chunk : chunks) {
+            Map<String, String> params = new LinkedHashMap<>();
+            params.put("filter", SASCatalogRestClient.buildIdFilter(chunk));
+            params.put("limit", String.valueOf(chunk.size()));
+            URI uri = buildUri("/catalog/instances", params);
+            futures.add(send(uri, 0, response -> {
+                        log.info("Get Instances by GUID (" + chunk.size() + " " + type + "): " + response.statusCode());
+                        checkStatus(response, "Get Instances by GUID");
+                        return readPage(response.body(), type, null);
+                    }, "Accept-Item", String.format("application/vnd.sas.metadata.instance.%s+json", type))
+                    .thenCompose(mapped -> mapped.objects));
+        }
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).thenApply(ignored -> {
+            Map<String, SASCatalogObject> found = new LinkedHashMap<>();
+            for (CompletableFuture<List<SASCatalogObject>> future : futures) {
+                for (SASCatalogObject instance : future.join()) {
+                    found.put(instance.getGuid(), instance);
+                }
+            }
+            // Return the instances in the order they were requested
+            Map<String, SASCatalogObject> instances = new LinkedHashMap<>();
+            for (List<String> chunk : chunks) {
+                for (String guid : chunk) {
+                    if (found.containsKey(guid)) {
+                        instances.put(guid, found.get(guid));
+                    }
+                }
+            }
+            return instances;
+        });
+    }
+
+    /**
+     * Retrieve a listing of entities, following it page by page.  A start and limit in the params select a window of
+     * the results, which is handed to Catalog unless an attribute filter means items are dropped after the fact.
+     */
+    @Override
+    public CompletableFuture<List<SASCatalogObject>> getEntitiesWithParams(Map<String, String> params, Map<String, String> attributeFilter) {
+        return getEntitiesWithParams(params, attributeFilter, 0, null);
+    }
+
+    @Override
+    public CompletableFuture<List<SASCatalogObject>> getEntitiesWithParams(Map<String, String> params, Map<String, String> attributeFilter,
+                                                                           int pageSize, ListingObserver observer) {
+        boolean filtered = SASCatalogRestClient.isFiltering(attributeFilter);
+        long start = SASCatalogRestClient.getLongParam(params, "start");
+        long limit = SASCatalogRestClient.getLongParam(params, "limit");
+        Map<String, String> listingParams = new LinkedHashMap<>(params);
+        listingParams.remove("start");
+        listingParams.remove("limit");
+        // A listing asked for in full is capped, like the blocking client's
+        long wanted = limit > 0 && (maxResults == 0 || limit <= maxResults) ? limit : maxResults > 0 ? maxResults : -1;
+        return getEntityPages(listingParams, attributeFilter, SASCatalogRestClient.getListingPageSize(pageSize, this.pageSize, maxPageSize),
+                observer, filtered, filtered ? 0 : start, filtered ? start : 0, wanted, new ArrayList<>());
+    }
+
+    private CompletableFuture<List<SASCatalogObject>> getEntityPages(Map<String, String> params, Map<String, String> attributeFilter,
+                                                                     int pageSize, ListingObserver observer,
+                                                                     boolean filtered, long start, long toSkip, long remaining,
+                                                                     List<SASCatalogObject> entities) {
+        // Without filtering we know exactly how many items are still wanted, so never ask for more
+        int limit = !filtered && remaining > 0 ? (int) Math.min(pageSize, remaining) : pageSize;
+        return getEntityPage(params, attributeFilter, start, limit).thenCompose(fetched -> {
+            long skip = toSkip;
+            long wanted = remaining;
+            for (SASCatalogObject entity : fetched.getResults()) {
+                if (skip > 0) {
+                    skip--;
+                } else if (wanted != 0) {
+                    entities.add(entity);
+                    wanted--;
+                }
+            }
+            int received = fetched.getPage().getItemCount();
+            if (observer != null) {
+                observer.pageRead(fetched.getPage().getCount(), received, fetched.getResults().size());
+            }
+            long nextStart = start + received;
+            boolean exhausted = fetched.getPage().getCount() >= 0
+                    ? received == 0 || nextStart >= fetched.getPage().getCount()
+                    : received < limit;
+            if (!exhausted && wanted == 0 && entities.size() == maxResults) {
+                log.warn("Stopped reading a catalog listing after {} results, the most read for any one listing; the rest are left out.", maxResults);
+            }
+            if (exhausted || wanted == 0) {
+                return CompletableFuture.completedFuture(entities);
+            }
+            return getEntityPages(params, attributeFilter, pageSize, observer, filtered, nextStart, skip, wanted, entities);
+        });
+    }
+
+    /**
+     * Iterate over a listing of entities, requesting pages only as they are consumed.  The first page is requested
+     * straight away, so that several listings can be started before any of them is read.
+     */
+    @Override
+    public CatalogPager<SASCatalogObject> iterateEntitiesWithParams(Map<String, String> params, Map<String, String> attributeFilter) {
+        return iterateEntitiesWithParams(params, attributeFilter, 0, null).prefetch();
+    }
+
+    /**
+     * Iterate over a listing of entities, requesting pages only as they are consumed.  Nothing is requested until the
+     * pager is read or {@link CatalogPager#prefetch()} is called, so that it can first be told where to resume from.
+     */
+    @Override
+    public CatalogPager<SASCatalogObject> iterateEntitiesWithParams(Map<String, String> params, Map<String, String> attributeFilter,
+                                                                  int pageSize, ListingObserver observer) {
+        Map<String, String> listingParams = new LinkedHashMap<>(params);
+        listingParams.remove("start");
+        listingParams.remove("limit");
+        CatalogPager<SASCatalogObject> pager = new CatalogPager<>(
+                (start, limit) -> getEntityPage(listingParams, attributeFilter, start, limit),
+                SASCatalogRestClient.getLongParam(params, "start"), SASCatalogRestClient.getLongParam(params, "limit"),
+                SASCatalogRestClient.getListingPageSize(pageSize, this.pageSize, maxPageSize), SASCatalogRestClient.isFiltering(attributeFilter));
+        return pager.limitTo(maxResults).observe(observer);
+    }
+
+    private CompletableFuture<CatalogPager.FetchedPage<SASCatalogObject>> getEntityPage(Map<String, String> params, Map<String, String> attributeFilter,
+                                                                                       long start, int limit) {
+        Map<String, String> pageParams = new LinkedHashMap<>(params);
+        pageParams.put("start", String.valueOf(start));
+        pageParams.put("limit", String.valueOf(limit));
+        return send(buildUri("/catalog/instances", pageParams), 0, response -> {
+                    log.info("Get Entities with filter (" + pageParams.toString() + "): " + response.statusCode());
+                    checkStatus(response, "Get Entities with filter");
+                    return readPage(response.body(), "entity", attributeFilter);
+                }, "Accept-Item", "application/vnd.sas.metadata.instance.entity+json")
+                .thenCompose(mapped -> mapped.objects.thenApply(objects -> new CatalogPager.FetchedPage<>(mapped.page, objects)));
+    }
+
+    /**
+     * Retrieve all relationships of an entity.  The first page gives the total count, after which the remaining pages
+     * are requested in parallel, at most {@link #MAX_PAGES_IN_FLIGHT} at a time, and combined in start order.
+     */
+    @Override
+    public CompletableFuture<List<SASCatalogObject>> getRelationshipsByEntityGuid(String guid) {
+        return getRelationshipsByEntityGuid(guid, null);
+    }
+
+    @Override
+    public CompletableFuture<List<SASCatalogObject>> getRelationshipsByEntityGuid(String guid, Collection<String> relationshipTypes) {
+        if (relationshipTypes != null && relationshipTypes.isEmpty()) {
+            return CompletableFuture.completedFuture(new ArrayList<>());
+        }
+        String filter = SASCatalogRestClient.buildRelationshipFilter(guid, relationshipTypes);
+        CompletableFuture<List<SASCatalogObject>> relationships = getRelationshipsWithFilter(guid, filter);
+        if (!SASCatalogRestClient.needsRelationshipTypeCheck(relationshipTypes)) {
+            return relationships;
+        }
+        // Catalog can only narrow relatedObjects down by role after the fact
+        return relationships.thenApply(results -> results.stream()
+                .filter(relationship -> relationshipTypes.contains(relationship.getInstanceProperty("type")))
+                .collect(Collectors.toList()));
+    }
+
+    private CompletableFuture<List<SASCatalogObject>> getRelationshipsWithFilter(String guid, String filter) {
+        return getRelationshipPage(guid, filter, 0, pageSize).thenCompose(first -> {
+            long count = first.page.getCount();
+            int received = first.page.getItemCount();
+            if (received == 0 || count <= received) {
+                return first.objects;
+            }
+
+            // Catalog may return fewer items than asked for, so step by the size of page it actually returned
+            List<Long> starts = new ArrayList<>();
+            for (long start = received; start < count; start += received) {
+                starts.add(start);
+            }
+            List<CompletableFuture<List<SASCatalogObject>>> pages = new ArrayList<>();
+            pages.add(first.objects);
+            List<CompletableFuture<List<SASCatalogObject>>> remaining = new ArrayList<>();
+            for (int i = 0; i < starts.size(); i++) {
+                remaining.add(new CompletableFuture<>());
+            }
+            pages.addAll(remaining);
+            AtomicInteger next = new AtomicInteger();
+            for (int i = 0; i < Math.min(Math.min(MAX_PAGES_IN_FLIGHT, maxInFlight), starts.size()); i++) {
+                getRelationshipPages(guid, filter, starts, received, remaining, next);
+            }
+            return CompletableFuture.allOf(pages.toArray(new CompletableFuture[0])).thenApply(ignored -> {
+                List<SASCatalogObject> relationships = new ArrayList<>((int) count);
+                for (CompletableFuture<List<SASCatalogObject>> page : pages) {
+                    relationships.addAll(page.join());
+                }
+                return relationships;
+            });
+        });
+    }
+
+    /**
+     * Request the next page not yet requested, and once it is read, the one after that; a window of pages is kept in
+     * flight by starting this once per slot.  If a page fails, the pages not yet requested fail with it.
+     */
+    private void getRelationshipPages(String guid, String filter, List<Long> starts, int limit,
+                                      List<CompletableFuture<List<SASCatalogObject>>> pages, AtomicInteger next) {
+        int index = next.getAndIncrement();
+        if (index >= starts.size()) {
+            return;
+        }
+        getRelationshipPage(guid, filter, starts.get(index), limit)
+                .thenCompose(page -> page.objects)
+                .whenComplete((objects, error) -> {
+                    if (error != null) {
+                        pages.get(index).completeExceptionally(error);
+                        for (int i = next.getAndSet(starts.size()); i < starts.size(); i++) {
+                            pages.get(i).completeExceptionally(error);
+                        }
+                        return;
+                    }
+                    pages.get(index).complete(objects);
+                    getRelationshipPages(guid, filter, starts, limit, pages, next);
+                });
+    }
+
+    private CompletableFuture<MappedPage> getRelationshipPage(String guid, String filter, long start, int limit) {
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("filter", filter);
+        params.put("sortBy", SASCatalogRestClient.RELATIONSHIP_SORT_BY);
+        params.put("start", String.valueOf(start));
+        params.put("limit", String.valueOf(limit));
+        return send(buildUri("/catalog/instances", params), 0, response -> {
+                    log.info("Get relationship for entity (" + guid + ", start " + start + "): " + response.statusCode());
+                    checkStatus(response, "Get relationship for entity");
+                    return readPage(response.body(), "relationship", null);
+                }, "Accept-Item", "application/vnd.sas.metadata.instance.relationship+json");
+    }
+
+    @Override
+    public CompletableFuture<Map> getDefinition(String definitionId, String type) {
+        DefinitionCache.Entry cached = definitionCache.get(definitionId);
+        if (cached != null && definitionCache.isFresh(cached)) {
+            return CompletableFuture.completedFuture(cached.getDefinition());
+        }
+
+        CompletableFuture<Map> created = new CompletableFuture<>();
+        CompletableFuture<Map> existing = pendingDefinitions.putIfAbsent(definitionId, created);
+        if (existing != null) {
+            return existing;
+        }
+
+        URI uri = buildUri("/catalog/definitions/" + definitionId, Collections.emptyMap());
+        List<String> headers = new ArrayList<>();
+        headers.add("Accept");
+        headers.add(String.format("application/vnd.sas.metadata.definition.%s+json", type));
+        if (cached != null && cached.getEtag() != null) {
+            // Stale entry: let Catalog tell us whether it has changed rather than downloading it again
+            headers.add("If-None-Match");
+            headers.add(cached.getEtag());
+        }
+        send(uri, 0, response -> {
+                    log.info("Get Definition (" + definitionId + "): " + response.statusCode());
+                    if (response.statusCode() == 304 && cached != null) {
+                        definitionCache.revalidated(definitionId);
+                        return cached.getDefinition();
+                    }
+                    checkStatus(response, "Get Definition");
+                    Map definition = readObject(response.body());
+                    definitionCache.put(definitionId, definition, response.headers().firstValue("ETag").orElse(null));
+                    return definition;
+                }, headers.toArray(new String[0]))
+                .whenComplete((definition, error) -> {
+                    pendingDefinitions.remove(definitionId, created);
+                    if (error != null) {
+                        created.completeExceptionally(error);
+                    } else {
+                        created.complete(definition);
+                    }
+                });
+        return created;
+    }
+
+    private CompletableFuture<SASCatalogObject> toCatalogObject(Map instance, String type) {
+        SASCatalogObject instanceInfo = SASCatalogRestClient.mapInstance(instance, type);
+        return getDefinition(instanceInfo.defId, type).thenApply(definition -> {
+            SASCatalogRestClient.addDefinitionInfo(instanceInfo, instanceInfo.defId, definition);
+            return instanceInfo;
+        });
+    }
+
+    /**
+     * Fail the request rather than reading an error response as if it were the resource asked for.
+     */
+    private static void checkStatus(HttpResponse<?> response, String request) {
+        if (response.statusCode() != 200) {
+            throw new CompletionException(new RuntimeException(request + " failed: " + response.statusCode()));
+        }
+    }
+
+    private Map readObject(InputStream body) throws IOException {
+        return codec.readObject(new InputStreamReader(body, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a collection response item by item, starting the definition lookup for each item as it is read.
+     */
+    private MappedPage readPage(InputStream body, String type, Map<String, String> attributeFilter) throws Exception {
+        List<CompletableFuture<SASCatalogObject>> mapped = new ArrayList<>();
+        CatalogJsonCodec.Page page = codec.readPage(new InputStreamReader(body, StandardCharsets.UTF_8), instance -> {
+            Map<String, String> attributes = (Map<String, String>) instance.get("attributes");
+            // Not currently possible to filter on attributes in Catalog, have to do it after the fact
+            if (attributeFilter == null || SASCatalogRestClient.matchesAttributes(attributes, attributeFilter)) {
+                mapped.add(toCatalogObject(instance, type));
+            }
+        });
+        CompletableFuture<List<SASCatalogObject>> objects = CompletableFuture.allOf(mapped.toArray(new CompletableFuture[0]))
+                .thenApply(ignored -> {
+                    List<SASCatalogObject> results = new ArrayList<>(mapped.size());
+                    for (CompletableFuture<SASCatalogObject> future : mapped) {
+                        results.add(future.join());
+                    }
+                    return results;
+                });
+        return new MappedPage(page, objects);
+    }
+
+    private static final class MappedPage {
+        private final CatalogJsonCodec.Page page;
+        private final CompletableFuture<List<SASCatalogObject>> objects;
+
+        private MappedPage(CatalogJsonCodec.Page page, CompletableFuture<List<SASCatalogObject>> objects) {
+            this.page = page;
+            this.objects = objects;
+        }
+    }
+
+    private URI buildUri(String path, Map<String, String> params) {
+        try {
+            URIBuilder builder = new URIBuilder(this.catalogURI + path);
+            for (Map.Entry<String, String> param : params.entrySet()) {
+                builder.addParameter(param.getKey(), param.getValue());
+            }
+            return builder.build();
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Invalid catalog request: " + path, e);
+        }
+    }
+
+    /**
+     * Reads a response as its body streams in.  The body is closed once the reader returns.
+     */
+    private interface ResponseReader<T> {
+        T read(HttpResponse<InputStream> response) throws Exception;
+    }
+
+    /**
+     * Send a GET request once an in-flight slot is free, replacing the token and retrying if it is rejected.  The
+     * response body is streamed into the reader while the request still holds its slot, so no more than
+     * {@code maxInFlight} bodies are read at once and none is buffered whole.
+     */
+    private <T> CompletableFuture<T> send(URI uri, int retries, ResponseReader<T> reader, String... headers) {
+        return getToken().thenCompose(token -> throttle(() -> {
+            HttpRequest.Builder request = HttpRequest.newBuilder(uri).timeout(requestTimeout).GET();
+            for (int i = 0; i + 1 < headers.length; i += 2) {
+                request.header(headers[i], headers[i + 1]);
+            }
+            request.header("Authorization", String.format("Bearer %s", token));
+            return httpClient.sendAsync(request.build(), HttpResponse.BodyHandlers.ofInputStream())
+                    .thenApplyAsync(response -> {
+                        try (InputStream body = response.body()) {
+                            if (response.statusCode() == 401) {
+                                return Reply.<T>rejected(token);
+                            }
+                            return Reply.of(reader.read(response));
+                        } catch (CompletionException e) {
+                            throw e;
+                        } catch (Exception e) {
+                            throw new CompletionException(e);
+                        }
+                    }, bodyExecutor);
+        })).thenCompose(reply -> {
+            if (reply.rejectedToken == null) {
+                return CompletableFuture.completedFuture(reply.value);
+            }
+            if (retries >= MAX_RETRIES) {
+                throw new CompletionException(new RuntimeException("Could not complete request after " + (retries + 1) + " retries."));
+            }
+            // Refreshing may call SASLogon, so keep it off the caller's and the HTTP client's threads
+            return CompletableFuture.runAsync(() -> {
+                try {
+                    tokenManager.refresh(reply.rejectedToken);
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, tokenExecutor).thenCompose(ignored -> send(uri, retries + 1, reader, headers));
+        });
+    }
+
+    private static final class Reply<T> {
+        private final T value;
+        private final String rejectedToken;
+
+        private Reply(T value, String rejectedToken) {
+            this.value = value;
+            this.rejectedToken = rejectedToken;
+        }
+
+        private static <T> Reply<T> of(T value) {
+            return new Reply<>(value, null);
+        }
+
+        private static <T> Reply<T> rejected(String token) {
+            return new Reply<>(null, token);
+        }
+    }
+
+    /**
+     * Use the current token if there is one, otherwise request one from SASLogon on the token thread.
+     */
+    private CompletableFuture<String> getToken() {
+        String token = tokenManager.getCurrentToken();
+        if (token != null) {
+            return CompletableFuture.completedFuture(token);
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return tokenManager.getToken();
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, tokenExecutor);
+    }
+
+    /**
+     * Start the request now if fewer than {@code maxInFlight} requests are outstanding, otherwise queue it until one
+     * completes.
+     */
+    private <T> CompletableFuture<T> throttle(Callable<CompletableFuture<T>> request) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        waiting.add(() -> {
+            CompletableFuture<T> sent;
+            try {
+                sent = request.call();
+            } catch (Exception e) {
+                sent = CompletableFuture.failedFuture(e);
+            }
+            sent.whenComplete((value, error) -> {
+                inFlight.decrementAndGet();
+                drain();
+                if (error != null) {
+                    result.completeExceptionally(error);
+                } else {
+                    result.complete(value);
+                }
+            });
+        });
+        drain();
+        return result;
+    }
+
+    private void drain() {
+        while (!waiting.isEmpty()) {
+            int current = inFlight.get();
+            if (current >= maxInFlight) {
+                return;
+            }
+            if (!inFlight.compareAndSet(current, current + 1)) {
+                continue;
+            }
+            Runnable next = waiting.poll();
+            if (next == null) {
+                // Another thread took the last queued request
+                inFlight.decrementAndGet();
+                continue;
+            }
+            next.run();
+        }
+    }
+}
@@ -8,13 +8,22 @@ package org.odpi.openmetadata.connector.sas.client;
 import org.odpi.openmetadata.connector.sas.event.model.catalog.instance.Instance;
 import org.odpi.openmetadata.connector.sas.repository.connector.mapping.SASCatalogObject;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
 public interface SASCatalogClient {
     SASCatalogObject getInstanceByGuid(String guid, String type) throws Exception;
+    Map<String, SASCatalogObject> getInstancesByGuids(Collection<String> guids, String type) throws Exception;
     List<Instance> getInstancesWithParams(Map<String, String> params) throws Exception;
     List<Instance> getInstancesWithParams(Map<String, String> params, Map<String, String> attributeFilter) throws Exception;
+    List<SASCatalogObject> getEntitiesWithParams(Map<String, String> params, Map<String, String> attributeFilter) throws Exception;
+    List<SASCatalogObject> getEntitiesWithParams(Map<String, String> params, Map<String, String> attributeFilter, int pageSize, ListingObserver observer) throws Exception;
+    CatalogPager<SASCatalogObject> iterateEntitiesWithParams(Map<String, String> params, Map<String, String> attributeFilter);
+    CatalogPager<SASCatalogObject> iterateEntitiesWithParams(Map<String, String> params, Map<String, String> attributeFilter, int pageSize, ListingObserver observer);
+    CatalogPager<SASCatalogObject> searchEntities(String text, long start, long maxResults);
     boolean definitionExistsByName(String defName, String type) throws Exception;
     List<SASCatalogObject> getRelationshipsByEntityGuid(String guid) throws Exception;
+    List<SASCatalogObject> getRelationshipsByEntityGuid(String guid, Collection<String> relationshipTypes, long start, long limit) throws Exception;
+    void invalidateDefinition(String definitionId);
 }
@@ -5,7 +5,6 @@
 
 package org.odpi.openmetadata.connector.sas.client;
 
-import com.google.gson.Gson;
 import org.apache.http.NameValuePair;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.HttpPost;
@@ -13,85 +12,254 @@ import org.apache.http.message.BasicNameValuePair;
 import org.odpi.openmetadata.connector.sas.event.model.catalog.instance.Instance;
 import org.odpi.openmetadata.connector.sas.repository.connector.mapping.SASCatalogObject;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.http.HttpEntity;
+import org.apache.http.Header;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
 import org.apache.http.conn.ssl.NoopHostnameVerifier;
-import org.apache.http.conn.ssl.TrustAllStrategy;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
 import org.apache.http.ssl.SSLContextBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509ExtendedTrustManager;
+import java.io.Closeable;
 import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.Socket;
 import java.nio.charset.StandardCharsets;
 import java.security.KeyStore;
+import java.security.cert.X509Certificate;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
-public class SASCatalogRestClient implements SASCatalogClient {
+public class SASCatalogRestClient implements SASCatalogClient, Closeable {
 
     private static final String SYSPROP_TRUST_ALL       = "sas.egeria.repositoryconnector.ssl.trustAll";
     private static final String SYSPROP_TRUSTSTORE_NAME = "sas.egeria.repositoryconnector.ssl.trustStore";
     private static final String SYSPROP_TRUSTSTORE_PWD  = "sas.egeria.repositoryconnector.ssl.trustStorePassword";
+    private static final String SYSPROP_DEF_CACHE_SIZE  = "sas.egeria.repositoryconnector.definitionCache.maxEntries";
+    private static final String SYSPROP_DEF_CACHE_TTL   = "sas.egeria.repositoryconnector.definitionCache.ttlSeconds";
+
+    // Connector configuration properties for the HTTP connection pool
+    public static final String CONFIG_MAX_CONNECTIONS_PER_ROUTE = "maxConnectionsPerRoute";
+    public static final String CONFIG_MAX_CONNECTIONS_TOTAL     = "maxConnectionsTotal";
+    public static final String CONFIG_KEEP_ALIVE_SECONDS        = "keepAliveSeconds";
+    public static final String CONFIG_IDLE_TIMEOUT_SECONDS      = "idleConnectionTimeoutSeconds";
+    public static final String CONFIG_CONNECT_TIMEOUT_MS        = "connectTimeoutMillis";
+    public static final String CONFIG_SOCKET_TIMEOUT_MS         = "socketTimeoutMillis";
+    public static final String CONFIG_REQUEST_TIMEOUT_MS        = "connectionRequestTimeoutMillis";
+    public static final String CONFIG_MAX_PARALLEL_REQUESTS     = "maxParallelRequests";
+    public static final String CONFIG_PAGE_SIZE                 = "catalogPageSize";
+    public static final String CONFIG_MAX_PAGE_SIZE             = "catalogMaxPageSize";
+    public static final String CONFIG_MAX_RESULTS               = "catalogMaxResults";
+
+    // Keep id filters well inside common URL length limits once they are URL-encoded
+    static final int MAX_FILTER_LENGTH = CatalogFilter.MAX_LENGTH;
+    // Relationships are read a page at a time, so they are listed in an order that does not change between pages
+    static final String RELATIONSHIP_SORT_BY = "id:ascending";
 
     private static final int MAX_RETRIES = 1;
     private CloseableHttpClient httpClient;
+    private PoolingHttpClientConnectionManager connectionManager;
+    private SASCatalogAsyncRestClient asyncClient;
     private String baseURL;
     private String username;
     private String password;
     private String scheme;
-    private String token;
+    private String catalogURI;
+    private String logonURI;
+    private final TokenManager tokenManager;
+    private final DefinitionCache definitionCache;
+    private final CatalogJsonCodec codec = CatalogJsonCodec.INSTANCE;
+    private final int pageSize;
+    private final int maxPageSize;
+    private final int maxResults;
 
     private static final Logger log = LoggerFactory.getLogger(SASCatalogRestClient.class);
 
     public SASCatalogRestClient(String baseURL, String username, String password) throws Exception {
+        this(baseURL, username, password, null);
+    }
+
+    public SASCatalogRestClient(String baseURL, String username, String password, Map<String, Object> configurationProperties) throws Exception {
+        this(baseURL, null, null, username, password, configurationProperties);
+    }
+
+    /**
+     * @param catalogURI the base URI of the Catalog service, or null for the sas-catalog service
+     * @param logonURI the base URI of SASLogon, or null for the sas-logon-app service
+     */
+    SASCatalogRestClient(String baseURL, String catalogURI, String logonURI, String username, String password,
+                         Map<String, Object> configurationProperties) throws Exception {
         boolean trustAllCerts = System.getProperty(SYSPROP_TRUST_ALL,"false").equalsIgnoreCase("true");
         String trustStorePath = System.getProperty(SYSPROP_TRUSTSTORE_NAME, "");
 
+        SSLContext sslContext;
+        SSLConnectionSocketFactory sslSocketFactory;
         if (trustAllCerts) {
             // ********************************************************************
             // NOTE: THIS DISABLES SSL CERTIFICATE VERIFICATION (Use with caution)
             // ********************************************************************
-            this.httpClient = HttpClients
-                    .custom()
-                    .setSSLContext(new SSLContextBuilder().loadTrustMaterial(null, TrustAllStrategy.INSTANCE).build())
-                    .setSSLHostnameVerifier(NoopHostnameVerifier.INSTANCE)
-                    .build();
+            sslContext = SSLContext.getInstance("TLS");
+            sslContext.init(null, new TrustManager[] { TrustAllManager.INSTANCE }, null);
+            sslSocketFactory = new SSLConnectionSocketFactory(sslContext, NoopHostnameVerifier.INSTANCE);
         } else if (StringUtils.isNotEmpty(trustStorePath)) {
             // **************************************************************************************************
             // SSL is being used and we wish to install a set of certificates we accept when talking to SAS Viya
             // **************************************************************************************************
             KeyStore keystore = KeyStore.getInstance(KeyStore.getDefaultType());
-            keystore.load(new FileInputStream(trustStorePath), System.getProperty(SYSPROP_TRUSTSTORE_PWD,"").toCharArray());
-            this.httpClient = HttpClients
-                    .custom()
-                    .setSSLContext(new SSLContextBuilder().loadTrustMaterial(keystore, null).build())
-                    .build();
+            try (FileInputStream trustStore = new FileInputStream(trustStorePath)) {
+                keystore.load(trustStore, System.getProperty(SYSPROP_TRUSTSTORE_PWD,"").toCharArray());
+            }
+            sslContext = new SSLContextBuilder().loadTrustMaterial(keystore, null).build();
+            sslSocketFactory = new SSLConnectionSocketFactory(sslContext);
         } else {
-            // **********************
-            // Use default HttpClient
-            // **********************
-            this.httpClient = HttpClients.createDefault();
+            // ************************
+            // Use default SSL settings
+            // ************************
+            sslContext = SSLContext.getDefault();
+            sslSocketFactory = SSLConnectionSocketFactory.getSocketFactory();
         }
 
+        // *********************************************************************************
+        // Pool connections so concurrent OMRS requests do not queue behind a single route
+        // *********************************************************************************
+        Registry<ConnectionSocketFactory> socketFactoryRegistry = RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .register("https", sslSocketFactory)
+                .build();
+        this.connectionManager = new PoolingHttpClientConnectionManager(socketFactoryRegistry);
+        this.connectionManager.setDefaultMaxPerRoute(getIntProperty(configurationProperties, CONFIG_MAX_CONNECTIONS_PER_ROUTE, 20));
+        this.connectionManager.setMaxTotal(getIntProperty(configurationProperties, CONFIG_MAX_CONNECTIONS_TOTAL, 50));
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(getIntProperty(configurationProperties, CONFIG_CONNECT_TIMEOUT_MS, 10000))
+                .setSocketTimeout(getIntProperty(configurationProperties, CONFIG_SOCKET_TIMEOUT_MS, 60000))
+                .setConnectionRequestTimeout(getIntProperty(configurationProperties, CONFIG_REQUEST_TIMEOUT_MS, 10000))
+                .build();
+
+        // Honour the server's Keep-Alive header, but never hold a connection longer than configured
+        long keepAliveMillis = getIntProperty(configurationProperties, CONFIG_KEEP_ALIVE_SECONDS, 30) * 1000L;
+        ConnectionKeepAliveStrategy keepAliveStrategy = (response, context) -> {
+            long serverKeepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            return serverKeepAlive > 0 ? Math.min(serverKeepAlive, keepAliveMillis) : keepAliveMillis;
+        };
+
+        this.httpClient = HttpClients
+                .custom()
+                .setConnectionManager(this.connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy(keepAliveStrategy)
+                .evictExpiredConnections()
+                .evictIdleConnections(getIntProperty(configurationProperties, CONFIG_IDLE_TIMEOUT_SECONDS, 60), TimeUnit.SECONDS)
+                .build();
+
+        this.definitionCache = new DefinitionCache(
+                Integer.parseInt(System.getProperty(SYSPROP_DEF_CACHE_SIZE, "1000")),
+                Long.parseLong(System.getProperty(SYSPROP_DEF_CACHE_TTL, "600")) * 1000);
+
+        this.pageSize = Math.max(1, getIntProperty(configurationProperties, CONFIG_PAGE_SIZE, 100));
+        this.maxPageSize = Math.max(this.pageSize, getIntProperty(configurationProperties, CONFIG_MAX_PAGE_SIZE, 1000));
+        this.maxResults = Math.max(0, getIntProperty(configurationProperties, CONFIG_MAX_RESULTS, 10000));
+
         this.baseURL = baseURL;
         this.username = username;
         this.password = password;
         URIBuilder builder = new URIBuilder(this.baseURL);
         this.scheme = builder.getScheme();
+        this.catalogURI = catalogURI != null ? catalogURI : this.scheme + "://sas-catalog";
+        this.logonURI = logonURI != null ? logonURI : this.scheme + "://sas-logon-app";
         log.info("Creating catalog client with base URL: " + this.baseURL);
-        // Get initial token
-        setAuthToken(username, password);
+        // Get initial token, which is then kept current in the background
+        this.tokenManager = new TokenManager(() -> requestAuthToken(username, password));
+        this.tokenManager.getToken();
+
+        this.asyncClient = new SASCatalogAsyncRestClient(this.catalogURI, sslContext, this.tokenManager, this.definitionCache,
+                getIntProperty(configurationProperties, CONFIG_MAX_PARALLEL_REQUESTS, 20),
+                this.pageSize,
+                this.maxPageSize,
+                this.maxResults,
+                getIntProperty(configurationProperties, CONFIG_CONNECT_TIMEOUT_MS, 10000),
+                getIntProperty(configurationProperties, CONFIG_SOCKET_TIMEOUT_MS, 60000));
     }
 
-    private void setAuthToken(String username, String password) throws Exception {
-        URIBuilder builder = new URIBuilder(this.scheme + "://sas-logon-app/SASLogon/oauth/token");
+    /**
+     * Retrieve the non-blocking client, which shares this client's token and definition cache.
+     * @return the asynchronous catalog client
+     */
+    public SASCatalogAsyncClient getAsyncClient() {
+        return asyncClient;
+    }
+
+    /**
+     * Retrieve the current utilisation of the HTTP connection pool.
+     * @return the leased, pending, available and maximum connection counts across all routes
+     */
+    public PoolStats getPoolStats() {
+        return connectionManager.getTotalStats();
+    }
+
+    @Override
+    public void close() throws IOException {
+        asyncClient.close();
+        tokenManager.close();
+        httpClient.close();
+    }
+
+    private CloseableHttpResponse execute(HttpRequestBase request) throws IOException {
+        if (log.isDebugEnabled()) {
+            PoolStats stats = connectionManager.getTotalStats();
+            log.debug("Connection pool: leased={}, pending={}, available={}, max={}",
+                    stats.getLeased(), stats.getPending(), stats.getAvailable(), stats.getMax());
+        }
+        return httpClient.execute(request);
+    }
+
+    private static int getIntProperty(Map<String, Object> configurationProperties, String name, int defaultValue) {
+        if (configurationProperties == null || configurationProperties.get(name) == null) {
+            return defaultValue;
+        }
+        Object value = configurationProperties.get(name);
+        if (value instanceof Number) {
+            return ((Number) value).intValue();
+        }
+        try {
+            return Integer.parseInt(value.toString().trim());
+        } catch (NumberFormatException e) {
+            log.warn("Could not convert configuration property '{}' value '{}' to a number. Using default: {}", name, value, defaultValue);
+            return defaultValue;
+        }
+    }
+
+    private Map requestAuthToken(String username, String password) throws Exception {
+        URIBuilder builder = new URIBuilder(this.logonURI + "/SASLogon/oauth/token");
 
         List<NameValuePair> params = new ArrayList<>();
         params.add(new BasicNameValuePair("grant_type", "password"));
@@ -102,19 +270,22 @@ public class SASCatalogRestClient implements SASCatalogClient {
         httpPost.setEntity(new UrlEncodedFormEntity(params));
 
         httpPost.addHeader("Authorization", "Basic c2FzLmVjOg==");
-        try (CloseableHttpResponse response = httpClient.execute(httpPost)) {
+        try (CloseableHttpResponse response = execute(httpPost)) {
             log.info("Get Auth Token: " + response.getStatusLine());
-            HttpEntity entity = response.getEntity();
-            InputStreamReader reader = new InputStreamReader(entity.getContent(), StandardCharsets.UTF_8);
-            Map map = new Gson().fromJson(reader, Map.class);
-            if(map.containsKey("access_token")) {
-                this.token = (String) map.get("access_token");
-            } else {
-                throw new RuntimeException("SASLogon response does not contain access token.");
-            }
+            return codec.readObject(bodyReader(response));
         }
     }
 
+    /**
+     * Replace the token that was rejected for the given request, sharing the refresh with any other request that
+     * was rejected at the same time.
+     */
+    private void refreshAuthToken(HttpRequestBase rejected) throws Exception {
+        Header authorization = rejected.getFirstHeader("Authorization");
+        String rejectedToken = authorization == null ? null : authorization.getValue().substring("Bearer ".length());
+        tokenManager.refresh(rejectedToken);
+    }
+
     @Override
     public SASCatalogObject getInstanceByGuid(String guid, String type) throws Exception {
         return getInstanceByGuid(guid, type, 0);
@@ -128,85 +299,310 @@ public class SASCatalogRestClient implements SASCatalogClient {
 
         SASCatalogObject instanceInfo = new SASCatalogObject();
 
-        URIBuilder builder = new URIBuilder(this.scheme + "://sas-catalog/catalog/instances/" + guid);
+        URIBuilder builder = new URIBuilder(this.catalogURI + "/catalog/instances/" + guid);
         HttpGet httpGet = new HttpGet(builder.build());
         addAuthHeader(httpGet);
         httpGet.addHeader("Accept", String.format("application/vnd.sas.metadata.instance.%s+json", type));
-        try (CloseableHttpResponse response = httpClient.execute(httpGet)) {
+        try (CloseableHttpResponse response = execute(httpGet)) {
             log.info("Get Instance (" + guid + "): " + response.getStatusLine());
 
             if(response.getStatusLine().getStatusCode() == 401) {
                 response.close();
-                setAuthToken(username, password);
+                refreshAuthToken(httpGet);
                 return getInstanceByGuid(guid, type, retries+1);
             } else if (response.getStatusLine().getStatusCode() != 200) {
                 return null;
             }
 
-            HttpEntity entity = response.getEntity();
-            InputStreamReader reader = new InputStreamReader(entity.getContent(), StandardCharsets.UTF_8);
-            Map instance = new Gson().fromJson(reader, Map.class);
-
-            instanceInfo = instanceMapToInstance(instance, guid, type);
+            instanceInfo = mapInstance(codec.readObject(bodyReader(response)), type);
         }
 
+        // Only look up the definition once the response has been released
+        addDefinitionInfo(instanceInfo, type);
         return instanceInfo;
     }
 
+    @Override
+    public Map<String, SASCatalogObject> getInstancesByGuids(Collection<String> guids, String type) throws Exception {
+        // Chunks are fetched concurrently by the async client, bounded by its in-flight limit
+        try {
+            return asyncClient.getInstancesByGuids(guids, type).get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    /**
+     * Split a set of GUIDs into groups whose in(id,...) filter stays within the given length.
+     * Duplicate and null GUIDs are dropped.
+     *
+     * @param guids the GUIDs to partition
+     * @param maxFilterLength the longest filter expression allowed for a single request
+     * @return the GUIDs, in their original order, grouped per request
+     */
+    static List<List<String>> partitionForIdFilter(Collection<String> guids, int maxFilterLength) {
+        List<List<String>> chunks = new ArrayList<>();
+        List<String> chunk = new ArrayList<>();
+        int length = "in(id)".length();
+        for(String guid : new LinkedHashSet<>(guids)) {
+            if(guid == null) {
+                continue;
+            }
+            int guidLength = CatalogFilter.quote(guid).length() + 1; // separating comma
+            if(!chunk.isEmpty() && length + guidLength > maxFilterLength) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>();
+                length = "in(id)".length();
+            }
+            chunk.add(guid);
+            length += guidLength;
+        }
+        if(!chunk.isEmpty()) {
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    static String buildIdFilter(List<String> guids) {
+        return CatalogFilter.in("id", guids).toString();
+    }
+
     @Override
     public List<Instance> getInstancesWithParams(Map<String, String> params) throws Exception {
-        return getInstancesWithFilter(params, null, 0);
+        return getInstancesWithParams(params, null);
     }
 
     @Override
     public List<Instance> getInstancesWithParams(Map<String, String> params, Map<String, String> attributeFilter) throws Exception {
-        return getInstancesWithFilter(params, attributeFilter, 0);
+        CatalogPager<Instance> pager = new CatalogPager<Instance>(
+                (start, limit, sink) -> getListingPage(params, null, start, limit, instance -> {
+                    Map<String, String> attributes = (Map<String, String>) instance.get("attributes");
+                    // Not currently possible to filter on attributes in Catalog, have to do it after the fact
+                    if(attributeFilter == null || matchesAttributes(attributes, attributeFilter)) {
+                        Instance inst = new Instance();
+                        inst.setId((String) instance.get("id"));
+                        sink.accept(inst);
+                    }
+                }, 0),
+                getLongParam(params, "start"), getLongParam(params, "limit"), pageSize, isFiltering(attributeFilter))
+                .limitTo(maxResults);
+        List<Instance> instances = new ArrayList<>();
+        pager.forEachRemaining(instances::add);
+        return instances;
+    }
+
+    @Override
+    public List<SASCatalogObject> getEntitiesWithParams(Map<String, String> params, Map<String, String> attributeFilter) throws Exception {
+        return getEntitiesWithParams(params, attributeFilter, 0, null);
+    }
+
+    @Override
+    public List<SASCatalogObject> getEntitiesWithParams(Map<String, String> params, Map<String, String> attributeFilter,
+                                                        int pageSize, ListingObserver observer) throws Exception {
+        List<SASCatalogObject> entities = new ArrayList<>();
+        iterateEntitiesWithParams(params, attributeFilter, pageSize, observer).forEachRemaining(entities::add);
+        return entities;
+    }
+
+    @Override
+    public CatalogPager<SASCatalogObject> iterateEntitiesWithParams(Map<String, String> params, Map<String, String> attributeFilter) {
+        return iterateEntitiesWithParams(params, attributeFilter, 0, null);
+    }
+
+    /**
+     * Iterate over a listing of entities.
+     *
+     * @param pageSize the number of items to request at a time, e.g. more to fill a page after filtering, within the
+     *                 configured page sizes (0 for the configured page size)
+     * @param observer told about each page as it is read, or null
+     */
+    @Override
+    public CatalogPager<SASCatalogObject> iterateEntitiesWithParams(Map<String, String> params, Map<String, String> attributeFilter,
+                                                                  int pageSize, ListingObserver observer) {
+        return new CatalogPager<SASCatalogObject>(
+                (start, limit, sink) -> {
+                    List<SASCatalogObject> entities = new ArrayList<>();
+                    // The listing items already carry the full instance, so map them as they are read
+                    CatalogJsonCodec.Page page = getListingPage(params, "application/vnd.sas.metadata.instance.entity+json", start, limit, instance -> {
+                        Map<String, String> attributes = (Map<String, String>) instance.get("attributes");
+                        // Not currently possible to filter on attributes in Catalog, have to do it after the fact
+                        if(attributeFilter == null || matchesAttributes(attributes, attributeFilter)) {
+                            entities.add(mapInstance(instance, "entity"));
+                        }
+                    }, 0);
+                    addDefinitionInfo(entities, "entity");
+                    entities.forEach(sink);
+                    return page;
+                },
+                getLongParam(params, "start"), getLongParam(params, "limit"),
+                getListingPageSize(pageSize, this.pageSize, this.maxPageSize), isFiltering(attributeFilter))
+                .limitTo(maxResults).observe(observer);
+    }
+
+    /**
+     * Search Catalog's full-text index.  Each page of hits is read from /catalog/search, in relevance order, and the
+     * instances found are then retrieved together, so that they are mapped exactly as a listing's would be.  The
+     * window is handed to the search itself.
+     *
+     * @param text the text to search for, as a phrase
+     * @param start the number of hits to skip
+     * @param maxResults the maximum number of hits to return, or 0 for all of them (up to the configured catalogMaxResults)
+     * @return the instances found
+     */
+    @Override
+    public CatalogPager<SASCatalogObject> searchEntities(String text, long start, long maxResults) {
+        String query = buildSearchQuery(text);
+        return searchPager((pageStart, limit, sink) -> getSearchPage(query, pageStart, limit, hit -> sink.accept((String) hit.get("id")), 0),
+                guids -> getInstancesByGuids(guids, "entity"), start, maxResults, pageSize).limitTo(this.maxResults);
     }
 
-    private List<Instance> getInstancesWithFilter(Map<String, String> params, Map<String, String> attributeFilter, int retries) throws Exception {
+    /**
+     * Retrieves the instances with the given GUIDs.
+     */
+    @FunctionalInterface
+    interface InstanceLookup {
+        /**
+         * @param guids the GUIDs of the instances
+         * @return the instances found, by GUID
+         */
+        Map<String, SASCatalogObject> get(List<String> guids) throws Exception;
+    }
+
+    /**
+     * Page through search hits, retrieving each page's instances together and returning them in hit order.
+     *
+     * @param hits retrieves each page of hits, as GUIDs
+     * @param lookup retrieves the instances of a page of hits
+     * @param start the number of hits to skip
+     * @param maxResults the maximum number of instances to return, or 0 for all of them; hits no longer in the
+     *                   catalog do not count towards it
+     * @param pageSize the number of hits to request at a time
+     * @return the instances found
+     */
+    static CatalogPager<SASCatalogObject> searchPager(CatalogPager.PageFetcher<String> hits, InstanceLookup lookup,
+                                                      long start, long maxResults, int pageSize) {
+        return new CatalogPager<SASCatalogObject>(
+                (pageStart, limit, sink) -> {
+                    List<String> guids = new ArrayList<>();
+                    CatalogJsonCodec.Page page = hits.fetch(pageStart, limit, guids::add);
+                    // A hit may have been deleted since it was indexed
+                    Map<String, SASCatalogObject> entities = guids.isEmpty() ? Collections.emptyMap() : lookup.get(guids);
+                    for(String guid : guids) {
+                        SASCatalogObject entity = entities.get(guid);
+                        if(entity != null) {
+                            sink.accept(entity);
+                        }
+                    }
+                    return page;
+                },
+                start, maxResults, pageSize, false);
+    }
+
+    /**
+     * @param text the text to search for
+     * @return the text as a search phrase, with quotes and backslashes escaped
+     */
+    static String buildSearchQuery(String text) {
+        return CatalogFilter.quote(text);
+    }
+
+    private CatalogJsonCodec.Page getSearchPage(String query, long start, int limit, CatalogJsonCodec.ItemHandler handler,
+                                                int retries) throws Exception {
 
         if(retries > MAX_RETRIES) {
             throw new RuntimeException("Could not complete request after " + retries + " retries.");
         }
 
-        List<Instance> instances = new ArrayList<>();
+        URIBuilder builder = new URIBuilder(this.catalogURI + "/catalog/search");
+        builder.addParameter("q", query);
+        builder.addParameter("start", String.valueOf(start));
+        builder.addParameter("limit", String.valueOf(limit));
+        HttpGet httpGet = new HttpGet(builder.build());
+        addAuthHeader(httpGet);
+        try (CloseableHttpResponse response = execute(httpGet)) {
+            log.info("Search (" + query + ", start " + start + ", limit " + limit + "): " + response.getStatusLine());
+
+            if(response.getStatusLine().getStatusCode() == 401) {
+                response.close();
+                refreshAuthToken(httpGet);
+                return getSearchPage(query, start, limit, handler, retries+1);
+            }
+            if(response.getStatusLine().getStatusCode() != 200) {
+                throw new RuntimeException("Catalog search failed: " + response.getStatusLine());
+            }
+
+            return codec.readPage(bodyReader(response), handler);
+        }
+    }
 
-        URIBuilder builder = new URIBuilder(this.scheme + "://sas-catalog/catalog/instances");
+    /**
+     * Retrieve a single page of /catalog/instances.  The start and limit of the page replace any given in the params.
+     */
+    private CatalogJsonCodec.Page getListingPage(Map<String, String> params, String acceptItem, long start, int limit,
+                                                 CatalogJsonCodec.ItemHandler handler, int retries) throws Exception {
+
+        if(retries > MAX_RETRIES) {
+            throw new RuntimeException("Could not complete request after " + retries + " retries.");
+        }
+
+        URIBuilder builder = new URIBuilder(this.catalogURI + "/catalog/instances");
         for(Map.Entry<String, String> param : params.entrySet()) {
-            log.info("Param: " + param.getKey() + " : " + param.getValue());
-            builder.addParameter(param.getKey(), param.getValue());
+            if(!param.getKey().equals("start") && !param.getKey().equals("limit")) {
+                log.info("Param: " + param.getKey() + " : " + param.getValue());
+                builder.addParameter(param.getKey(), param.getValue());
+            }
         }
+        builder.addParameter("start", String.valueOf(start));
+        builder.addParameter("limit", String.valueOf(limit));
         HttpGet httpGet = new HttpGet(builder.build());
+        if(acceptItem != null) {
+            httpGet.addHeader("Accept-Item", acceptItem);
+        }
         addAuthHeader(httpGet);
-//        httpGet.addHeader("Accept", String.format("application/vnd.sas.metadata.instance.%s+json", type));
-        try (CloseableHttpResponse response = httpClient.execute(httpGet)) {
-            log.info("Get Instances with filter (" + params.toString() + "): " + response.getStatusLine());
+        try (CloseableHttpResponse response = execute(httpGet)) {
+            log.info("Get Instances with filter (" + params.toString() + ", start " + start + ", limit " + limit + "): " + response.getStatusLine());
 
             if(response.getStatusLine().getStatusCode() == 401) {
                 response.close();
-                setAuthToken(username, password);
-                return getInstancesWithFilter(params, attributeFilter, retries+1);
+                refreshAuthToken(httpGet);
+                return getListingPage(params, acceptItem, start, limit, handler, retries+1);
             }
-
-            HttpEntity entity = response.getEntity();
-            InputStreamReader reader = new InputStreamReader(entity.getContent(), StandardCharsets.UTF_8);
-            Map results = new Gson().fromJson(reader, Map.class);
-            List<Map<String, Object>> items = (List<Map<String, Object>>) results.get("items");
-            for(Map<String, Object> instance : items) {
-                Map<String, String> attributes = (Map<String, String>) instance.get("attributes");
-                // Not currently possible to filter on attributes in Catalog, have to do it after the fact
-                if(attributeFilter == null || matchesAttributes(attributes, attributeFilter)) {
-                    Instance inst = new Instance();
-                    inst.setId((String) instance.get("id"));
-                    instances.add(inst);
-                }
+            if(response.getStatusLine().getStatusCode() != 200) {
+                throw new RuntimeException("Catalog listing failed: " + response.getStatusLine());
             }
+
+            return codec.readPage(bodyReader(response), handler);
         }
+    }
 
-        return instances;
+    static boolean isFiltering(Map<String, String> attributeFilter) {
+        return attributeFilter != null && !attributeFilter.isEmpty();
     }
 
-    private boolean matchesAttributes(Map<String, String> attributes, Map<String, String> attributeFilter) {
+    /**
+     * @param requested the number of items a listing asks for at a time, or 0 for the default
+     * @param pageSize the configured page size, also the least that is asked for
+     * @param maxPageSize the configured maximum page size
+     * @return the number of items to request from Catalog at a time
+     */
+    static int getListingPageSize(int requested, int pageSize, int maxPageSize) {
+        return requested <= 0 ? pageSize : Math.max(pageSize, Math.min(maxPageSize, requested));
+    }
+
+    static long getLongParam(Map<String, String> params, String name) {
+        String value = params.get(name);
+        if(StringUtils.isBlank(value)) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring invalid '{}' parameter: {}", name, value);
+            return 0;
+        }
+    }
+
+    static boolean matchesAttributes(Map<String, String> attributes, Map<String, String> attributeFilter) {
         for(Map.Entry<String, String> attribute : attributeFilter.entrySet()) {
             if(!(attributes.containsKey(attribute.getKey()) && attributes.get(attribute.getKey()).equals(attribute.getValue()))) {
                 return false;
@@ -215,51 +611,73 @@ public class SASCatalogRestClient implements SASCatalogClient {
         return true;
     }
 
-    private void addDefinitionInfo(SASCatalogObject instanceInfo, String definitionId, String type) throws Exception {
-        addDefinitionInfo(instanceInfo, definitionId, type, 0);
+    @Override
+    public void invalidateDefinition(String definitionId) {
+        if(definitionId == null) {
+            definitionCache.invalidateAll();
+        } else {
+            definitionCache.invalidate(definitionId);
+        }
     }
 
-    private void addDefinitionInfo(SASCatalogObject instanceInfo, String definitionId, String type, int retries) throws Exception {
+    private Map getDefinition(String definitionId, String type, int retries) throws Exception {
 
         if(retries > MAX_RETRIES) {
             throw new RuntimeException("Could not complete request after " + retries + " retries.");
         }
 
-        URIBuilder builder = new URIBuilder(this.scheme + "://sas-catalog/catalog/definitions/" + definitionId);
+        DefinitionCache.Entry cached = definitionCache.get(definitionId);
+        if(cached != null && definitionCache.isFresh(cached)) {
+            return cached.getDefinition();
+        }
+
+        URIBuilder builder = new URIBuilder(this.catalogURI + "/catalog/definitions/" + definitionId);
         HttpGet httpGet = new HttpGet(builder.build());
         httpGet.addHeader("Accept", String.format("application/vnd.sas.metadata.definition.%s+json", type));
+        if(cached != null && cached.getEtag() != null) {
+            // Stale entry: let Catalog tell us whether it has changed rather than downloading it again
+            httpGet.addHeader("If-None-Match", cached.getEtag());
+        }
         addAuthHeader(httpGet);
-        try (CloseableHttpResponse response = httpClient.execute(httpGet)) {
+        try (CloseableHttpResponse response = execute(httpGet)) {
             log.info("Get Definition (" + definitionId + "): " + response.getStatusLine());
 
             if(response.getStatusLine().getStatusCode() == 401) {
-                setAuthToken(username, password);
-                addDefinitionInfo(instanceInfo, definitionId, type, retries+1);
-                return;
+                response.close();
+                refreshAuthToken(httpGet);
+                return getDefinition(definitionId, type, retries+1);
+            } else if(response.getStatusLine().getStatusCode() == 304 && cached != null) {
+                definitionCache.revalidated(definitionId);
+                return cached.getDefinition();
             }
 
-            HttpEntity entity = response.getEntity();
-            InputStreamReader reader = new InputStreamReader(entity.getContent(), StandardCharsets.UTF_8);
-            Map definition = new Gson().fromJson(reader, Map.class);
-
-            instanceInfo.defId = definitionId;
-            instanceInfo.addDefinitionProperty("definitionType", definition.get("definitionType"));
-            instanceInfo.addDefinitionProperty("name", definition.get("name"));
-            instanceInfo.addDefinitionProperty("label", definition.get("label"));
-            instanceInfo.addDefinitionProperty("description", definition.get("description"));
-            instanceInfo.addDefinitionProperty("name", definition.get("name"));
-            instanceInfo.addDefinitionProperty("baseType", definition.get("baseType"));
-
-            instanceInfo.addDefinitionProperty("version", definition.get("version"));
-            instanceInfo.addDefinitionProperty("createdBy", definition.get("createdBy"));
-            instanceInfo.addDefinitionProperty("modifiedBy", definition.get("modifiedBy"));
-            instanceInfo.addDefinitionProperty("creationTimeStamp", definition.get("creationTimeStamp"));
-            instanceInfo.addDefinitionProperty("modifiedTimeStamp", definition.get("modifiedTimeStamp"));
+            Map definition = codec.readObject(bodyReader(response));
+            if(response.getStatusLine().getStatusCode() == 200) {
+                Header etag = response.getFirstHeader("ETag");
+                definitionCache.put(definitionId, definition, etag == null ? null : etag.getValue());
+            }
+            return definition;
         }
     }
 
-    private void addAuthHeader(HttpRequestBase request) {
-        String authHeader = String.format("Bearer %s", this.token);
+    static void addDefinitionInfo(SASCatalogObject instanceInfo, String definitionId, Map definition) {
+        instanceInfo.defId = definitionId;
+        instanceInfo.addDefinitionProperty("definitionType", definition.get("definitionType"));
+        instanceInfo.addDefinitionProperty("name", definition.get("name"));
+        instanceInfo.addDefinitionProperty("label", definition.get("label"));
+        instanceInfo.addDefinitionProperty("description", definition.get("description"));
+        instanceInfo.addDefinitionProperty("name", definition.get("name"));
+        instanceInfo.addDefinitionProperty("baseType", definition.get("baseType"));
+
+        instanceInfo.addDefinitionProperty("version", definition.get("version"));
+        instanceInfo.addDefinitionProperty("createdBy", definition.get("createdBy"));
+        instanceInfo.addDefinitionProperty("modifiedBy", definition.get("modifiedBy"));
+        instanceInfo.addDefinitionProperty("creationTimeStamp", definition.get("creationTimeStamp"));
+        instanceInfo.addDefinitionProperty("modifiedTimeStamp", definition.get("modifiedTimeStamp"));
+    }
+
+    private void addAuthHeader(HttpRequestBase request) throws Exception {
+        String authHeader = String.format("Bearer %s", tokenManager.getToken());
         request.addHeader("Authorization", authHeader);
     }
 
@@ -278,94 +696,114 @@ public class SASCatalogRestClient implements SASCatalogClient {
             defName = "reference";
         }
 
-        URIBuilder builder = new URIBuilder(this.scheme + "://sas-catalog/catalog/definitions");
+        URIBuilder builder = new URIBuilder(this.catalogURI + "/catalog/definitions");
         builder.addParameter("filter", String.format("and(eq(name,%s),eq(definitionType,%s))", defName, type));
         HttpGet httpGet = new HttpGet(builder.build());
         addAuthHeader(httpGet);
-        try (CloseableHttpResponse response = httpClient.execute(httpGet)) {
+        try (CloseableHttpResponse response = execute(httpGet)) {
             log.info("Definition Exists by Name (" + defName + "): " + response.getStatusLine());
 
             if(response.getStatusLine().getStatusCode() == 401) {
                 response.close();
-                setAuthToken(username, password);
+                refreshAuthToken(httpGet);
                 return definitionExistsByName(defName, type, retries+1);
             }
+            if(response.getStatusLine().getStatusCode() != 200) {
+                throw new RuntimeException("Catalog definition lookup failed: " + response.getStatusLine());
+            }
 
-            HttpEntity entity = response.getEntity();
-            InputStreamReader reader = new InputStreamReader(entity.getContent(), StandardCharsets.UTF_8);
-            Map map = new Gson().fromJson(reader, Map.class);
-            return (double) map.get("count") >= 1;
+            return codec.readPage(bodyReader(response), definition -> { }).getCount() >= 1;
         }
     }
 
     @Override
     public List<SASCatalogObject> getRelationshipsByEntityGuid(String guid) throws Exception {
-        return getRelationshipsByEntityGuid(guid, 0);
+        return getRelationshipsByEntityGuid(guid, null, 0, 0);
     }
 
-    private List<SASCatalogObject> getRelationshipsByEntityGuid(String guid, int retries) throws Exception {
-        if(retries > MAX_RETRIES) {
-            throw new RuntimeException("Could not complete request after " + retries + " retries.");
+    @Override
+    public List<SASCatalogObject> getRelationshipsByEntityGuid(String guid, Collection<String> relationshipTypes, long start, long limit) throws Exception {
+        if(relationshipTypes != null && relationshipTypes.isEmpty()) {
+            return new ArrayList<>();
+        }
+        if(start <= 0 && limit <= 0) {
+            // Pages after the first are fetched concurrently by the async client, bounded by its in-flight limit
+            try {
+                return asyncClient.getRelationshipsByEntityGuid(guid, relationshipTypes).get();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            }
         }
 
+        // Only the requested slice is wanted, so read pages in order until it is filled
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("filter", buildRelationshipFilter(guid, relationshipTypes));
+        params.put("sortBy", RELATIONSHIP_SORT_BY);
+        boolean checkTypes = needsRelationshipTypeCheck(relationshipTypes);
+        CatalogPager<SASCatalogObject> pager = new CatalogPager<>(
+                (pageStart, pageLimit, sink) -> {
+                    List<SASCatalogObject> relationships = new ArrayList<>();
+                    CatalogJsonCodec.Page page = getListingPage(params, "application/vnd.sas.metadata.instance.relationship+json", pageStart, pageLimit, relationship -> {
+                        SASCatalogObject mapped = mapInstance(relationship, "relationship");
+                        if(!checkTypes || relationshipTypes.contains(mapped.getInstanceProperty("type"))) {
+                            relationships.add(mapped);
+                        }
+                    }, 0);
+                    addDefinitionInfo(relationships, "relationship");
+                    relationships.forEach(sink);
+                    return page;
+                },
+                start, limit, pageSize, checkTypes);
         List<SASCatalogObject> relationships = new ArrayList<>();
+        pager.forEachRemaining(relationships::add);
+        return relationships;
+    }
 
-        URIBuilder builder = new URIBuilder(this.scheme + "://sas-catalog/catalog/instances");
-        String filter = String.format("or(eq(endpoint1Id,'%s'),eq(endpoint2Id,'%s'))", guid, guid);
-        builder.addParameter("filter", filter);
-        HttpGet httpGet = new HttpGet(builder.build());
-        httpGet.addHeader("Accept-Item", "application/vnd.sas.metadata.instance.relationship+json");
-        addAuthHeader(httpGet);
-        try (CloseableHttpResponse response = httpClient.execute(httpGet)) {
-            log.info("Get relationship for entity (" + guid + "): " + response.getStatusLine());
-
-            if(response.getStatusLine().getStatusCode() == 401) {
-                response.close();
-                setAuthToken(username, password);
-                return getRelationshipsByEntityGuid(guid, retries+1);
-            }
+    /**
+     * Build the filter for the relationships of an entity, optionally limited to some relationship types.
+     * Relationship types of the form relatedObjects.role can only be limited to relatedObjects in Catalog, and
+     * need {@link #needsRelationshipTypeCheck(Collection)} applied to the results.
+     *
+     * @param guid the GUID of the entity
+     * @param relationshipTypes the Catalog relationship types to include, or null for all
+     * @return the filter expression
+     */
+    static String buildRelationshipFilter(String guid, Collection<String> relationshipTypes) {
+        CatalogFilter filter = CatalogFilter.or(CatalogFilter.eq("endpoint1Id", guid), CatalogFilter.eq("endpoint2Id", guid));
+        if(relationshipTypes == null) {
+            return filter.toString();
+        }
+        Set<String> catalogTypes = new TreeSet<>();
+        for(String relationshipType : relationshipTypes) {
+            catalogTypes.add(relationshipType.startsWith("relatedObjects.") ? "relatedObjects" : relationshipType);
+        }
+        return CatalogFilter.and(filter, CatalogFilter.in("type", catalogTypes)).toString();
+    }
 
-            HttpEntity entity = response.getEntity();
-            InputStreamReader reader = new InputStreamReader(entity.getContent(), StandardCharsets.UTF_8);
-            Map map = new Gson().fromJson(reader, Map.class);
- 
+    static boolean needsRelationshipTypeCheck(Collection<String> relationshipTypes) {
+        return relationshipTypes != null && relationshipTypes.stream().anyMatch(type -> type.startsWith("relatedObjects."));
+    }
 
-            List relMaps = (List) map.get("items");
+    private static Reader bodyReader(CloseableHttpResponse response) throws IOException {
+        return new InputStreamReader(response.getEntity().getContent(), StandardCharsets.UTF_8);
+    }
 
-            for(Object rel : relMaps) {
-                Map relMap = (Map) rel;
-                relationships.add(instanceMapToInstance(relMap, guid, "relationship"));
-            }
+    private void addDefinitionInfo(SASCatalogObject instanceInfo, String type) throws Exception {
+        addDefinitionInfo(instanceInfo, instanceInfo.defId, getDefinition(instanceInfo.defId, type, 0));
+    }
 
-            if (((double)map.get("count")) > ((double)map.get("limit"))) {
-                String limit = String.format("%,.0f", (double)map.get("count"));
-                String start = String.format("%,.0f", (double)map.get("limit"));
-                builder.addParameter("limit", limit);
-                builder.addParameter("start", start);
-                httpGet = new HttpGet(builder.build());
-                httpGet.addHeader("Accept-Item", "application/vnd.sas.metadata.instance.relationship+json");
-                addAuthHeader(httpGet);
-                try (CloseableHttpResponse responsePaged = httpClient.execute(httpGet)) {
-                    log.info("Get relationship for entity (" + guid + "): " + response.getStatusLine());
-
-                    entity = responsePaged.getEntity();
-                    reader = new InputStreamReader(entity.getContent(), StandardCharsets.UTF_8);
-                    map = new Gson().fromJson(reader, Map.class);
-
-                    relMaps = (List) map.get("items");
-
-                    for(Object rel : relMaps) {
-                        Map relMap = (Map) rel;
-                        relationships.add(instanceMapToInstance(relMap, guid, "relationship"));
-                    }
-            }
+    private void addDefinitionInfo(List<SASCatalogObject> instances, String type) throws Exception {
+        for(SASCatalogObject instanceInfo : instances) {
+            addDefinitionInfo(instanceInfo, type);
         }
-        }
-
-        return relationships;
     }
 
-    private SASCatalogObject instanceMapToInstance(Map instance, String guid, String type) throws Exception {
+    /**
+     * Map the instance properties of a Catalog instance.  The definition properties are added separately by
+     * {@link #addDefinitionInfo(SASCatalogObject, String, Map)}, so that definitions can be looked up after the
+     * response has been read.
+     */
+    static SASCatalogObject mapInstance(Map instance, String type) {
         SASCatalogObject instanceInfo = new SASCatalogObject();
 
         String definitionId = (String) instance.get("definitionId");
@@ -404,8 +842,47 @@ public class SASCatalogRestClient implements SASCatalogClient {
         }
 
         instanceInfo.attributes = attributes;
-        addDefinitionInfo(instanceInfo, definitionId, type);
+        instanceInfo.defId = definitionId;
 
         return instanceInfo;
     }
+
+    /**
+     * Accepts every certificate, and every host name.  The JDK HTTP client checks host names within the trust
+     * manager (unless it is an X509ExtendedTrustManager), so a trust-all strategy alone would still reject a server
+     * whose certificate does not name it.
+     */
+    static final class TrustAllManager extends X509ExtendedTrustManager {
+
+        static final TrustAllManager INSTANCE = new TrustAllManager();
+
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String authType) {
+        }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String authType) {
+        }
+
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String authType, Socket socket) {
+        }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String authType, Socket socket) {
+        }
+
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String authType, SSLEngine engine) {
+        }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String authType, SSLEngine engine) {
+        }
+
+        @Override
+        public X509Certificate[] getAcceptedIssuers() {
+            return new X509Certificate[0];
+        }
+    }
 }
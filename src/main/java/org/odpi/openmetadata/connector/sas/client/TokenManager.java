@@ -0,0 +1,160 @@
+//---------------------------------------------------------------------------
+// Copyright (c) 2020, SAS Institute Inc., Cary, NC, USA.  All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+//---------------------------------------------------------------------------
+
+package org.odpi.openmetadata.connector.sas.client;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Keeps a SASLogon access token current for any number of concurrent requests.
+ *
+ * The token is refreshed in the background shortly before it expires (using the {@code expires_in} of the token
+ * response), so requests normally never see an expired token.  When a refresh is needed on demand, e.g. after a
+ * 401, concurrent callers share a single call to SASLogon rather than each requesting their own token.
+ */
+public class TokenManager {
+
+    private static final Logger log = LoggerFactory.getLogger(TokenManager.class);
+
+    // Refresh when this fraction of the token's lifetime remains, but never closer than the minimum to expiry
+    private static final double REFRESH_AHEAD_FRACTION = 0.1;
+    private static final long MIN_REFRESH_AHEAD_MILLIS = 30000;
+    // Short-lived tokens are refreshed half way through their lifetime, and never sooner than this
+    static final long MIN_REFRESH_DELAY_MILLIS = 1000;
+    // Lifetime of a token whose response has no expires_in
+    private static final long NO_EXPIRY = -1;
+
+    private final Callable<Map> tokenRequest;
+    private final LongSupplier clock;
+    private final ScheduledExecutorService scheduler;
+    private final ReentrantLock refreshLock = new ReentrantLock();
+
+    private volatile Token current;
+    private ScheduledFuture<?> scheduledRefresh;
+
+    /**
+     * @param tokenRequest requests a new token from SASLogon, returning the parsed token response
+     */
+    public TokenManager(Callable<Map> tokenRequest) {
+        this(tokenRequest, System::currentTimeMillis, Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sas-catalog-token-refresh");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    TokenManager(Callable<Map> tokenRequest, LongSupplier clock, ScheduledExecutorService scheduler) {
+        this.tokenRequest = tokenRequest;
+        this.clock = clock;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Retrieve a valid access token, requesting one only if there is no unexpired token.
+     *
+     * @return the access token
+     * @throws Exception if a token could not be obtained from SASLogon
+     */
+    public String getToken() throws Exception {
+        Token token = current;
+        if (token != null && !token.isExpired(clock.getAsLong())) {
+            return token.value;
+        }
+        return refresh(token == null ? null : token.value);
+    }
+
+    /**
+     * Retrieve the current access token without contacting SASLogon.
+     *
+     * @return the access token, or null if there is no unexpired token
+     */
+    public String getCurrentToken() {
+        Token token = current;
+        return token != null && !token.isExpired(clock.getAsLong()) ? token.value : null;
+    }
+
+    /**
+     * Replace a token that SAS rejected.  If another thread already replaced it, its new token is returned without
+     * contacting SASLogon again.
+     *
+     * @param rejectedToken the token that was rejected (or null to force a refresh)
+     * @return the new access token
+     * @throws Exception if a token could not be obtained from SASLogon
+     */
+    public String refresh(String rejectedToken) throws Exception {
+        refreshLock.lock();
+        try {
+            Token token = current;
+            if (token != null && !token.value.equals(rejectedToken) && !token.isExpired(clock.getAsLong())) {
+                // Someone else refreshed while we were waiting for the lock
+                return token.value;
+            }
+            Map response = tokenRequest.call();
+            if (response == null || !response.containsKey("access_token")) {
+                throw new RuntimeException("SASLogon response does not contain access token.");
+            }
+            long now = clock.getAsLong();
+            long expiresInMillis = response.get("expires_in") instanceof Number
+                    ? Math.max(0, (long) (((Number) response.get("expires_in")).doubleValue() * 1000))
+                    : NO_EXPIRY;
+            token = new Token((String) response.get("access_token"),
+                    expiresInMillis == NO_EXPIRY ? Long.MAX_VALUE : now + expiresInMillis);
+            current = token;
+            scheduleRefresh(expiresInMillis);
+            return token.value;
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private void scheduleRefresh(long expiresInMillis) {
+        if (expiresInMillis == NO_EXPIRY || scheduler.isShutdown()) {
+            return;
+        }
+        if (scheduledRefresh != null) {
+            scheduledRefresh.cancel(false);
+        }
+        long refreshAhead = Math.min(Math.max((long) (expiresInMillis * REFRESH_AHEAD_FRACTION), MIN_REFRESH_AHEAD_MILLIS),
+                expiresInMillis / 2);
+        long delay = Math.max(expiresInMillis - refreshAhead, MIN_REFRESH_DELAY_MILLIS);
+        String scheduledFor = current.value;
+        scheduledRefresh = scheduler.schedule(() -> {
+            try {
+                refresh(scheduledFor);
+            } catch (Exception e) {
+                // Requests will retry on demand once the current token expires
+                log.warn("Background refresh of SASLogon token failed: {}", e.getMessage());
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private static final class Token {
+        private final String value;
+        private final long expiresAt;
+
+        private Token(String value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+    }
+}
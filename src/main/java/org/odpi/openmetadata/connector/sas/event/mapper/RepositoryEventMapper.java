@@ -254,12 +254,24 @@ public class RepositoryEventMapper extends OMRSRepositoryEventMapperBase
             catalogObject.defId = instance.getDefinitionId();
             catalogObject.addInstance(instance);
             catalogObject.addDefinition(definition);
+            // Keep the connector's view of this entity current
+            if (catalogOMRSRepositoryConnector != null && CatalogType.ENTITY.equals(type)) {
+                if (eventPayload.getOperation().startsWith(DELETE)) {
+                    catalogOMRSRepositoryConnector.entityRemoved(catalogObject);
+                } else {
+                    catalogOMRSRepositoryConnector.entityChanged(catalogObject);
+                }
+            }
         } else if(eventPayload.getType().equals(CatalogEventPayload.TYPE_DEFINITION)) {
             Definition definition = eventPayload.getDefinition();
             type = definition.getDefinitionType();
             catalogObject.guid = definition.getId();
             catalogObject.defId = definition.getId();
             catalogObject.addDefinition(definition);
+            // Any cached copy of this definition is now out of date
+            if (catalogOMRSRepositoryConnector != null) {
+                catalogOMRSRepositoryConnector.invalidateDefinition(definition.getId());
+            }
         } else {
             log.warn("Invalid catalog object type: " + eventPayload.getType());
             return;
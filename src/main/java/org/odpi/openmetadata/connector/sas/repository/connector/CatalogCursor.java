@@ -0,0 +1,85 @@
+//---------------------------------------------------------------------------
+// Copyright (c) 2020, SAS Institute Inc., Cary, NC, USA.  All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+//---------------------------------------------------------------------------
+
+package org.odpi.openmetadata.connector.sas.repository.connector;
+
+import org.odpi.openmetadata.connector.sas.client.CatalogPager;
+import org.odpi.openmetadata.connector.sas.repository.connector.mapping.SASCatalogObject;
+import org.odpi.openmetadata.connector.sas.repository.connector.stores.ProxyHeaderCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A cursor on the entities found by a {@link CatalogQuery} or search.  A listing that fails is logged and ends the
+ * cursor early.  Each entity read has its proxy header cached.
+ */
+public class CatalogCursor implements Iterator<SASCatalogObject> {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogCursor.class);
+
+    private final String description;
+    private final CatalogPager<SASCatalogObject> pager;
+    private final ProxyHeaderCache proxyHeaderCache;
+    private RuntimeException failure;
+
+    /**
+     * @param description what is being read, for logging
+     * @param pager the listing
+     * @param proxyHeaderCache the cache of entity proxy headers
+     */
+    CatalogCursor(String description, CatalogPager<SASCatalogObject> pager, ProxyHeaderCache proxyHeaderCache) {
+        this.description = description;
+        this.pager = pager;
+        this.proxyHeaderCache = proxyHeaderCache;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (failure != null) {
+            return false;
+        }
+        try {
+            return pager.hasNext();
+        } catch (RuntimeException e) {
+            log.error("Could not get entities for " + description, e);
+            failure = e;
+            return false;
+        }
+    }
+
+    @Override
+    public SASCatalogObject next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        SASCatalogObject entity = pager.next();
+        proxyHeaderCache.put(entity);
+        return entity;
+    }
+
+    /**
+     * @return true if the listing failed, and so ended early
+     */
+    public boolean hasFailed() {
+        return failure != null;
+    }
+
+    /**
+     * @return the error that ended the listing early, or null if it has not failed
+     */
+    public RuntimeException getFailure() {
+        return failure;
+    }
+
+    /**
+     * @return the position in the listing just after the last entity read, or null if the listing failed
+     */
+    public CatalogPager.ResumePoint getResumePoint() {
+        return failure != null ? null : pager.getResumePoint();
+    }
+}
@@ -0,0 +1,139 @@
+//---------------------------------------------------------------------------
+// Copyright (c) 2020, SAS Institute Inc., Cary, NC, USA.  All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+//---------------------------------------------------------------------------
+
+package org.odpi.openmetadata.connector.sas.repository.connector;
+
+import org.odpi.openmetadata.connector.sas.client.CatalogFilter;
+import org.odpi.openmetadata.connector.sas.client.CatalogPager;
+import org.odpi.openmetadata.connector.sas.client.ListingObserver;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A single Catalog listing run on behalf of an entity search: the instances of one Catalog type mapped to the OMRS
+ * type being searched, together with the attribute filter to apply to them after the fact.  The page size to read the
+ * listing with, the observer of its pages and any point to resume the listing from are chosen by the
+ * {@link CatalogQueryPlanner}.
+ */
+public class CatalogQuery {
+
+    private final String omrsTypeName;
+    private final String catalogTypeName;
+    private final CatalogFilter filter;
+    private final Map<String, String> queryParams;
+    private final Map<String, String> attributeFilter;
+    private int pageSize;
+    private ListingObserver observer;
+    private CatalogPager.ResumePoint resumePoint;
+
+    /**
+     * @param omrsTypeName the OMRS entity type being searched
+     * @param catalogTypeName the Catalog type listed, or null if the listing is not limited by type
+     * @param filter the Catalog filter of the listing, or null for none
+     * @param attributeFilter the attribute values every result must have
+     */
+    public CatalogQuery(String omrsTypeName, String catalogTypeName, CatalogFilter filter, Map<String, String> attributeFilter) {
+        this.omrsTypeName = omrsTypeName;
+        this.catalogTypeName = catalogTypeName;
+        this.filter = filter;
+        this.queryParams = new HashMap<>();
+        if (filter != null) {
+            queryParams.put("filter", filter.toString());
+        }
+        this.attributeFilter = attributeFilter;
+    }
+
+    public String getOmrsTypeName() {
+        return omrsTypeName;
+    }
+
+    public String getCatalogTypeName() {
+        return catalogTypeName;
+    }
+
+    public CatalogFilter getFilter() {
+        return filter;
+    }
+
+    /**
+     * @return the parameters of the /catalog/instances request, to which paging and sorting may be added
+     */
+    public Map<String, String> getQueryParams() {
+        return queryParams;
+    }
+
+    public Map<String, String> getAttributeFilter() {
+        return attributeFilter;
+    }
+
+    /**
+     * @return true if some results may be dropped after Catalog has returned them
+     */
+    public boolean isPostFiltered() {
+        return attributeFilter != null && !attributeFilter.isEmpty();
+    }
+
+    /**
+     * @return the number of items to request from Catalog at a time, or 0 for the default
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public void setPageSize(int pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * @return told about each page of the listing as it is read, or null
+     */
+    public ListingObserver getObserver() {
+        return observer;
+    }
+
+    public void setObserver(ListingObserver observer) {
+        this.observer = observer;
+    }
+
+    /**
+     * @return where to carry on reading the listing from, or null to read from the start of its window
+     */
+    public CatalogPager.ResumePoint getResumePoint() {
+        return resumePoint;
+    }
+
+    public void setResumePoint(CatalogPager.ResumePoint resumePoint) {
+        this.resumePoint = resumePoint;
+    }
+
+    /**
+     * @return true if Catalog has been asked to return the results in sequence
+     */
+    public boolean isSortedInCatalog() {
+        return queryParams.containsKey("sortBy");
+    }
+
+    /**
+     * @return a key that is the same for queries returning the same results: the filter is in canonical form, and
+     *         parameters and attributes are in name order
+     */
+    public String getKey() {
+        return new TreeMap<>(queryParams) + "|" + (attributeFilter == null ? "{}" : new TreeMap<>(attributeFilter));
+    }
+
+    @Override
+    public String toString() {
+        return "CatalogQuery{" +
+                "omrsTypeName='" + omrsTypeName + '\'' +
+                ", catalogTypeName='" + catalogTypeName + '\'' +
+                ", queryParams=" + queryParams +
+                ", attributeFilter=" + attributeFilter +
+                ", pageSize=" + pageSize +
+                ", resumePoint=" + resumePoint +
+                '}';
+    }
+}
@@ -0,0 +1,255 @@
+//---------------------------------------------------------------------------
+// Copyright (c) 2020, SAS Institute Inc., Cary, NC, USA.  All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+//---------------------------------------------------------------------------
+
+package org.odpi.openmetadata.connector.sas.repository.connector;
+
+import org.odpi.openmetadata.connector.sas.client.CatalogFilter;
+import org.odpi.openmetadata.connector.sas.client.CatalogPager;
+import org.odpi.openmetadata.connector.sas.client.ListingObserver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Plans the Catalog queries of an entity search.
+ *
+ * Catalog can filter on instance fields, but not on attributes, which are only checked once the items have been
+ * downloaded.  The planner decides which predicates are sent to Catalog and which are checked afterwards, and how many
+ * items to request at a time so that a page filtered after the fact still comes back full.
+ *
+ * For the latter it keeps statistics from the queries it has planned: for each Catalog type and set of attributes
+ * filtered on, how many of the items read passed the filter (its selectivity), and for each Catalog filter, the total
+ * count Catalog last reported.  A query filtering on a selective attribute then asks for enough items to fill the
+ * requested page in as few requests as possible.
+ *
+ * Where the queries of a search stopped once a page of results had been read from them is kept in its
+ * {@link SearchCursors}, so that the next page carries on from there rather than reading and filtering every earlier
+ * page again.
+ */
+public class CatalogQueryPlanner {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogQueryPlanner.class);
+
+    // Ask for a little more than the estimate, so that a page usually needs only the one request
+    private static final double HEADROOM = 1.25;
+    // Until a filter has been seen, assume 1 in 2 items pass it
+    private static final double PRIOR_READ = 2;
+    private static final double PRIOR_MATCHED = 1;
+    // Statistics are halved beyond this many items read, so that they follow changes in the catalog
+    private static final long MAX_READ = 100000;
+    private static final int MAX_COUNTS = 1000;
+    // Cursors of a planner without its own: enough for a few pages of a thousand searches, and the GUIDs they
+    // returned, kept for a minute
+    private static final int MAX_CURSORS = 1000;
+    private static final int MAX_HELD_GUIDS = 100000;
+    private static final long CURSOR_IDLE_MILLIS = 60000;
+
+    private final SearchCursors cursors;
+    private final Map<String, Selectivity> selectivities = new ConcurrentHashMap<>();
+    private final Map<String, Long> counts = Collections.synchronizedMap(new LinkedHashMap<String, Long>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > MAX_COUNTS;
+        }
+    });
+
+    public CatalogQueryPlanner() {
+        this(new SearchCursors(MAX_CURSORS, MAX_HELD_GUIDS, CURSOR_IDLE_MILLIS));
+    }
+
+    /**
+     * @param cursors where to keep where the queries of each search stopped
+     */
+    public CatalogQueryPlanner(SearchCursors cursors) {
+        this.cursors = cursors;
+    }
+
+    /**
+     * Plan the queries searching one Catalog type.  Predicates on instance fields are sent to Catalog, and those on
+     * attributes checked afterwards.  When any predicate may match, the attribute predicates cannot be checked after
+     * a Catalog filter that might already have excluded their matches, so each is run as a query of its own (and the
+     * results, which may overlap, combined).  Any filter too long for a single request is split.
+     *
+     * @param omrsTypeName the OMRS entity type being searched
+     * @param catalogTypeName the Catalog type searched, or null if the search is not limited by type
+     * @param typeFilter the filter selecting the Catalog type, or null for none
+     * @param catalogPredicates the predicates on instance fields
+     * @param attributePredicates the predicates on attributes, as the value each attribute must have
+     * @param requiredAttributes the attribute values every result must have, whatever the predicates
+     * @param matchAny true if a result need only match one of the predicates, false if it must match all of them
+     * @return the queries to run
+     */
+    public List<CatalogQuery> planQueries(String omrsTypeName,
+                                          String catalogTypeName,
+                                          CatalogFilter typeFilter,
+                                          List<CatalogFilter> catalogPredicates,
+                                          Map<String, String> attributePredicates,
+                                          Map<String, String> requiredAttributes,
+                                          boolean matchAny) {
+        List<CatalogQuery> queries = new ArrayList<>();
+        if (!matchAny || attributePredicates.isEmpty()) {
+            Map<String, String> attributeFilter = new HashMap<>(requiredAttributes);
+            attributeFilter.putAll(attributePredicates);
+            CatalogFilter filter = matchAny ? CatalogFilter.or(catalogPredicates) : CatalogFilter.and(catalogPredicates);
+            addQueries(queries, omrsTypeName, catalogTypeName, CatalogFilter.and(typeFilter, filter), attributeFilter);
+            return queries;
+        }
+        if (!catalogPredicates.isEmpty()) {
+            addQueries(queries, omrsTypeName, catalogTypeName,
+                    CatalogFilter.and(typeFilter, CatalogFilter.or(catalogPredicates)), new HashMap<>(requiredAttributes));
+        }
+        for (Map.Entry<String, String> predicate : attributePredicates.entrySet()) {
+            Map<String, String> attributeFilter = new HashMap<>(requiredAttributes);
+            attributeFilter.put(predicate.getKey(), predicate.getValue());
+            addQueries(queries, omrsTypeName, catalogTypeName, typeFilter, attributeFilter);
+        }
+        return queries;
+    }
+
+    private void addQueries(List<CatalogQuery> queries, String omrsTypeName, String catalogTypeName,
+                            CatalogFilter filter, Map<String, String> attributeFilter) {
+        List<CatalogFilter> filterParts = filter == null ? Collections.singletonList(null) : filter.split(CatalogFilter.MAX_LENGTH);
+        for (CatalogFilter filterPart : filterParts) {
+            queries.add(new CatalogQuery(omrsTypeName, catalogTypeName, filterPart, attributeFilter));
+        }
+    }
+
+    /**
+     * Choose how many items each query reads at a time, and have its pages observed for the statistics.  When the
+     * same queries were last read up to fromElement, each is resumed from where it stopped, and the GUIDs returned
+     * before fromElement are given back so that results found again by another query can be left out.  Call once any
+     * paging has been added to the queries.
+     *
+     * @param queries the queries to be run
+     * @param fromElement the position of the first result wanted, across the queries
+     * @param pageSize the number of results wanted, or 0 for all of them
+     * @param resumable true if the queries will be read as cursors, which can be resumed
+     * @param returnedGUIDs to which the GUIDs of the results before fromElement are added, when resumed
+     * @return true if the queries have been resumed, so that the results before fromElement will not be read again
+     */
+    public boolean planPaging(List<CatalogQuery> queries, int fromElement, int pageSize, boolean resumable,
+                              Set<String> returnedGUIDs) {
+        List<CatalogPager.ResumePoint> points = resumable && fromElement > 0 && pageSize > 0
+                ? cursors.getResumePoints(SearchCursors.getSearchKey(queries), fromElement, returnedGUIDs)
+                : null;
+        boolean resumed = points != null && points.size() == queries.size();
+        long wanted = pageSize <= 0 ? 0 : resumed ? pageSize : (long) fromElement + pageSize;
+        for (int i = 0; i < queries.size(); i++) {
+            CatalogQuery query = queries.get(i);
+            query.setResumePoint(resumed ? points.get(i) : null);
+            query.setPageSize(getPageSize(query, wanted));
+            query.setObserver(getObserver(query));
+            log.debug("Planned query {}", query);
+        }
+        return resumed;
+    }
+
+    /**
+     * Remember where each query stopped once the results up to a position had been read.
+     *
+     * @param queries the queries that were read
+     * @param position the position, across the queries, of the first result not yet returned
+     * @param points where each query stopped, in the order of the queries
+     * @param returnedGUIDs the GUIDs of the results up to the position
+     */
+    public void recordResumePoints(List<CatalogQuery> queries, long position, List<CatalogPager.ResumePoint> points,
+                                   Set<String> returnedGUIDs) {
+        cursors.putResumePoints(SearchCursors.getSearchKey(queries), position, points, returnedGUIDs);
+    }
+
+    /**
+     * Estimate how many items to request at a time to find the results wanted from a query in a single request.
+     * Without filtering after the fact that is the number wanted; otherwise it is scaled up by the selectivity of
+     * the attribute filter.  Every item is wanted when there is no limit, in which case pages as large as possible
+     * are read.  Either way, no more than the count Catalog last reported for the filter is asked for.
+     *
+     * @param query the query to be run
+     * @param wanted the number of results needed, or 0 for all of them
+     * @return the number of items to request at a time, or 0 for the default
+     */
+    int getPageSize(CatalogQuery query, long wanted) {
+        Long count = counts.get(getCountKey(query));
+        double estimate;
+        if (wanted <= 0) {
+            estimate = count == null ? Integer.MAX_VALUE : count;
+        } else if (query.isPostFiltered()) {
+            estimate = Math.ceil(wanted * HEADROOM / getSelectivity(query));
+        } else {
+            estimate = wanted;
+        }
+        if (count != null) {
+            estimate = Math.min(estimate, count);
+        }
+        return (int) Math.max(0, Math.min(estimate, Integer.MAX_VALUE));
+    }
+
+    /**
+     * @param query a query
+     * @return the estimated fraction of the items Catalog returns for the query that pass its attribute filter
+     */
+    double getSelectivity(CatalogQuery query) {
+        if (!query.isPostFiltered()) {
+            return 1;
+        }
+        Selectivity selectivity = selectivities.get(getSelectivityKey(query));
+        return selectivity == null ? PRIOR_MATCHED / PRIOR_READ : selectivity.estimate();
+    }
+
+    private ListingObserver getObserver(CatalogQuery query) {
+        String countKey = getCountKey(query);
+        Selectivity selectivity = query.isPostFiltered()
+                ? selectivities.computeIfAbsent(getSelectivityKey(query), key -> new Selectivity())
+                : null;
+        return (count, itemsRead, itemsMatched) -> {
+            if (count >= 0) {
+                counts.put(countKey, count);
+            }
+            if (selectivity != null) {
+                selectivity.record(itemsRead, itemsMatched);
+            }
+        };
+    }
+
+    /**
+     * Attribute values vary from search to search, so selectivity is kept by type and the attributes filtered on.
+     */
+    private static String getSelectivityKey(CatalogQuery query) {
+        return query.getCatalogTypeName() + "|" + new TreeSet<>(query.getAttributeFilter().keySet());
+    }
+
+    private static String getCountKey(CatalogQuery query) {
+        return String.valueOf(query.getFilter());
+    }
+
+    /**
+     * Items read and matched for one type and set of attributes.
+     */
+    private static final class Selectivity {
+        private long read;
+        private long matched;
+
+        private synchronized void record(int itemsRead, int itemsMatched) {
+            read += itemsRead;
+            matched += itemsMatched;
+            if (read > MAX_READ) {
+                read /= 2;
+                matched /= 2;
+            }
+        }
+
+        private synchronized double estimate() {
+            return (matched + PRIOR_MATCHED) / (read + PRIOR_READ);
+        }
+    }
+}
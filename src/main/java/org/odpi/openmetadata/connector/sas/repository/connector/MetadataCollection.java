@@ -7,14 +7,18 @@ package org.odpi.openmetadata.connector.sas.repository.connector;
 
 import org.odpi.openmetadata.repositoryservices.connectors.stores.metadatacollectionstore.properties.instances.InstanceGraph;
 import org.odpi.openmetadata.connector.sas.auditlog.ErrorCode;
+import org.odpi.openmetadata.connector.sas.client.CatalogFilter;
+import org.odpi.openmetadata.connector.sas.client.CatalogPager;
 import org.odpi.openmetadata.connector.sas.event.mapper.RepositoryEventMapper;
-import org.odpi.openmetadata.connector.sas.event.model.catalog.instance.Instance;
+import org.odpi.openmetadata.connector.sas.repository.connector.mapping.EntityDetailBatchMapper;
 import org.odpi.openmetadata.connector.sas.repository.connector.mapping.EntityMappingSASCatalog2OMRS;
 import org.odpi.openmetadata.connector.sas.repository.connector.mapping.RelationshipMapping;
 import org.odpi.openmetadata.connector.sas.repository.connector.mapping.SASCatalogObject;
+import org.odpi.openmetadata.connector.sas.repository.connector.mapping.RegexUtils;
 import org.odpi.openmetadata.connector.sas.repository.connector.mapping.SequencingUtils;
 import org.odpi.openmetadata.connector.sas.repository.connector.model.SASCatalogGuid;
 import org.odpi.openmetadata.connector.sas.repository.connector.stores.AttributeTypeDefStore;
+import org.odpi.openmetadata.connector.sas.repository.connector.stores.SearchResultCache;
 import org.odpi.openmetadata.connector.sas.repository.connector.stores.TypeDefStore;
 import org.odpi.openmetadata.repositoryservices.connectors.stores.metadatacollectionstore.OMRSMetadataCollectionBase;
 import org.odpi.openmetadata.repositoryservices.connectors.stores.metadatacollectionstore.properties.MatchCriteria;
@@ -23,6 +27,7 @@ import org.odpi.openmetadata.repositoryservices.connectors.stores.metadatacollec
 import org.odpi.openmetadata.repositoryservices.connectors.stores.metadatacollectionstore.properties.instances.EntitySummary;
 import org.odpi.openmetadata.repositoryservices.connectors.stores.metadatacollectionstore.properties.instances.InstanceProperties;
 import org.odpi.openmetadata.repositoryservices.connectors.stores.metadatacollectionstore.properties.instances.InstancePropertyValue;
+import org.odpi.openmetadata.repositoryservices.connectors.stores.metadatacollectionstore.properties.instances.PrimitivePropertyValue;
 import org.odpi.openmetadata.repositoryservices.connectors.stores.metadatacollectionstore.properties.instances.InstanceStatus;
 import org.odpi.openmetadata.repositoryservices.connectors.stores.metadatacollectionstore.properties.instances.Relationship;
 import org.odpi.openmetadata.repositoryservices.connectors.stores.metadatacollectionstore.properties.typedefs.*;
@@ -45,13 +50,20 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 public class MetadataCollection extends OMRSMetadataCollectionBase {
 
@@ -60,6 +72,15 @@ public class MetadataCollection extends OMRSMetadataCollectionBase {
     private TypeDefStore typeDefStore;
     private AttributeTypeDefStore attributeTypeDefStore;
     private RepositoryEventMapper eventMapper;
+    private static final String SYSPROP_CURSORS_MAX = "sas.egeria.repositoryconnector.searchCursors.maxCursors";
+    private static final String SYSPROP_CURSORS_MAX_RESULTS = "sas.egeria.repositoryconnector.searchCursors.maxResults";
+    private static final String SYSPROP_CURSORS_IDLE = "sas.egeria.repositoryconnector.searchCursors.idleSeconds";
+    private final SearchCursors searchCursors = new SearchCursors(
+            Integer.parseInt(System.getProperty(SYSPROP_CURSORS_MAX, "1000")),
+            Integer.parseInt(System.getProperty(SYSPROP_CURSORS_MAX_RESULTS, "50000")),
+            Long.parseLong(System.getProperty(SYSPROP_CURSORS_IDLE, "60")) * 1000);
+    private final CatalogQueryPlanner queryPlanner = new CatalogQueryPlanner(searchCursors);
+    private final EntityDetailBatchMapper batchMapper;
 
     /**
      * Constructor ensures the metadata collection is linked to its connector and knows its metadata collection Id.
@@ -77,6 +98,7 @@ public class MetadataCollection extends OMRSMetadataCollectionBase {
         this.repositoryConnector = parentConnector;
         this.typeDefStore = new TypeDefStore();
         this.attributeTypeDefStore = new AttributeTypeDefStore();
+        this.batchMapper = new EntityDetailBatchMapper(parentConnector, typeDefStore);
     }
 
     /**
@@ -401,12 +423,25 @@ public class MetadataCollection extends OMRSMetadataCollectionBase {
             SASCatalogGuid sasCatalogGuid = SASCatalogGuid.fromGuid(entityGUID);
             String prefix = sasCatalogGuid.getGeneratedPrefix();
 
-            // 1. retrieve entity from Catalog by GUID (and its relationships)
+            // When limited to one relationship type, only ask Catalog for the Catalog types mapped to it, and read
+            // only as far as the page needs unless the results need sorting first
+            Set<String> catalogRelationshipTypes = null;
+            if (relationshipTypeGUID != null) {
+                TypeDef relationshipTypeDef = typeDefStore.getTypeDefByGUID(relationshipTypeGUID, false);
+                catalogRelationshipTypes = relationshipTypeDef == null
+                        ? Collections.emptySet()
+                        : typeDefStore.getAllCatalogTypeDefNamesMappedTo(relationshipTypeDef.getName());
+            }
+            boolean readToPage = relationshipTypeGUID != null && pageSize > 0
+                    && SequencingUtils.getRelationshipComparator(sequencingOrder, sequencingProperty) == null;
+
+            // 1. retrieve entity from Catalog by GUID (and its relationships, unless they are to be read a page at a time)
             SASCatalogObject asset = null;
             List<SASCatalogObject> relationships = null;
             try {
                 asset = repositoryConnector.getEntityByGUID(sasCatalogGuid.getSASCatalogGuid());
-                relationships = repositoryConnector.getRelationshipsForEntity(sasCatalogGuid.getSASCatalogGuid());
+                relationships = readToPage ? Collections.emptyList()
+                        : repositoryConnector.getRelationshipsForEntity(sasCatalogGuid.getSASCatalogGuid(), catalogRelationshipTypes, 0, 0);
             } catch (Exception e) {
                 raiseEntityNotKnownException(ErrorCode.ENTITY_NOT_KNOWN, methodName, e, entityGUID, methodName, repositoryName);
             }
@@ -426,14 +461,26 @@ public class MetadataCollection extends OMRSMetadataCollectionBase {
                 );
 
                 // 2. Apply the mapping to the object, and retrieve the resulting relationships
-                alRelationships = entityMap.getRelationships(
-                        relationships,
-                        relationshipTypeGUID,
-                        fromRelationshipElement,
-                        sequencingProperty,
-                        sequencingOrder,
-                        pageSize
-                );
+                if (readToPage) {
+                    alRelationships = readRelationshipPage(
+                            entityMap,
+                            entityGUID,
+                            sasCatalogGuid.getSASCatalogGuid(),
+                            catalogRelationshipTypes,
+                            relationshipTypeGUID,
+                            fromRelationshipElement,
+                            pageSize
+                    );
+                } else {
+                    alRelationships = entityMap.getRelationships(
+                            relationships,
+                            relationshipTypeGUID,
+                            fromRelationshipElement,
+                            sequencingProperty,
+                            sequencingOrder,
+                            pageSize
+                    );
+                }
 
             }
 
@@ -443,6 +490,59 @@ public class MetadataCollection extends OMRSMetadataCollectionBase {
 
     }
 
+    /**
+     * Read the relationships of one type for an entity, in Catalog's order, only until a page of them has been mapped.
+     * A Catalog relationship that cannot be mapped is left out, so Catalog's own start and limit cannot select the
+     * page: relationships are read from the first, each request asking for as many as are still needed, and the page
+     * is taken from those that mapped.
+     *
+     * @param entityMap the mapping of the entity whose relationships are read
+     * @param entityGUID the OMRS GUID of the entity
+     * @param catalogGuid the Catalog GUID of the entity
+     * @param catalogRelationshipTypes the Catalog relationship types mapped to the requested type
+     * @param relationshipTypeGUID the OMRS GUID of the requested relationship type
+     * @param fromRelationshipElement the starting element of the page
+     * @param pageSize the number of relationships in a page
+     * @return {@code List<Relationship>}, or null if there are none in the page
+     * @throws EntityNotKnownException if the relationships of the entity could not be read
+     * @throws RepositoryErrorException when unable to map the relationships
+     */
+    private List<Relationship> readRelationshipPage(EntityMappingSASCatalog2OMRS entityMap,
+                                                    String entityGUID,
+                                                    String catalogGuid,
+                                                    Set<String> catalogRelationshipTypes,
+                                                    String relationshipTypeGUID,
+                                                    int fromRelationshipElement,
+                                                    int pageSize) throws
+            EntityNotKnownException,
+            RepositoryErrorException {
+
+        final String methodName = "getRelationshipsForEntity";
+        int wanted = fromRelationshipElement + pageSize;
+        List<Relationship> mapped = new ArrayList<>();
+        int start = 0;
+        while (mapped.size() < wanted) {
+            int limit = wanted - mapped.size();
+            List<SASCatalogObject> relationships = repositoryConnector.getRelationshipsForEntity(catalogGuid,
+                    catalogRelationshipTypes, start, limit);
+            if (relationships == null) {
+                raiseEntityNotKnownException(ErrorCode.ENTITY_NOT_KNOWN, methodName, null, entityGUID, methodName, repositoryName);
+            }
+            List<Relationship> page = entityMap.getRelationships(relationships, relationshipTypeGUID, 0, null, null, 0);
+            if (page != null) {
+                mapped.addAll(page);
+            }
+            if (relationships.size() < limit) {
+                break;
+            }
+            start += relationships.size();
+        }
+        if (fromRelationshipElement >= mapped.size()) {
+            return null;
+        }
+        return new ArrayList<>(mapped.subList(fromRelationshipElement, Math.min(wanted, mapped.size())));
+    }
+
     @Override
     public Relationship getRelationship(String userId,
                                         String guid) throws InvalidParameterException,
@@ -535,40 +635,45 @@ public class MetadataCollection extends OMRSMetadataCollectionBase {
                 pageSize
         );
 
-        List<Instance> results = null;
-
         // Immediately throw unimplemented exception if trying to retrieve historical view
         if (asOfTime != null) {
             raiseFunctionNotSupportedException(ErrorCode.NO_HISTORY, methodName, repositoryName);
         }
 
-        results = buildAndRunDSLSearch(
+        // The same searches are made over and over, so their results are cached until an event invalidates them
+        SearchResultCache cache = repositoryConnector.getSearchResultCache();
+        String cacheKey = getSearchCacheKey(methodName, entityTypeGUID, getCanonicalForm(matchProperties) + matchCriteria,
+                limitResultsByStatus, limitResultsByClassification, sequencingProperty, sequencingOrder,
+                fromEntityElement, pageSize);
+        List<EntityDetail> entityDetails = getCachedSearchResults(cacheKey, entityTypeGUID, userId);
+        if (entityDetails != null) {
+            return entityDetails.isEmpty() ? null : entityDetails;
+        }
+        long cacheGeneration = cache.getGeneration();
+
+        List<CatalogQuery> queries = buildDSLQueries(
                 methodName,
                 entityTypeGUID,
                 entityTypeGUID,
                 limitResultsByClassification,
                 matchProperties,
                 matchCriteria,
-                fromEntityElement,
                 limitResultsByStatus,
                 sequencingProperty,
                 sequencingOrder,
+                userId
+        );
+        entityDetails = runDSLSearch(
+                methodName,
+                queries,
+                entityTypeGUID,
+                fromEntityElement,
+                sequencingProperty,
+                sequencingOrder,
                 pageSize,
                 userId
         );
-
-        List<EntityDetail> entityDetails = null;
-        if (results != null) {
-            entityDetails = sortAndLimitFinalResults(
-                    results,
-                    entityTypeGUID,
-                    fromEntityElement,
-                    sequencingProperty,
-                    sequencingOrder,
-                    pageSize,
-                    userId
-            );
-        }
+        cacheSearchResults(cacheKey, getCatalogTypeNames(queries), entityDetails, cacheGeneration);
         return (entityDetails == null || entityDetails.isEmpty()) ? null : entityDetails;
 
     }
@@ -606,13 +711,43 @@ public class MetadataCollection extends OMRSMetadataCollectionBase {
                 pageSize
         );
 
-        List<Instance> results = new ArrayList<Instance>();
+        List<EntityDetail> entityDetails = null;
 
         // Immediately throw unimplemented exception if trying to retrieve historical view
         if (asOfTime != null) {
             raiseFunctionNotSupportedException(ErrorCode.NO_HISTORY, methodName, repositoryName);
         }
 
+        // The same searches are made over and over, so their results are cached until an event invalidates them
+        SearchResultCache cache = repositoryConnector.getSearchResultCache();
+        String cacheKey = getSearchCacheKey(methodName, entityTypeGUID, searchCriteria, limitResultsByStatus,
+                limitResultsByClassification, sequencingProperty, sequencingOrder, fromEntityElement, pageSize);
+        entityDetails = getCachedSearchResults(cacheKey, entityTypeGUID, userId);
+        if (entityDetails != null) {
+            return entityDetails.isEmpty() ? null : entityDetails;
+        }
+        long cacheGeneration = cache.getGeneration();
+
+        // Across every type, free text is searched for in Catalog's full-text index, rather than by listing instances;
+        // a search of one type is left to the listings of its Catalog types, which Catalog narrows down by type itself
+        RegexUtils.Analysis searchText = RegexUtils.analyse(searchCriteria);
+        if (searchText.getKind() == RegexUtils.Kind.CONTAINS && entityTypeGUID == null) {
+            entityDetails = runFullTextSearch(
+                    searchCriteria,
+                    searchText.getLiteral(),
+                    fromEntityElement,
+                    sequencingProperty,
+                    sequencingOrder,
+                    pageSize,
+                    userId
+            );
+            if (entityDetails != null) {
+                // The index covers every type
+                cacheSearchResults(cacheKey, Collections.singleton(SearchResultCache.ANY_TYPE), entityDetails, cacheGeneration);
+                return entityDetails.isEmpty() ? null : entityDetails;
+            }
+        }
+
         // Search criteria is not allowed to be empty for this method, so cannot be null or empty string.
         if (!searchCriteria.isEmpty()) {
 
@@ -629,6 +764,7 @@ public class MetadataCollection extends OMRSMetadataCollectionBase {
                 // We will need to send the request only once, so we'll only use the first mapping
                 mappingsToSearch = typeDefStore.getAllOmrsNameToCatalogNameMappings();
             }
+            List<CatalogQuery> queries = new ArrayList<>();
             for (Map.Entry<String, Map<String, String>> entryToSearch : mappingsToSearch.entrySet()) {
                 InstanceProperties matchProperties = new InstanceProperties();
                 String omrsTypeName = entryToSearch.getKey();
@@ -636,7 +772,7 @@ public class MetadataCollection extends OMRSMetadataCollectionBase {
 
                 Map<String, TypeDefAttribute> typeDefAttributeMap = typeDefStore.getAllTypeDefAttributesForName(omrsTypeName);
                 if (typeDefAttributeMap != null) {
-                    // This will look at all OMRS attributes, but buildAndRunDSLSearch (later) should limit to only those mapped to catalog
+                    // This will look at all OMRS attributes, but buildDSLQueries (later) should limit to only those mapped to catalog
                     for (Map.Entry<String, TypeDefAttribute> attributeEntry : typeDefAttributeMap.entrySet()) {
                         String attributeName = attributeEntry.getKey();
                         // Only supporting search by name value for now
@@ -666,28 +802,22 @@ public class MetadataCollection extends OMRSMetadataCollectionBase {
                     }
                 }
 
-                List<Instance> innerResults = new ArrayList<Instance>();
                 try {
-                    innerResults = buildAndRunDSLSearch(
+                    queries.addAll(buildDSLQueries(
                             methodName,
                             entityTypeGUID,
                             omrsTypeGUID,
                             limitResultsByClassification,
                             matchProperties,
                             MatchCriteria.ANY,
-                            fromEntityElement,
                             limitResultsByStatus,
                             sequencingProperty,
                             sequencingOrder,
-                            pageSize,
                             userId
-                    );
+                    ));
                 } catch (Exception e) {
                     log.error("Exception from findEntitiesByPropertyValue inner search for omrsTypeName {}: {}", omrsTypeName, e.getMessage());
                 }
-                if (innerResults != null) {
-                    results.addAll(innerResults);
-                }
                 // If entityTypeGUID is null, we are searching across all entity types
                 // We'll only need to send search request once, which we have above
                 // so can break out of the loop
@@ -695,12 +825,11 @@ public class MetadataCollection extends OMRSMetadataCollectionBase {
                     break;
                 }
             }
-        }
 
-        List<EntityDetail> entityDetails = null;
-        if (results != null) {
-            entityDetails = sortAndLimitFinalResults(
-                    results,
+            // The searches for each type run at the same time
+            entityDetails = runDSLSearch(
+                    methodName,
+                    queries,
                     entityTypeGUID,
                     fromEntityElement,
                     sequencingProperty,
@@ -708,7 +837,9 @@ public class MetadataCollection extends OMRSMetadataCollectionBase {
                     pageSize,
                     userId
             );
+            cacheSearchResults(cacheKey, getCatalogTypeNames(queries), entityDetails, cacheGeneration);
         }
+
         return (entityDetails == null || entityDetails.isEmpty()) ? null : entityDetails;
 
     }
@@ -792,8 +923,18 @@ public class MetadataCollection extends OMRSMetadataCollectionBase {
                 sasCatalogGuid = SASCatalogGuid.fromGuid(r.getEntityTwoProxy().getGUID());
                 entitiesToRetrieve.add(sasCatalogGuid.getSASCatalogGuid());
             }
+            // Retrieve all of the endpoints in as few requests as possible
+            Map<String, SASCatalogObject> entities = repositoryConnector.getEntitiesByGUIDs(entitiesToRetrieve);
+            if (entities == null) {
+                raiseRepositoryErrorException(ErrorCode.REST_CLIENT_FAILURE, methodName, null, repositoryName);
+            }
             for (String entityId : entitiesToRetrieve) {
-                entityList.add(getEntityDetail(userId, entityId));
+                SASCatalogObject entity = entities.get(entityId);
+                if (entity == null) {
+                    raiseEntityNotKnownException(ErrorCode.ENTITY_NOT_KNOWN, methodName, null, entityId, methodName, repositoryName);
+                }
+                EntityMappingSASCatalog2OMRS mapping = new EntityMappingSASCatalog2OMRS(repositoryConnector, typeDefStore, null, entity, null, userId);
+                entityList.add(mapping.getEntityDetail());
             }
 
             instanceGraph.setEntities(entityList);
@@ -809,148 +950,588 @@ public class MetadataCollection extends OMRSMetadataCollectionBase {
     }
 
     /**
-     * Build an Atlas domain-specific language (DSL) query based on the provided parameters, and return its results.
+     * Build the Catalog queries for a search based on the provided parameters: for each Catalog type mapped to the
+     * OMRS type (and any of its implemented subtypes), the queries planned by the {@link CatalogQueryPlanner}, each
+     * with its own attribute filter.
      *
      * @param methodName the name of the calling method
+     * @param incomingEntityTypeGUID the entity type originally requested (or null for all types)
      * @param entityTypeGUID unique identifier for the type of entity requested.  Null means any type of entity
      *                       (but could be slow so not recommended.
      * @param limitResultsByClassification list of classifications by which to limit the results.
      * @param matchProperties Optional list of entity properties to match (contains wildcards).
      * @param matchCriteria Enum defining how the match properties should be matched to the classifications in the repository.
-     * @param fromEntityElement the starting element number of the entities to return.
-     *                                This is used when retrieving elements
-     *                                beyond the first page of results. Zero means start from the first element.
      * @param limitResultsByStatus By default, entities in all statuses are returned.  However, it is possible
      *                             to specify a list of statuses (eg ACTIVE) to restrict the results to.  Null means all
      *                             status values.
      * @param sequencingProperty String name of the entity property that is to be used to sequence the results.
      *                           Null means do not sequence on a property name (see SequencingOrder).
      * @param sequencingOrder Enum defining how the results should be ordered.
-     * @param pageSize the maximum number of result entities that can be returned on this request.  Zero means
-     *                 unrestricted return results size.
      * @param userId the user through which to run the search
-     * @return {@code List<AtlasEntityHeader>}
-     * @throws FunctionNotSupportedException when trying to search using a status that is not supported in Atlas
-     * @throws RepositoryErrorException when there is some error running the search against Atlas
+     * @return {@code List<CatalogQuery>}
+     * @throws RepositoryErrorException when the types to search cannot be determined
      */
-    private List<Instance> buildAndRunDSLSearch(String methodName,
-                                                          String incomingEntityTypeGUID,
-                                                          String entityTypeGUID,
-                                                          List<String> limitResultsByClassification,
-                                                          InstanceProperties matchProperties,
-                                                          MatchCriteria matchCriteria,
-                                                          int fromEntityElement,
-                                                          List<InstanceStatus> limitResultsByStatus,
-                                                          String sequencingProperty,
-                                                          SequencingOrder sequencingOrder,
-                                                          int pageSize,
-                                                          String userId) throws
-            FunctionNotSupportedException,
+    private List<CatalogQuery> buildDSLQueries(String methodName,
+                                               String incomingEntityTypeGUID,
+                                               String entityTypeGUID,
+                                               List<String> limitResultsByClassification,
+                                               InstanceProperties matchProperties,
+                                               MatchCriteria matchCriteria,
+                                               List<InstanceStatus> limitResultsByStatus,
+                                               String sequencingProperty,
+                                               SequencingOrder sequencingOrder,
+                                               String userId) throws
             RepositoryErrorException
     {
 
-        List<Instance> results = null;
-        Map<String, String> queryParams = new HashMap<>();
-        Map<String, String> attributeFilter = new HashMap<>();
+        List<CatalogQuery> queries = new ArrayList<>();
+        Set<String> queryKeys = new HashSet<>();
 
-        String catalogTypeName = "";
-        String propertyMatchDelim = "and";
-        if (matchCriteria != null && matchCriteria.equals(MatchCriteria.ANY)) {
-            propertyMatchDelim = "or";
-        }
+        boolean matchAny = matchCriteria != null && matchCriteria.equals(MatchCriteria.ANY);
+        Map<String, InstancePropertyValue> properties = matchProperties == null ? null : matchProperties.getInstanceProperties();
 
-        // Run multiple searches, if there are multiple types mapped to the OMRS type...
+        // If searching by property value across all entity types, we'll only need the property filter, and so
+        // only a single query
+        boolean untyped = incomingEntityTypeGUID == null && methodName.equals("findEntitiesByPropertyValue");
+
+        // Run a separate search for each type mapped to the OMRS type...
         Map<String, Map<String, String>> mappingsToSearch = getMappingsToSearch(entityTypeGUID, userId);
         for (Map.Entry<String, Map<String, String>> entryToSearch : mappingsToSearch.entrySet()) {
-            String filter = "";
-            String typeFilter = "";
-            String propertyFilter = "";
             String omrsTypeName = entryToSearch.getKey();
             Map<String, String> catalogTypeNamesByPrefix = entryToSearch.getValue();
-            int typeCount = catalogTypeNamesByPrefix.size();
-            Map<String, InstancePropertyValue> properties = matchProperties.getInstanceProperties();
-            Map<String, TypeDefAttribute> omrsAttrTypeDefs = typeDefStore.getAllTypeDefAttributesForName(omrsTypeName);
 
             for (Map.Entry<String, String> entry : catalogTypeNamesByPrefix.entrySet()) {
-                propertyFilter = "";
+                List<CatalogFilter> propertyFilters = new ArrayList<>();
                 String prefix = entry.getKey();
-                catalogTypeName = entry.getValue();
+                String catalogTypeName = entry.getValue();
                 Map<String, String> omrsPropertyMap = typeDefStore.getPropertyMappingsForOMRSTypeDef(omrsTypeName, prefix);
+                Map<String, String> attributeFilter = new HashMap<>();
+                Map<String, String> requiredAttributes = new HashMap<>();
 
                 //TODO: Add Classification support
 
                 // Add match properties, if requested
-                if (matchProperties != null) {
-//                    List<String> propertyCriteria = new ArrayList<>();//
-                    // By default, include only Referenceable's properties (as these will be the only properties that exist
-                    // across ALL entity types)//
-                    if (properties != null) {
-                        for (Map.Entry<String, InstancePropertyValue> property : properties.entrySet()) {
-                            String omrsPropertyName = property.getKey();
-                            String catalogName = omrsPropertyMap.get(omrsPropertyName);
-                            String catalogPropertyName = catalogName.substring(catalogName.indexOf(".") + 1);
-                            InstancePropertyValue value = property.getValue();
-
-                            if(catalogName.startsWith("attribute.")) {
-                                attributeFilter.put(catalogPropertyName, value.valueAsString());
-                            } else {
-                                if (propertyFilter.isEmpty()) {
-                                    propertyFilter = String.format("contains(%s,\"%s\")", catalogPropertyName, value.valueAsString());
-                                } else {
-                                    propertyFilter = String.format("%s(%s,contains(%s,\"%s\"))", propertyMatchDelim, propertyFilter, catalogPropertyName, value.valueAsString());
-                                }
+                if (properties != null) {
+                    for (Map.Entry<String, InstancePropertyValue> property : properties.entrySet()) {
+                        String omrsPropertyName = property.getKey();
+                        String catalogName = omrsPropertyMap.get(omrsPropertyName);
+                        String catalogPropertyName = catalogName.substring(catalogName.indexOf(".") + 1);
+                        // Search values are regular expressions, e.g. an exact match is \Qvalue\E
+                        RegexUtils.Analysis value = RegexUtils.analyse(property.getValue().valueAsString());
+
+                        if (value.getKind() == RegexUtils.Kind.ANY) {
+                            if (matchAny) {
+                                // Every instance of the type matches
+                                propertyFilters.clear();
+                                attributeFilter.clear();
+                                break;
                             }
+                        } else if(catalogName.startsWith("attribute.")) {
+                            // Attributes can only be compared for equality, after the fact
+                            attributeFilter.put(catalogPropertyName, value.getKind() == RegexUtils.Kind.EXACT
+                                    ? value.getLiteral() : property.getValue().valueAsString());
+                        } else {
+                            propertyFilters.add(RegexUtils.toCatalogFilter(catalogPropertyName, property.getValue().valueAsString()));
                         }
                     }
                 }
 
-                String typeFilterStr = String.format("eq(type,\"%s\")", catalogTypeName);
-                // Handle reference types differently since they all have a type of "reference"
-                if(catalogTypeName.startsWith("reference.")) {
-                    // Extract reference name after "reference."
-                    String refName = catalogTypeName.substring(catalogTypeName.indexOf(".") + 1);
-                    typeFilterStr = "eq(type,\"reference\")";
-                    attributeFilter.put("referencedType", refName);
+                CatalogFilter typeFilter = null;
+                if (!untyped) {
+                    typeFilter = CatalogFilter.eq("type", catalogTypeName);
+                    // Handle reference types differently since they all have a type of "reference"
+                    if(catalogTypeName.startsWith("reference.")) {
+                        // Extract reference name after "reference."
+                        String refName = catalogTypeName.substring(catalogTypeName.indexOf(".") + 1);
+                        typeFilter = CatalogFilter.eq("type", "reference");
+                        requiredAttributes.put("referencedType", refName);
+                    }
                 }
 
-                if (typeFilter.isEmpty() && propertyFilter.isEmpty()) {
-                    typeFilter = typeFilterStr;
-                } else if (typeFilter.isEmpty() && !propertyFilter.isEmpty()) {
-                    typeFilter = String.format("and(%s,%s)", typeFilterStr, propertyFilter);
-                } else if (!typeFilter.isEmpty() && propertyFilter.isEmpty()) {
-                    typeFilter = String.format("and(%s,%s)", typeFilter, typeFilter);
-                } else {
-                    typeFilter = String.format("or(and(%s,%s), %s)", typeFilterStr, propertyFilter, typeFilter);
+                // TODO: Add status limiters, if requested
+
+                // Have Catalog return the results in sequence, where it can
+                String sortBy = SequencingUtils.getCatalogSortBy(sequencingOrder,
+                        sequencingProperty == null || omrsPropertyMap == null ? null : omrsPropertyMap.get(sequencingProperty));
+
+                for (CatalogQuery query : queryPlanner.planQueries(omrsTypeName, untyped ? null : catalogTypeName, typeFilter,
+                        propertyFilters, attributeFilter, requiredAttributes, matchAny)) {
+                    if (sortBy != null) {
+                        query.getQueryParams().put("sortBy", sortBy);
+                    }
+                    // Different types (e.g. subtypes) may be mapped to the very same query
+                    if (queryKeys.add(query.getKey())) {
+                        queries.add(query);
+                    }
+                }
+                if (untyped) {
+                    return queries;
                 }
+            }
+        }
+        return queries;
+    }
 
-                // If searching by property value across all entity types, we'll only need property filter
-                if (incomingEntityTypeGUID == null && methodName.equals("findEntitiesByPropertyValue")) {
-                    queryParams.put("filter", propertyFilter);
-                } else {
-                    queryParams.put("filter", typeFilter);
+    /**
+     * Run the Catalog queries for a search.  The queries run at the same time, so the search takes about as long as
+     * the slowest of them.
+     *
+     * @param methodName the name of the calling method
+     * @param queries the queries to run
+     * @return the results of each query, in the order of the queries
+     * @throws RepositoryErrorException when there is some error running the search against Catalog
+     */
+    private List<List<SASCatalogObject>> runDSLQueries(String methodName, List<CatalogQuery> queries) throws
+            RepositoryErrorException
+    {
+        List<List<SASCatalogObject>> results = new ArrayList<>();
+        try {
+            results.addAll(repositoryConnector.getEntitiesWithParams(queries));
+        } catch (Exception e) {
+            log.error("Repository error exception for method {} and queries {} : {}", methodName, queries, e);
+            raiseRepositoryErrorException(ErrorCode.INVALID_SEARCH, methodName, e, queries.toString());
+        }
+        return results;
+    }
+
+    /**
+     * Run the Catalog queries for a search, and return the requested page of results in sequence.
+     *
+     * When several queries are merged and Catalog returns the results of each in sequence, a cursor is kept on each
+     * query and the results are merged as they are read: every query's first page is requested at once, and no query
+     * is read further than the merged page needs.  A single query filtered after the fact is read the same way, so
+     * that it keeps reading until the page is full, and a following page carries on where it stopped.  Otherwise the
+     * queries are run in full (a single query being paged by Catalog itself, where possible), and the results sorted
+     * and limited in memory; when there are more pages, the sorted results are held by a short-lived cursor (see
+     * {@link SearchCursors}) and the pages after taken from them.
+     *
+     * @param methodName the name of the calling method
+     * @param queries the queries to run
+     * @param entityTypeGUID the type of entity that was requested (or null for all)
+     * @param fromElement the starting element to include in the results
+     * @param sequencingProperty the property by which to sort the results (or null, if not sorting by property)
+     * @param sequencingOrder the order by which to sort the results
+     * @param pageSize the number of results to include in this page
+     * @param userId the user through which to translate the results
+     * @return {@code List<EntityDetail>}
+     * @throws InvalidParameterException the guid is null.
+     * @throws RepositoryErrorException there is a problem communicating with the metadata repository where
+     *                                  the metadata collection is stored.
+     * @throws UserNotAuthorizedException the userId is not permitted to perform this operation.
+     */
+    private List<EntityDetail> runDSLSearch(String methodName,
+                                            List<CatalogQuery> queries,
+                                            String entityTypeGUID,
+                                            int fromElement,
+                                            String sequencingProperty,
+                                            SequencingOrder sequencingOrder,
+                                            int pageSize,
+                                            String userId) throws
+            InvalidParameterException,
+            RepositoryErrorException,
+            UserNotAuthorizedException {
+
+        if (queries.isEmpty()) {
+            // Nothing of the requested type is mapped to Catalog
+            return new ArrayList<>();
+        }
+        boolean pagedInCatalog = applyPaging(queries, fromElement, pageSize, sequencingProperty, sequencingOrder);
+        boolean readAsCursors = pageSize > 0 && isInCatalogOrder(queries, sequencingProperty, sequencingOrder)
+                && (queries.size() > 1 || queries.get(0).isPostFiltered());
+        Set<String> returnedGUIDs = new HashSet<>();
+        boolean resumed = queryPlanner.planPaging(queries, fromElement, pageSize, readAsCursors, returnedGUIDs);
+        if (readAsCursors) {
+            return mergeDSLQueryCursors(methodName, queries, entityTypeGUID, fromElement, pagedInCatalog || resumed ? 0 : fromElement,
+                    returnedGUIDs, sequencingProperty, sequencingOrder, pageSize, userId);
+        }
+        if (pagedInCatalog || pageSize <= 0) {
+            List<List<SASCatalogObject>> results = runDSLQueries(methodName, queries);
+            return sortAndLimitFinalResults(
+                    results,
+                    entityTypeGUID,
+                    pagedInCatalog ? 0 : fromElement,
+                    sequencingProperty,
+                    sequencingOrder,
+                    pageSize,
+                    userId
+            );
+        }
+
+        // Every result has to be read and sorted to find any page, so the sorted results are held for the pages after
+        String cursorKey = SearchCursors.getSearchKey(queries) + entityTypeGUID + "|" + sequencingProperty + "|" + sequencingOrder;
+        List<EntityDetail> sorted = fromElement > 0 ? searchCursors.getResults(cursorKey) : null;
+        if (sorted == null) {
+            List<List<SASCatalogObject>> results = runDSLQueries(methodName, queries);
+            sorted = sortAndLimitFinalResults(results, entityTypeGUID, 0, sequencingProperty, sequencingOrder, 0, userId);
+            if (sorted.size() > fromElement + pageSize) {
+                searchCursors.putResults(cursorKey, sorted);
+            }
+        } else {
+            log.debug("Page from {} of {} taken from the results held for the search", fromElement, cursorKey);
+        }
+        List<EntityDetail> page = new ArrayList<>();
+        for (int i = fromElement; i < sorted.size() && i < fromElement + pageSize; i++) {
+            // Held results are shared between pages, so each caller gets its own copy
+            page.add(new EntityDetail(sorted.get(i)));
+        }
+        return page;
+    }
+
+    /**
+     * Build the key under which the results of a search are cached: every parameter that affects the results, in a
+     * canonical form.
+     *
+     * @param methodName the name of the search method
+     * @param entityTypeGUID the type of entity that was requested (or null for all)
+     * @param criteria the canonical form of the properties or value searched for
+     * @param limitResultsByStatus the statuses the results are limited to (or null)
+     * @param limitResultsByClassification the classifications the results are limited to (or null)
+     * @param sequencingProperty the property by which to sort the results (or null)
+     * @param sequencingOrder the order by which to sort the results
+     * @param fromElement the starting element to include in the results
+     * @param pageSize the number of results to include in this page
+     * @return the key
+     */
+    private static String getSearchCacheKey(String methodName,
+                                            String entityTypeGUID,
+                                            String criteria,
+                                            List<InstanceStatus> limitResultsByStatus,
+                                            List<String> limitResultsByClassification,
+                                            String sequencingProperty,
+                                            SequencingOrder sequencingOrder,
+                                            int fromElement,
+                                            int pageSize) {
+        return methodName + "|" + entityTypeGUID + "|" + criteria
+                + "|" + (limitResultsByStatus == null ? null : new TreeSet<>(limitResultsByStatus))
+                + "|" + (limitResultsByClassification == null ? null : new TreeSet<>(limitResultsByClassification))
+                + "|" + sequencingProperty + "|" + sequencingOrder + "|" + fromElement + "|" + pageSize;
+    }
+
+    /**
+     * @param properties the properties searched for
+     * @return the properties with their types and values, in name order
+     */
+    private static String getCanonicalForm(InstanceProperties properties) {
+        Map<String, String> canonical = new TreeMap<>();
+        if (properties != null && properties.getInstanceProperties() != null) {
+            for (Map.Entry<String, InstancePropertyValue> property : properties.getInstanceProperties().entrySet()) {
+                InstancePropertyValue value = property.getValue();
+                canonical.put(property.getKey(), value == null ? null : value.getClass().getSimpleName() + ":" + value.valueAsString());
+            }
+        }
+        return canonical.toString();
+    }
+
+    /**
+     * @param queries the queries of a search
+     * @return the Catalog types the queries search, or {@link SearchResultCache#ANY_TYPE} for a query that is not
+     *         limited by type
+     */
+    private static Set<String> getCatalogTypeNames(List<CatalogQuery> queries) {
+        Set<String> catalogTypeNames = new HashSet<>();
+        for (CatalogQuery query : queries) {
+            catalogTypeNames.add(query.getCatalogTypeName() == null ? SearchResultCache.ANY_TYPE : query.getCatalogTypeName());
+        }
+        return catalogTypeNames;
+    }
+
+    /**
+     * @param detail an entity
+     * @return a stamp that changes whenever the entity does
+     */
+    private static String getVersionStamp(EntityDetail detail) {
+        return detail.getVersion() + "@" + (detail.getUpdateTime() == null ? null : detail.getUpdateTime().getTime());
+    }
+
+    /**
+     * Retrieve the cached results of a search.  The entities are retrieved together, by GUID, and the cached results
+     * only used if every one of them is unchanged.
+     *
+     * @param cacheKey the key of the search
+     * @param entityTypeGUID the type of entity that was requested (or null for all)
+     * @param userId the user through which to translate the results
+     * @return {@code List<EntityDetail>}, or null if the search must be run
+     */
+    private List<EntityDetail> getCachedSearchResults(String cacheKey, String entityTypeGUID, String userId) {
+        SearchResultCache cache = repositoryConnector.getSearchResultCache();
+        SearchResultCache.Entry entry = cache.get(cacheKey);
+        log.debug("Search result cache {} for {}: {}", entry == null ? "miss" : "hit", cacheKey, cache.getStats());
+        if (entry == null) {
+            return null;
+        }
+        List<EntityDetail> details = new ArrayList<>(entry.getGuids().size());
+        Map<String, SASCatalogObject> entities = repositoryConnector.getEntitiesByGUIDs(entry.getGuids());
+        if (entities == null) {
+            return null;
+        }
+        if (entityTypeGUID == null) {
+            entityTypeGUID = typeDefStore.getTypeDefByName("Referenceable").getGUID();
+        }
+        List<SASCatalogObject> instances = new ArrayList<>(entry.getGuids().size());
+        for (String guid : entry.getGuids()) {
+            SASCatalogObject entity = entities.get(guid);
+            if (entity == null) {
+                log.debug("Cached results for {} are out of date, searching again.", cacheKey);
+                cache.stale(cacheKey);
+                return null;
+            }
+            instances.add(entity);
+        }
+        List<EntityDetail> mapped;
+        try {
+            mapped = getEntityDetailsOfType(instances, entityTypeGUID, userId);
+        } catch (RepositoryErrorException e) {
+            log.debug("Cached results for {} could not be mapped, searching again.", cacheKey);
+            cache.stale(cacheKey);
+            return null;
+        }
+        for (int i = 0; i < mapped.size(); i++) {
+            EntityDetail detail = mapped.get(i);
+            if (detail == null || !getVersionStamp(detail).equals(entry.getVersions().get(i))) {
+                log.debug("Cached results for {} are out of date, searching again.", cacheKey);
+                cache.stale(cacheKey);
+                return null;
+            }
+            details.add(detail);
+        }
+        return details;
+    }
+
+    /**
+     * Cache the results of a search, unless an event has invalidated cached results since it began.  A search that
+     * found nothing is not cached: there would be no entities whose versions could show the results to be out of
+     * date.
+     *
+     * @param cacheKey the key of the search
+     * @param catalogTypeNames the Catalog types searched
+     * @param results the results of the search
+     * @param cacheGeneration the generation of the cache when the search began
+     */
+    private void cacheSearchResults(String cacheKey, Collection<String> catalogTypeNames, List<EntityDetail> results,
+                                    long cacheGeneration) {
+        if (results.isEmpty()) {
+            return;
+        }
+        List<String> guids = new ArrayList<>(results.size());
+        List<String> versions = new ArrayList<>(results.size());
+        for (EntityDetail detail : results) {
+            guids.add(detail.getGUID());
+            versions.add(getVersionStamp(detail));
+        }
+        repositoryConnector.getSearchResultCache().put(cacheKey, catalogTypeNames, guids, versions, cacheGeneration);
+    }
+
+    /**
+     * Search Catalog's full-text index for entities whose qualifiedName contains some text, as the listings of
+     * findEntitiesByPropertyValue would find them.  Hits are read in relevance order, and mapped as they are read;
+     * those whose qualifiedName does not match the search criteria (the text was found in another property) are left
+     * out.  Unless the results are to be sequenced otherwise, hits are only read as far as the requested page needs:
+     * each request asks for as many as are still needed, carrying on from where the last one stopped.
+     *
+     * @param searchCriteria the regular expression to match
+     * @param text the text contained by the values the regular expression matches
+     * @param fromElement the starting element to include in the results
+     * @param sequencingProperty the property by which to sort the results (or null, if not sorting by property)
+     * @param sequencingOrder the order by which to sort the results
+     * @param pageSize the number of results to include in this page
+     * @param userId the user through which to translate the results
+     * @return {@code List<EntityDetail>}, or null if the full-text index could not be searched (in full)
+     * @throws RepositoryErrorException when an entity found could not be mapped
+     */
+    private List<EntityDetail> runFullTextSearch(String searchCriteria,
+                                                 String text,
+                                                 int fromElement,
+                                                 String sequencingProperty,
+                                                 SequencingOrder sequencingOrder,
+                                                 int pageSize,
+                                                 String userId) throws RepositoryErrorException {
+
+        String entityTypeGUID = typeDefStore.getTypeDefByName("Referenceable").getGUID();
+        Comparator<EntityDetail> comparator = SequencingUtils.getEntityDetailComparator(sequencingOrder, sequencingProperty);
+        long wanted = comparator == null && pageSize > 0 ? (long) fromElement + pageSize : 0;
+
+        List<EntityDetail> found = new ArrayList<>();
+        Set<String> foundGUIDs = new HashSet<>();
+        long start = 0;
+        do {
+            CatalogCursor hits = repositoryConnector.searchEntities(text, start, wanted > 0 ? wanted - found.size() : 0);
+            EntityDetailCursor details = new EntityDetailCursor(hits, entityTypeGUID, userId, foundGUIDs);
+            while ((wanted == 0 || found.size() < wanted) && details.hasNext()) {
+                EntityDetail detail = details.next();
+                if (isStringPropertyMatching(detail, "qualifiedName", searchCriteria)) {
+                    found.add(detail);
                 }
             }
+            details.checkMapped();
+            CatalogPager.ResumePoint resumePoint = hits.getResumePoint();
+            if (resumePoint == null) {
+                // Results read before the failure would make an incomplete page, so the listings are used instead
+                log.info("Full-text search for '{}' is not available, scanning instances instead.", text);
+                return null;
+            }
+            if (resumePoint.isEnd()) {
+                break;
+            }
+            start = resumePoint.getStart();
+        } while (wanted > 0 && found.size() < wanted);
 
-            // TODO: Add status limiters, if requested
+        if (comparator != null) {
+            found.sort(comparator);
+        }
+        int end = pageSize > 0 ? (int) Math.min(found.size(), (long) fromElement + pageSize) : found.size();
+        return fromElement < end ? new ArrayList<>(found.subList(fromElement, end)) : new ArrayList<>();
+    }
 
-            // TODO: Apply sequencing order, if requested
+    /**
+     * @param detail an entity
+     * @param propertyName the name of the property to match
+     * @param regex the regular expression to match
+     * @return true if the entity has a string value for the property that matches the regular expression
+     */
+    private boolean isStringPropertyMatching(EntityDetail detail, String propertyName, String regex) {
+        InstanceProperties properties = detail.getProperties();
+        InstancePropertyValue value = properties == null ? null : properties.getPropertyValue(propertyName);
+        return value instanceof PrimitivePropertyValue
+                && ((PrimitivePropertyValue) value).getPrimitiveDefCategory() == PrimitiveDefCategory.OM_PRIMITIVE_TYPE_STRING
+                && ((PrimitivePropertyValue) value).getPrimitiveValue() != null
+                && RegexUtils.matches(regex, ((PrimitivePropertyValue) value).getPrimitiveValue().toString());
+    }
+
+    /**
+     * Merge the results of several Catalog queries, each already in sequence, reading each query only as far as
+     * the requested page needs.  Queries filtered after the fact are read on until the page is full.  Once a full
+     * page has been read, where each query stopped is remembered, so that the next page can carry on from there.
+     * Since queries can overlap (e.g. the parts of a split filter), the GUIDs returned so far are remembered with
+     * them, and results already returned by an earlier page are left out.  A query whose listing fails fails the
+     * search, rather than leaving a gap in the page, as does an entity that cannot be mapped.
+     *
+     * @param methodName the name of the calling method
+     * @param queries the queries to run
+     * @param entityTypeGUID the type of entity that was requested (or null for all)
+     * @param fromElement the starting element to include in the results
+     * @param toSkip the number of merged results to skip, those before fromElement that the queries still return
+     * @param returnedGUIDs the GUIDs returned before fromElement by the pages the queries resume from
+     * @param sequencingProperty the property by which to sort the results (or null, if not sorting by property)
+     * @param sequencingOrder the order by which to sort the results
+     * @param pageSize the number of results to include in this page
+     * @param userId the user through which to translate the results
+     * @return {@code List<EntityDetail>}
+     * @throws RepositoryErrorException when any of the queries could not be read from Catalog
+     */
+    private List<EntityDetail> mergeDSLQueryCursors(String methodName,
+                                                    List<CatalogQuery> queries,
+                                                    String entityTypeGUID,
+                                                    int fromElement,
+                                                    int toSkip,
+                                                    Set<String> returnedGUIDs,
+                                                    String sequencingProperty,
+                                                    SequencingOrder sequencingOrder,
+                                                    int pageSize,
+                                                    String userId) throws RepositoryErrorException {
 
-            // Add paging criteria, if requested
-            if (pageSize > 0) {
+        // If no entity type GUID was provided (search was done with 'null' originally for all types), then set it here
+        // to the GUID for Referenceable, so that we can properly do subtype checking in the subsequent steps.
+        if (entityTypeGUID == null) {
+            entityTypeGUID = typeDefStore.getTypeDefByName("Referenceable").getGUID();
+        }
+        // The same entity can be found by more than one query (e.g. when a long filter has been split)
+        Set<String> foundGUIDs = new HashSet<>(returnedGUIDs);
+        List<CatalogCursor> listings = repositoryConnector.iterateEntitiesWithParams(queries);
+        List<EntityDetailCursor> cursors = new ArrayList<>(queries.size());
+        for (CatalogCursor results : listings) {
+            cursors.add(new EntityDetailCursor(results, entityTypeGUID, userId, foundGUIDs));
+        }
+        Comparator<EntityDetail> comparator = SequencingUtils.getEntityDetailComparator(sequencingOrder, sequencingProperty);
+        List<EntityDetail> merged = SequencingUtils.mergeSortedIterators(new ArrayList<>(cursors), comparator, toSkip + pageSize);
+        for (CatalogCursor results : listings) {
+            if (results.hasFailed()) {
+                log.error("Repository error exception for method {} and queries {} : {}", methodName, queries, results.getFailure());
+                raiseRepositoryErrorException(ErrorCode.INVALID_SEARCH, methodName, results.getFailure(), queries.toString());
+            }
+        }
+        for (EntityDetailCursor cursor : cursors) {
+            cursor.checkMapped();
+        }
+        List<EntityDetail> page = toSkip < merged.size() ? new ArrayList<>(merged.subList(toSkip, merged.size())) : new ArrayList<>();
+
+        if (page.size() == pageSize) {
+            Set<EntityDetail> returned = Collections.newSetFromMap(new IdentityHashMap<>());
+            returned.addAll(merged);
+            List<CatalogPager.ResumePoint> resumePoints = new ArrayList<>(cursors.size());
+            for (EntityDetailCursor cursor : cursors) {
+                CatalogPager.ResumePoint resumePoint = cursor.getResumePoint(returned);
+                if (resumePoint == null) {
+                    return page;
+                }
+                resumePoints.add(resumePoint);
+            }
+            // Results read ahead but not returned are read again on resuming, so only those returned are remembered
+            Set<String> returnedUpTo = new HashSet<>(returnedGUIDs);
+            for (EntityDetail detail : merged) {
+                returnedUpTo.add(detail.getGUID());
+            }
+            queryPlanner.recordResumePoints(queries, (long) fromElement + pageSize, resumePoints, returnedUpTo);
+        }
+        return page;
+    }
+
+    /**
+     * Determine whether Catalog returns the results of every query in the requested sequence.
+     *
+     * @param queries the queries to be run
+     * @param sequencingProperty the property by which to sort the results (or null, if not sorting by property)
+     * @param sequencingOrder the order by which to sort the results
+     * @return true if the results of each query need no sorting in memory
+     */
+    private boolean isInCatalogOrder(List<CatalogQuery> queries, String sequencingProperty, SequencingOrder sequencingOrder) {
+        if (SequencingUtils.getEntityDetailComparator(sequencingOrder, sequencingProperty) != null) {
+            for (CatalogQuery query : queries) {
+                if (!query.isSortedInCatalog()) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Hand as much of Egeria's paging to Catalog as the sequence of the results allows.  When the results come from a
+     * single query, already in the requested sequence, the page itself is requested.  When several queries are merged,
+     * no query can contribute more than fromEntityElement + pageSize results, so that is all each one is asked for.
+     * A query filtered after the fact is not limited, but read for as long as the page needs.  When Catalog cannot
+     * return a query's results in sequence, every result is needed and sorted in memory.
+     *
+     * @param queries the queries to be run
+     * @param fromEntityElement the starting element number of the entities to return
+     * @param pageSize the maximum number of result entities to return (zero means unrestricted)
+     * @param sequencingProperty the property by which to sort the results (or null, if not sorting by property)
+     * @param sequencingOrder the order by which to sort the results
+     * @return true if fromEntityElement has been sent to Catalog, and so must not be applied again
+     */
+    private boolean applyPaging(List<CatalogQuery> queries, int fromEntityElement, int pageSize,
+                                String sequencingProperty, SequencingOrder sequencingOrder) {
+        if (!isInCatalogOrder(queries, sequencingProperty, sequencingOrder)) {
+            return false;
+        }
+        if (queries.size() == 1) {
+            Map<String, String> queryParams = queries.get(0).getQueryParams();
+            if (pageSize > 0 && !queries.get(0).isPostFiltered()) {
                 queryParams.put("limit", pageSize+"");
             }
             if (fromEntityElement > 0) {
-                queryParams.put("offset", fromEntityElement+"");
+                queryParams.put("start", fromEntityElement+"");
             }
-
-            try {
-                results = repositoryConnector.getInstancesWithParams(queryParams, attributeFilter);
-            } catch (Exception e) {
-                raiseRepositoryErrorException(ErrorCode.INVALID_SEARCH, methodName, e, filter);
-                log.error("Repository error exception for method {} and filter {} : {}", methodName, filter, e);
+            return true;
+        }
+        if (pageSize > 0) {
+            for (CatalogQuery query : queries) {
+                // A query filtered after the fact is read on for as long as the merged page needs
+                if (!query.isPostFiltered()) {
+                    query.getQueryParams().put("limit", (fromEntityElement + pageSize)+"");
+                }
             }
         }
-        return results;
+        return false;
     }
 
     /**
@@ -1009,9 +1590,9 @@ public class MetadataCollection extends OMRSMetadataCollectionBase {
 
 
     /**
-     * Sort the list of results and limit based on the provided parameters.
+     * Sort the results of each query, merge them and limit based on the provided parameters.
      *
-     * @param results the Apache Atlas results to sort and limit
+     * @param results the Catalog results of each query to sort and limit
      * @param entityTypeGUID the type of entity that was requested (or null for all)
      * @param fromElement the starting element to include in the limited results
      * @param sequencingProperty the property by which to sort the results (or null, if not sorting by property)
@@ -1024,7 +1605,7 @@ public class MetadataCollection extends OMRSMetadataCollectionBase {
      *                                  the metadata collection is stored.
      * @throws UserNotAuthorizedException the userId is not permitted to perform this operation.
      */
-    private List<EntityDetail> sortAndLimitFinalResults(List<Instance> results,
+    private List<EntityDetail> sortAndLimitFinalResults(List<List<SASCatalogObject>> results,
                                                         String entityTypeGUID,
                                                         int fromElement,
                                                         String sequencingProperty,
@@ -1040,13 +1621,21 @@ public class MetadataCollection extends OMRSMetadataCollectionBase {
         if (entityTypeGUID == null) {
             entityTypeGUID = typeDefStore.getTypeDefByName("Referenceable").getGUID();
         }
-        List<EntityDetail> totalResults = new ArrayList<>(getEntityDetailsFromCatalogResults(results, entityTypeGUID, userId));
-        // TODO: send something in that determines whether re-sorting the results is actually necessary?
-        // Need to potentially re-sort and re-limit the results, if we ran the search against more than one type
+        // Each query's results are put in sequence on their own (Catalog will usually have done so already, making
+        // this cheap), then merged, stopping once the page is complete
         Comparator<EntityDetail> comparator = SequencingUtils.getEntityDetailComparator(sequencingOrder, sequencingProperty);
-        if (comparator != null) {
-            totalResults.sort(comparator);
+        List<List<EntityDetail>> sortedResults = new ArrayList<>(results.size());
+        // The same entity can be found by more than one query (e.g. when a long filter has been split)
+        Set<String> foundGUIDs = new HashSet<>();
+        for (List<SASCatalogObject> queryResults : results) {
+            List<EntityDetail> details = getEntityDetailsFromCatalogResults(queryResults, entityTypeGUID, userId);
+            details.removeIf(detail -> !foundGUIDs.add(detail.getGUID()));
+            if (comparator != null) {
+                details.sort(comparator);
+            }
+            sortedResults.add(details);
         }
+        List<EntityDetail> totalResults = SequencingUtils.mergeSorted(sortedResults, comparator, pageSize > 0 ? fromElement + pageSize : 0);
         int endOfPageMarker = Math.min(fromElement + pageSize, totalResults.size());
         if ((fromElement != 0 || endOfPageMarker < totalResults.size()) && (endOfPageMarker != 0)) {
             totalResults = totalResults.subList(fromElement, endOfPageMarker);
@@ -1055,9 +1644,10 @@ public class MetadataCollection extends OMRSMetadataCollectionBase {
     }
 
     /**
-     * Retrieves a list of EntityDetail objects given a list of AtlasEntityHeader objects.
+     * Maps a list of Catalog search results to EntityDetail objects.  The search results already carry the full
+     * instance and definition, so no further requests are made to Catalog.
      *
-     * @param instances the Atlas entities for which to retrieve details
+     * @param instances the Catalog entities for which to build details
      * @param entityTypeGUID the type of entity that was requested (or null for all)
      * @param userId the user through which to do the retrieval
      * @return {@code List<EntityDetail>}
@@ -1066,7 +1656,7 @@ public class MetadataCollection extends OMRSMetadataCollectionBase {
      *                                  the metadata collection is stored.
      * @throws UserNotAuthorizedException the userId is not permitted to perform this operation.
      */
-    private List<EntityDetail> getEntityDetailsFromCatalogResults(List<Instance> instances,
+    private List<EntityDetail> getEntityDetailsFromCatalogResults(List<SASCatalogObject> instances,
                                                                     String entityTypeGUID,
                                                                     String userId) throws
             InvalidParameterException,
@@ -1075,26 +1665,9 @@ public class MetadataCollection extends OMRSMetadataCollectionBase {
 
         List<EntityDetail> entityDetails = new ArrayList<>();
         if (instances != null) {
-            for (Instance instance : instances) {
-                try {
-                    // TODO: See if we can do this without making another REST request
-                    EntityDetail detail = getEntityDetail(userId, instance.getId());
-                    if (detail != null) {
-                            String typeName = detail.getType().getTypeDefName();
-                            log.debug("getEntityDetailsFromCatalogResults: typeName {}", typeName);
-                            try {
-                                TypeDef typeDef = repositoryHelper.getTypeDef(repositoryName, "entityTypeGUID", entityTypeGUID, "getEntityDetailsFromAtlasResults");
-                                if (repositoryHelper.isTypeOf(repositoryName, typeName, typeDef.getName())) {
-                                    entityDetails.add(detail);
-                                }
-                            } catch (TypeErrorException e) {
-                                log.error("Unable to find any TypeDef for entityTypeGUID: {}", entityTypeGUID);
-                            }
-                        } else {
-                            log.error("Entity with GUID {} not known -- excluding from results.", instance.getId());
-                        }
-                } catch (EntityNotKnownException e) {
-                        log.error("Entity with GUID {} not known -- excluding from results.", instance.getId());
+            for (EntityDetail detail : getEntityDetailsOfType(instances, entityTypeGUID, userId)) {
+                if (detail != null) {
+                    entityDetails.add(detail);
                 }
             }
         }
@@ -1102,6 +1675,146 @@ public class MetadataCollection extends OMRSMetadataCollectionBase {
 
     }
 
+    /**
+     * Maps Catalog search results to EntityDetail objects as a batch, in which the type metadata of each Catalog type
+     * is resolved once and the entities mapped in parallel (see {@link EntityDetailBatchMapper}).  Whether a mapped
+     * type is of the requested type is also only checked once (see {@link RequestedType}).
+     *
+     * @param instances the Catalog entities for which to build details
+     * @param entityTypeGUID the type of entity that was requested
+     * @param userId the user through which to do the mapping
+     * @return the EntityDetail of each entity, in the order of the entities, with null for any whose type is not
+     *         mapped or is not the requested type
+     * @throws RepositoryErrorException when an entity could not be mapped
+     */
+    private List<EntityDetail> getEntityDetailsOfType(List<SASCatalogObject> instances,
+                                                      String entityTypeGUID,
+                                                      String userId) throws RepositoryErrorException {
+
+        List<EntityDetail> details = new ArrayList<>(batchMapper.getEntityDetails(instances, null, userId));
+        RequestedType requestedType = new RequestedType(entityTypeGUID);
+        for (int i = 0; i < details.size(); i++) {
+            EntityDetail detail = details.get(i);
+            if (detail == null) {
+                log.error("Entity with GUID {} could not be mapped -- excluding from results.", instances.get(i).guid);
+            } else if (!requestedType.includes(detail)) {
+                details.set(i, null);
+            }
+        }
+        return details;
+
+    }
+
+    /**
+     * The entity type requested by a search, resolved once.  Whether each mapped type is of the requested type is
+     * only checked the first time an entity of that type is seen.
+     */
+    private class RequestedType {
+
+        private final TypeDef typeDef;
+        private final Map<String, Boolean> isOfType = new HashMap<>();
+
+        private RequestedType(String entityTypeGUID) {
+            TypeDef found = null;
+            try {
+                found = repositoryHelper.getTypeDef(repositoryName, "entityTypeGUID", entityTypeGUID, "getEntityDetailsOfType");
+            } catch (TypeErrorException e) {
+                log.error("Unable to find any TypeDef for entityTypeGUID: {}", entityTypeGUID);
+            }
+            this.typeDef = found;
+        }
+
+        /**
+         * @param detail a mapped entity
+         * @return true if the entity is of the requested type (never, if the requested type is not known)
+         */
+        private boolean includes(EntityDetail detail) {
+            return typeDef != null && isOfType.computeIfAbsent(detail.getType().getTypeDefName(),
+                    typeName -> repositoryHelper.isTypeOf(repositoryName, typeName, typeDef.getName()));
+        }
+    }
+
+    /**
+     * Maps Catalog search results to EntityDetail objects as they are read, skipping any that are not mapped, are not
+     * of the requested type, or have already been found by another query.  As when mapping a batch, an entity that
+     * cannot be mapped fails the search: the cursor ends, and the failure is raised by {@link #checkMapped()}.
+     */
+    private class EntityDetailCursor implements Iterator<EntityDetail> {
+
+        private final CatalogCursor results;
+        private final RequestedType requestedType;
+        private final String userId;
+        private final Set<String> foundGUIDs;
+        private EntityDetail nextDetail;
+        private CatalogPager.ResumePoint nextDetailResumePoint;
+        private EntityDetail lastDetail;
+        private CatalogPager.ResumePoint lastDetailResumePoint;
+        private Exception mappingFailure;
+
+        private EntityDetailCursor(CatalogCursor results, String entityTypeGUID, String userId, Set<String> foundGUIDs) {
+            this.results = results;
+            this.requestedType = new RequestedType(entityTypeGUID);
+            this.userId = userId;
+            this.foundGUIDs = foundGUIDs;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (nextDetail == null && mappingFailure == null && results.hasNext()) {
+                CatalogPager.ResumePoint resumePoint = results.getResumePoint();
+                SASCatalogObject instance = results.next();
+                try {
+                    nextDetail = batchMapper.getEntityDetails(Collections.singletonList(instance), null, userId).get(0);
+                } catch (RepositoryErrorException | RuntimeException e) {
+                    mappingFailure = e;
+                    return false;
+                }
+                if (nextDetail != null && (!requestedType.includes(nextDetail) || !foundGUIDs.add(nextDetail.getGUID()))) {
+                    nextDetail = null;
+                }
+                nextDetailResumePoint = resumePoint;
+            }
+            return nextDetail != null;
+        }
+
+        /**
+         * @throws RepositoryErrorException if an entity read by the cursor could not be mapped
+         */
+        private void checkMapped() throws RepositoryErrorException {
+            if (mappingFailure instanceof RepositoryErrorException) {
+                throw (RepositoryErrorException) mappingFailure;
+            } else if (mappingFailure != null) {
+                throw (RuntimeException) mappingFailure;
+            }
+        }
+
+        @Override
+        public EntityDetail next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            lastDetail = nextDetail;
+            lastDetailResumePoint = nextDetailResumePoint;
+            nextDetail = null;
+            return lastDetail;
+        }
+
+        /**
+         * @param returned the results taken from the cursors
+         * @return the position in the listing of the first result read but not taken, or just after the last result
+         *         read, or null if the listing failed
+         */
+        private CatalogPager.ResumePoint getResumePoint(Set<EntityDetail> returned) {
+            if (nextDetail != null) {
+                return nextDetailResumePoint;
+            }
+            if (lastDetail != null && !returned.contains(lastDetail)) {
+                return lastDetailResumePoint;
+            }
+            return results.getResumePoint();
+        }
+    }
+
     /**
      * Try to retrieve an Catalog entity using the provided GUID, and if not found throw an EntityNotKnownException.
      * @param guid the GUID for the entity to retrieve
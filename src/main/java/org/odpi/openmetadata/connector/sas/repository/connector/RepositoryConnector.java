@@ -6,10 +6,14 @@
 package org.odpi.openmetadata.connector.sas.repository.connector;
 
 import org.odpi.openmetadata.connector.sas.auditlog.ErrorCode;
+import org.odpi.openmetadata.connector.sas.client.CatalogPager;
+import org.odpi.openmetadata.connector.sas.client.SASCatalogAsyncClient;
 import org.odpi.openmetadata.connector.sas.client.SASCatalogClient;
 import org.odpi.openmetadata.connector.sas.client.SASCatalogRestClient;
 import org.odpi.openmetadata.connector.sas.event.model.catalog.instance.Instance;
 import org.odpi.openmetadata.connector.sas.repository.connector.mapping.SASCatalogObject;
+import org.odpi.openmetadata.connector.sas.repository.connector.stores.ProxyHeaderCache;
+import org.odpi.openmetadata.connector.sas.repository.connector.stores.SearchResultCache;
 import org.odpi.openmetadata.frameworks.connectors.ffdc.ConnectorCheckedException;
 import org.odpi.openmetadata.frameworks.connectors.properties.ConnectionProperties;
 import org.odpi.openmetadata.frameworks.connectors.properties.EndpointProperties;
@@ -20,8 +24,17 @@ import org.odpi.openmetadata.repositoryservices.ffdc.exception.RepositoryErrorEx
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 public class RepositoryConnector extends OMRSRepositoryConnector
 {
@@ -30,7 +43,17 @@ public class RepositoryConnector extends OMRSRepositoryConnector
     private SASCatalogClient sasCatalogClient;
     private static final Logger log = LoggerFactory.getLogger(RepositoryConnector.class);
     public static final String EP_ENTITY = "/catalog/instances/";
+    private static final String SYSPROP_PROXY_CACHE_SIZE = "sas.egeria.repositoryconnector.proxyCache.maxEntries";
+    private static final String SYSPROP_PROXY_CACHE_TTL  = "sas.egeria.repositoryconnector.proxyCache.ttlSeconds";
+    private static final String SYSPROP_SEARCH_CACHE_SIZE = "sas.egeria.repositoryconnector.searchCache.maxEntries";
+    private static final String SYSPROP_SEARCH_CACHE_TTL  = "sas.egeria.repositoryconnector.searchCache.ttlSeconds";
     private String url;
+    private final ProxyHeaderCache proxyHeaderCache = new ProxyHeaderCache(
+            Integer.parseInt(System.getProperty(SYSPROP_PROXY_CACHE_SIZE, "10000")),
+            Long.parseLong(System.getProperty(SYSPROP_PROXY_CACHE_TTL, "300")) * 1000);
+    private final SearchResultCache searchResultCache = new SearchResultCache(
+            Integer.parseInt(System.getProperty(SYSPROP_SEARCH_CACHE_SIZE, "1000")),
+            Long.parseLong(System.getProperty(SYSPROP_SEARCH_CACHE_TTL, "300")) * 1000);
 
     public RepositoryConnector() {
         // default constructor
@@ -66,10 +89,33 @@ public class RepositoryConnector extends OMRSRepositoryConnector
         }
     }
 
+    @Override
+    public void disconnect() throws ConnectorCheckedException {
+        super.disconnect();
+        if (sasCatalogClient instanceof Closeable) {
+            try {
+                ((Closeable) sasCatalogClient).close();
+            } catch (IOException e) {
+                log.warn("Could not close catalog client", e);
+            }
+        }
+    }
+
     public String getBaseURL() {
         return this.url;
     }
 
+    /**
+     * Retrieve the non-blocking catalog client, if the configured client provides one.
+     * @return the asynchronous client, or null
+     */
+    public SASCatalogAsyncClient getAsyncCatalogClient() {
+        if (sasCatalogClient instanceof SASCatalogRestClient) {
+            return ((SASCatalogRestClient) sasCatalogClient).getAsyncClient();
+        }
+        return null;
+    }
+
     private void connectToCatalog(String methodName) throws Exception {
         if(this.sasCatalogClient == null) {
             EndpointProperties endpointProperties = connectionProperties.getEndpoint();
@@ -78,7 +124,7 @@ public class RepositoryConnector extends OMRSRepositoryConnector
             } else {
                 this.url = endpointProperties.getProtocol() + "://" + endpointProperties.getAddress();
                 this.sasCatalogClient = new SASCatalogRestClient(this.url, this.securedProperties.get("userId"),
-                        this.securedProperties.get("password"));
+                        this.securedProperties.get("password"), connectionProperties.getConfigurationProperties());
             }
         }
         metadataCollection = new MetadataCollection(this,
@@ -107,7 +153,9 @@ public class RepositoryConnector extends OMRSRepositoryConnector
 
     public SASCatalogObject getEntityByGUID(String guid) {
         try {
-            return sasCatalogClient.getInstanceByGuid(guid, "entity");
+            SASCatalogObject entity = sasCatalogClient.getInstanceByGuid(guid, "entity");
+            proxyHeaderCache.put(entity);
+            return entity;
         } catch (Exception e) {
             log.error("Could not fetch entity with guid: " + guid);
             e.printStackTrace();
@@ -115,6 +163,89 @@ public class RepositoryConnector extends OMRSRepositoryConnector
         return null;
     }
 
+    /**
+     * Retrieve many entities at once.
+     * @param guids the Catalog GUIDs of the entities to retrieve
+     * @return the entities found, keyed by GUID in the order requested (or null if they could not be retrieved)
+     */
+    public Map<String, SASCatalogObject> getEntitiesByGUIDs(Collection<String> guids) {
+        try {
+            Map<String, SASCatalogObject> entities = sasCatalogClient.getInstancesByGuids(guids, "entity");
+            entities.values().forEach(proxyHeaderCache::put);
+            return entities;
+        } catch (Exception e) {
+            log.error("Could not fetch entities with guids: " + guids);
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Retrieve only what is needed to build EntityProxy objects for many entities.  Entities seen recently (by any
+     * retrieval or event) are served from the proxy header cache, and only the rest are retrieved from SAS.
+     * @param guids the Catalog GUIDs of the entities
+     * @return the proxy headers found, keyed by GUID (or null if they could not be retrieved)
+     */
+    public Map<String, SASCatalogObject> getEntityProxyHeadersByGUIDs(Collection<String> guids) {
+        Map<String, SASCatalogObject> headers = new LinkedHashMap<>();
+        Set<String> missing = new LinkedHashSet<>();
+        for (String guid : guids) {
+            SASCatalogObject header = proxyHeaderCache.get(guid);
+            if (header != null) {
+                headers.put(guid, header);
+            } else if (guid != null) {
+                missing.add(guid);
+            }
+        }
+        if (!missing.isEmpty()) {
+            Map<String, SASCatalogObject> entities = getEntitiesByGUIDs(missing);
+            if (entities == null) {
+                return null;
+            }
+            headers.putAll(entities);
+        }
+        return headers;
+    }
+
+    /**
+     * Record the latest state of an entity reported by an event.
+     * @param entity the entity that was created or updated
+     */
+    public void entityChanged(SASCatalogObject entity) {
+        proxyHeaderCache.put(entity);
+        searchResultCache.invalidateType(getTypeNameSafe(entity));
+    }
+
+    /**
+     * Forget an entity reported removed by an event.
+     * @param entity the removed entity
+     */
+    public void entityRemoved(SASCatalogObject entity) {
+        proxyHeaderCache.invalidate(entity.guid);
+        searchResultCache.invalidateType(getTypeNameSafe(entity));
+    }
+
+    /**
+     * Retrieve the cache of entity search results, which is kept current by the entity events passed to
+     * {@link #entityChanged} and {@link #entityRemoved}.
+     * @return the search result cache
+     */
+    public SearchResultCache getSearchResultCache() {
+        return searchResultCache;
+    }
+
+    /**
+     * @return the Catalog type of an entity reported by an event, or null if the event did not say
+     */
+    private static String getTypeNameSafe(SASCatalogObject entity) {
+        try {
+            return entity.getTypeName();
+        } catch (RuntimeException e) {
+            log.debug("Could not determine the type of entity {}", entity.guid, e);
+            return null;
+        }
+    }
+
     public List<Instance> getInstancesWithParams(Map<String, String> queryParams, Map<String, String> attributeFilter) {
         try {
             return sasCatalogClient.getInstancesWithParams(queryParams, attributeFilter);
@@ -125,6 +256,101 @@ public class RepositoryConnector extends OMRSRepositoryConnector
         return null;
     }
 
+    public List<SASCatalogObject> getEntitiesWithParams(Map<String, String> queryParams, Map<String, String> attributeFilter) {
+        try {
+            List<SASCatalogObject> entities = sasCatalogClient.getEntitiesWithParams(queryParams, attributeFilter);
+            entities.forEach(proxyHeaderCache::put);
+            return entities;
+        } catch (Exception e) {
+            log.error("Could not get entities with filter string: " + queryParams.toString());
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    private List<SASCatalogObject> getEntitiesWithParams(CatalogQuery query) throws Exception {
+        try {
+            List<SASCatalogObject> entities = sasCatalogClient.getEntitiesWithParams(query.getQueryParams(), query.getAttributeFilter(),
+                    query.getPageSize(), query.getObserver());
+            entities.forEach(proxyHeaderCache::put);
+            return entities;
+        } catch (Exception e) {
+            log.error("Could not get entities with filter string: " + query.getQueryParams().toString(), e);
+            throw e;
+        }
+    }
+
+    /**
+     * Run several entity listings at once.  When the non-blocking client is available every listing is sent without
+     * waiting for the others, bounded by its in-flight limit, so the whole search takes about as long as its slowest
+     * listing.
+     * @param queries the listings to run
+     * @return the entities found by each listing, in the order of the queries
+     * @throws Exception if any of the listings could not be run, so that a search is never answered in part
+     */
+    public List<List<SASCatalogObject>> getEntitiesWithParams(List<CatalogQuery> queries) throws Exception {
+        List<List<SASCatalogObject>> results = new ArrayList<>(queries.size());
+        SASCatalogAsyncClient asyncClient = getAsyncCatalogClient();
+        if (asyncClient == null || queries.size() < 2) {
+            for (CatalogQuery query : queries) {
+                results.add(getEntitiesWithParams(query));
+            }
+            return results;
+        }
+
+        List<CompletableFuture<List<SASCatalogObject>>> pending = new ArrayList<>(queries.size());
+        for (CatalogQuery query : queries) {
+            pending.add(asyncClient.getEntitiesWithParams(query.getQueryParams(), query.getAttributeFilter(),
+                    query.getPageSize(), query.getObserver()));
+        }
+        for (int i = 0; i < pending.size(); i++) {
+            try {
+                List<SASCatalogObject> entities = pending.get(i).get();
+                entities.forEach(proxyHeaderCache::put);
+                results.add(entities);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.error("Interrupted while getting entities with filter string: " + queries.get(i).getQueryParams().toString());
+                throw e;
+            } catch (ExecutionException e) {
+                log.error("Could not get entities with filter string: " + queries.get(i).getQueryParams().toString(), e.getCause());
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Open a cursor on each of several entity listings.  With the non-blocking client, the first page of every listing
+     * is requested at once; further pages are only requested as each cursor is read.  A listing with a resume point
+     * carries on from there.
+     * @param queries the listings to open
+     * @return a cursor for each query, in the order of the queries
+     */
+    public List<CatalogCursor> iterateEntitiesWithParams(List<CatalogQuery> queries) {
+        SASCatalogAsyncClient asyncClient = getAsyncCatalogClient();
+        List<CatalogCursor> cursors = new ArrayList<>(queries.size());
+        for (CatalogQuery query : queries) {
+            CatalogPager<SASCatalogObject> pager = asyncClient != null
+                    ? asyncClient.iterateEntitiesWithParams(query.getQueryParams(), query.getAttributeFilter(), query.getPageSize(), query.getObserver())
+                    : sasCatalogClient.iterateEntitiesWithParams(query.getQueryParams(), query.getAttributeFilter(), query.getPageSize(), query.getObserver());
+            cursors.add(new CatalogCursor("filter string: " + query.getQueryParams().toString(),
+                    pager.resumeFrom(query.getResumePoint()).prefetch(), proxyHeaderCache));
+        }
+        return cursors;
+    }
+
+    /**
+     * Open a cursor on a search of Catalog's full-text index.  Pages of hits are only requested as the cursor is read.
+     * @param text the text to search for
+     * @param start the number of hits to skip
+     * @param maxResults the maximum number of hits to return, or 0 for all of them
+     * @return a cursor on the entities found, in relevance order
+     */
+    public CatalogCursor searchEntities(String text, long start, long maxResults) {
+        return new CatalogCursor("search: " + text, sasCatalogClient.searchEntities(text, start, maxResults), proxyHeaderCache);
+    }
+
     public SASCatalogObject getRelationshipByGUID(String guid) {
         try {
             return sasCatalogClient.getInstanceByGuid(guid, "relationship");
@@ -145,6 +371,34 @@ public class RepositoryConnector extends OMRSRepositoryConnector
         return null;
     }
 
+    /**
+     * Retrieve a slice of the relationships of an entity, limited to some relationship types.
+     * @param guid the Catalog GUID of the entity
+     * @param relationshipTypes the Catalog relationship types to include, or null for all
+     * @param start the number of matching relationships to skip
+     * @param limit the maximum number of relationships to return, or 0 for all of them
+     * @return the relationships (or null if they could not be retrieved)
+     */
+    public List<SASCatalogObject> getRelationshipsForEntity(String guid, Collection<String> relationshipTypes, int start, int limit) {
+        try {
+            return sasCatalogClient.getRelationshipsByEntityGuid(guid, relationshipTypes, start, limit);
+        } catch (Exception e) {
+            log.error("Could not fetch relationships for entity with guid: " + guid);
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Discard any cached copy of a Catalog definition, so that it is re-read on next use.
+     * @param definitionId the id of the definition that changed (or null to discard all definitions)
+     */
+    public void invalidateDefinition(String definitionId) {
+        if (sasCatalogClient != null) {
+            sasCatalogClient.invalidateDefinition(definitionId);
+        }
+    }
+
     public boolean typeDefExistsByName(String omrsTypeDefName, TypeDefCategory typeDefCategory) {
         String typeName;
         switch (typeDefCategory) {
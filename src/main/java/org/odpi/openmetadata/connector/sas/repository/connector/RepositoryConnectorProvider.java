@@ -5,9 +5,12 @@
 
 package org.odpi.openmetadata.connector.sas.repository.connector;
 
+import org.odpi.openmetadata.connector.sas.client.SASCatalogRestClient;
 import org.odpi.openmetadata.frameworks.connectors.properties.beans.ConnectorType;
 import org.odpi.openmetadata.repositoryservices.connectors.stores.metadatacollectionstore.repositoryconnector.OMRSRepositoryConnectorProviderBase;
 
+import java.util.Arrays;
+
 public class RepositoryConnectorProvider extends OMRSRepositoryConnectorProviderBase
 {
     static final String  connectorTypeGUID = "8e333e77-c432-4c7a-b08d-30b8c1c1754b";
@@ -24,6 +27,18 @@ public class RepositoryConnectorProvider extends OMRSRepositoryConnectorProvider
         connectorType.setDisplayName(connectorTypeName);
         connectorType.setDescription(connectorTypeDescription);
         connectorType.setConnectorProviderClassName(this.getClass().getName());
+        connectorType.setRecognizedConfigurationProperties(Arrays.asList(
+                SASCatalogRestClient.CONFIG_MAX_CONNECTIONS_PER_ROUTE,
+                SASCatalogRestClient.CONFIG_MAX_CONNECTIONS_TOTAL,
+                SASCatalogRestClient.CONFIG_KEEP_ALIVE_SECONDS,
+                SASCatalogRestClient.CONFIG_IDLE_TIMEOUT_SECONDS,
+                SASCatalogRestClient.CONFIG_CONNECT_TIMEOUT_MS,
+                SASCatalogRestClient.CONFIG_SOCKET_TIMEOUT_MS,
+                SASCatalogRestClient.CONFIG_REQUEST_TIMEOUT_MS,
+                SASCatalogRestClient.CONFIG_MAX_PARALLEL_REQUESTS,
+                SASCatalogRestClient.CONFIG_PAGE_SIZE,
+                SASCatalogRestClient.CONFIG_MAX_PAGE_SIZE,
+                SASCatalogRestClient.CONFIG_MAX_RESULTS));
         super.connectorTypeBean = connectorType;
     }
 }
\ No newline at end of file
@@ -0,0 +1,204 @@
+//---------------------------------------------------------------------------
+// Copyright (c) 2020, SAS Institute Inc., Cary, NC, USA.  All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+//---------------------------------------------------------------------------
+
+package org.odpi.openmetadata.connector.sas.repository.connector;
+
+import org.odpi.openmetadata.connector.sas.client.CatalogPager;
+import org.odpi.openmetadata.repositoryservices.connectors.stores.metadatacollectionstore.properties.instances.EntityDetail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Short-lived, server-side cursors on the searches being paged through, so that each page of a search carries on from
+ * where the previous one stopped rather than repeating the work of every earlier page.
+ *
+ * A search whose queries are read in sequence keeps, for the position reached, where each of its Catalog listings
+ * stopped, and the GUIDs of the results already returned, so that an entity found by more than one query is not
+ * returned again by a later page.  A search that has to be sorted in memory reads every result anyway, so keeps all of them, in sequence,
+ * and later pages are taken from those.  Either way the cursor is keyed by the canonical form of the search.
+ *
+ * Cursors are dropped once they have not been used for their idle time, and the least recently used are dropped once
+ * there are too many, or they hold too many results between them.  Results held by a cursor are as they were when the
+ * search was run, like those of a database cursor.
+ */
+public class SearchCursors {
+
+    private final int maxCursors;
+    private final int maxHeldResults;
+    private final long idleMillis;
+    private final LongSupplier clock;
+    private final Map<String, Cursor> cursors = new LinkedHashMap<>(16, 0.75f, true);
+    private int heldResults;
+
+    /**
+     * @param maxCursors the most cursors to keep
+     * @param maxHeldResults the most results to hold across every cursor
+     * @param idleMillis how long a cursor is kept without being used
+     */
+    public SearchCursors(int maxCursors, int maxHeldResults, long idleMillis) {
+        this(maxCursors, maxHeldResults, idleMillis, System::currentTimeMillis);
+    }
+
+    SearchCursors(int maxCursors, int maxHeldResults, long idleMillis, LongSupplier clock) {
+        this.maxCursors = maxCursors;
+        this.maxHeldResults = maxHeldResults;
+        this.idleMillis = idleMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * The paging of each query depends on the position of the page wanted, so is left out of the key.
+     *
+     * @param queries the queries of a search
+     * @return the canonical form of the search
+     */
+    public static String getSearchKey(List<CatalogQuery> queries) {
+        StringBuilder key = new StringBuilder();
+        for (CatalogQuery query : queries) {
+            Map<String, String> params = new TreeMap<>(query.getQueryParams());
+            params.remove("start");
+            params.remove("limit");
+            key.append(params).append('|').append(new TreeMap<>(query.getAttributeFilter())).append('\n');
+        }
+        return key.toString();
+    }
+
+    /**
+     * Remember where each query of a search stopped once its results up to a position had been read.  A search
+     * with more GUIDs returned than can be held is not kept.
+     *
+     * @param searchKey the canonical form of the search
+     * @param position the position, across the queries, of the first result not yet returned
+     * @param points where each query stopped, in the order of the queries
+     * @param returnedGUIDs the GUIDs of the results up to the position
+     */
+    public synchronized void putResumePoints(String searchKey, long position, List<CatalogPager.ResumePoint> points,
+                                             Set<String> returnedGUIDs) {
+        if (returnedGUIDs.size() <= maxHeldResults) {
+            put(searchKey + "@" + position, new Cursor(new ArrayList<>(points), new HashSet<>(returnedGUIDs), null,
+                    clock.getAsLong()));
+        }
+    }
+
+    /**
+     * @param searchKey the canonical form of the search
+     * @param position the position, across the queries, of the first result wanted
+     * @param returnedGUIDs to which the GUIDs of the results before the position are added, when the search resumes
+     * @return where each query stopped when the search last reached the position, or null
+     */
+    public synchronized List<CatalogPager.ResumePoint> getResumePoints(String searchKey, long position,
+                                                                       Set<String> returnedGUIDs) {
+        Cursor cursor = get(searchKey + "@" + position);
+        if (cursor == null) {
+            return null;
+        }
+        returnedGUIDs.addAll(cursor.returnedGUIDs);
+        return cursor.resumePoints;
+    }
+
+    /**
+     * Hold every result of a search, in sequence, for its later pages.  Results too many to hold are not kept.
+     *
+     * @param searchKey the canonical form of the search, including its sequence
+     * @param results every result of the search, in sequence
+     */
+    public synchronized void putResults(String searchKey, List<EntityDetail> results) {
+        if (results.size() <= maxHeldResults) {
+            put(searchKey, new Cursor(null, null, new ArrayList<>(results), clock.getAsLong()));
+        }
+    }
+
+    /**
+     * @param searchKey the canonical form of the search, including its sequence
+     * @return every result of the search, in sequence, or null if they are not held
+     */
+    public synchronized List<EntityDetail> getResults(String searchKey) {
+        Cursor cursor = get(searchKey);
+        return cursor == null ? null : Collections.unmodifiableList(cursor.results);
+    }
+
+    public synchronized int size() {
+        return cursors.size();
+    }
+
+    /**
+     * @return the number of results held across every cursor
+     */
+    public synchronized int getHeldResults() {
+        return heldResults;
+    }
+
+    private Cursor get(String key) {
+        Cursor cursor = cursors.get(key);
+        if (cursor == null) {
+            return null;
+        }
+        long now = clock.getAsLong();
+        if (now - cursor.lastUsed >= idleMillis) {
+            remove(key);
+            return null;
+        }
+        cursor.lastUsed = now;
+        return cursor;
+    }
+
+    private void put(String key, Cursor cursor) {
+        if (maxCursors <= 0) {
+            return;
+        }
+        remove(key);
+        cursors.put(key, cursor);
+        heldResults += cursor.size();
+        // Least recently used first
+        long now = clock.getAsLong();
+        Iterator<Map.Entry<String, Cursor>> eldest = cursors.entrySet().iterator();
+        while (eldest.hasNext()) {
+            Map.Entry<String, Cursor> entry = eldest.next();
+            boolean idle = now - entry.getValue().lastUsed >= idleMillis;
+            if (entry.getValue() != cursor && (idle || cursors.size() > maxCursors || heldResults > maxHeldResults)) {
+                heldResults -= entry.getValue().size();
+                eldest.remove();
+            }
+        }
+    }
+
+    private void remove(String key) {
+        Cursor cursor = cursors.remove(key);
+        if (cursor != null) {
+            heldResults -= cursor.size();
+        }
+    }
+
+    /**
+     * Where a search stopped: the resume point of each query and the GUIDs returned, or every result in sequence.
+     */
+    private static final class Cursor {
+        private final List<CatalogPager.ResumePoint> resumePoints;
+        private final Set<String> returnedGUIDs;
+        private final List<EntityDetail> results;
+        private long lastUsed;
+
+        private Cursor(List<CatalogPager.ResumePoint> resumePoints, Set<String> returnedGUIDs, List<EntityDetail> results,
+                       long lastUsed) {
+            this.resumePoints = resumePoints;
+            this.returnedGUIDs = returnedGUIDs;
+            this.results = results;
+            this.lastUsed = lastUsed;
+        }
+
+        private int size() {
+            return results != null ? results.size() : returnedGUIDs.size();
+        }
+    }
+}
@@ -29,6 +29,7 @@ import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.regex.Pattern;
 
 /**
  * The base class for all mappings between OMRS AttributeTypeDefs and Sas properties.
@@ -36,6 +37,7 @@ import java.util.Set;
 public abstract class AttributeMapping {
 
     private static final Logger log = LoggerFactory.getLogger(AttributeMapping.class);
+    private static final Pattern ISO_TIMESTAMP = Pattern.compile("\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}:\\d{2}.\\d{2,3}Z");
 
     private AttributeMapping() {
         // Do nothing...
@@ -106,7 +108,7 @@ public abstract class AttributeMapping {
                             String stringVal = (String) primitivePropertyValue.getPrimitiveValue();
                             if (stringVal != null) {
                                 String toCompare = (String) sasValue;
-                                bMatch = toCompare.matches(stringVal);
+                                bMatch = RegexUtils.matches(stringVal, toCompare);
                             }
                             break;
                         case OM_PRIMITIVE_TYPE_DATE:
@@ -151,8 +153,24 @@ public abstract class AttributeMapping {
                                                     Object propertyValue,
                                                     String methodName) {
 
-        InstanceProperties resultingProperties = properties;
+        return getPropertyConverter(property).addPropertyToInstance(
+                repositoryHelper,
+                repositoryName,
+                properties,
+                propertyValue,
+                methodName
+        );
 
+    }
+
+    /**
+     * Select the conversion of values to the type of the provided OMRS attribute, so that it can be chosen once and
+     * then applied to many values.
+     *
+     * @param property the property
+     * @return PropertyConverter
+     */
+    static PropertyConverter getPropertyConverter(TypeDefAttribute property) {
         switch (property.getAttributeType().getCategory()) {
             /*case ENUM_DEF:
                 AttributeMapping.addEnumPropertyToInstance(
@@ -163,22 +181,11 @@ public abstract class AttributeMapping {
                 );
                 break;*/
             case PRIMITIVE:
-                resultingProperties = AttributeMapping.addPrimitivePropertyToInstance(
-                        repositoryHelper,
-                        repositoryName,
-                        resultingProperties,
-                        property,
-                        propertyValue,
-                        methodName
-                );
-                break;
+                return getPrimitiveConverter(property);
             default:
                 log.warn("Unhandled type for mapping: {}", property);
-                break;
+                return (repositoryHelper, repositoryName, properties, propertyValue, methodName) -> properties;
         }
-
-        return resultingProperties;
-
     }
 
     /**
@@ -247,153 +254,164 @@ public abstract class AttributeMapping {
      */
 
     /**
-     * Add the supplied property to an instance properties object.  If the instance property object
-     * supplied is null, a new instance properties object is created.
+     * Select the conversion of values to the primitive type of the provided property.  The converter adds the
+     * converted value to an instance properties object, creating one if the object supplied is null, and leaves the
+     * properties as they were if the value is null or cannot be converted.
      *
-     * @param omrsRepositoryHelper the OMRS repository helper
-     * @param sourceName  name of caller
-     * @param properties  properties object to add property to may be null.
-     * @param property  the property
-     * @param propertyValue  value of property
-     * @param methodName  calling method name
-     * @return instance properties object.
+     * @param property the property
+     * @return PropertyConverter
      */
-    private static InstanceProperties addPrimitivePropertyToInstance(OMRSRepositoryHelper omrsRepositoryHelper,
-                                                                     String sourceName,
-                                                                     InstanceProperties properties,
-                                                                     TypeDefAttribute property,
-                                                                     Object propertyValue,
-                                                                     String methodName) {
+    private static PropertyConverter getPrimitiveConverter(TypeDefAttribute property) {
 
-        InstanceProperties resultingProperties = properties;
+        String propertyName = property.getAttributeName();
+        PrimitiveDef primitiveDef = (PrimitiveDef) property.getAttributeType();
+        PropertyConverter converter;
+
+        switch (primitiveDef.getPrimitiveDefCategory()) {
+            case OM_PRIMITIVE_TYPE_BOOLEAN:
+                converter = (omrsRepositoryHelper, sourceName, properties, propertyValue, methodName) ->
+                        omrsRepositoryHelper.addBooleanPropertyToInstance(
+                                sourceName,
+                                properties,
+                                propertyName,
+                                toBoolean(propertyValue),
+                                methodName
+                        );
+                break;
+            case OM_PRIMITIVE_TYPE_INT:
+                converter = (omrsRepositoryHelper, sourceName, properties, propertyValue, methodName) ->
+                        omrsRepositoryHelper.addIntPropertyToInstance(
+                                sourceName,
+                                properties,
+                                propertyName,
+                                toInt(propertyValue),
+                                methodName
+                        );
+                break;
+            case OM_PRIMITIVE_TYPE_LONG:
+                converter = (omrsRepositoryHelper, sourceName, properties, propertyValue, methodName) ->
+                        omrsRepositoryHelper.addLongPropertyToInstance(
+                                sourceName,
+                                properties,
+                                propertyName,
+                                toLong(propertyValue),
+                                methodName
+                        );
+                break;
+            case OM_PRIMITIVE_TYPE_FLOAT:
+                converter = (omrsRepositoryHelper, sourceName, properties, propertyValue, methodName) ->
+                        omrsRepositoryHelper.addFloatPropertyToInstance(
+                                sourceName,
+                                properties,
+                                propertyName,
+                                toFloat(propertyValue),
+                                methodName
+                        );
+                break;
+            case OM_PRIMITIVE_TYPE_STRING:
+                converter = (omrsRepositoryHelper, sourceName, properties, propertyValue, methodName) ->
+                        omrsRepositoryHelper.addStringPropertyToInstance(
+                                sourceName,
+                                properties,
+                                propertyName,
+                                propertyValue.toString(),
+                                methodName
+                        );
+                break;
+            case OM_PRIMITIVE_TYPE_DATE:
+                converter = (omrsRepositoryHelper, sourceName, properties, propertyValue, methodName) ->
+                        omrsRepositoryHelper.addDatePropertyToInstance(
+                                sourceName,
+                                properties,
+                                propertyName,
+                                toDate(propertyValue),
+                                methodName
+                        );
+                break;
+            default:
+                converter = (omrsRepositoryHelper, sourceName, properties, propertyValue, methodName) -> {
+                    log.error("Unhandled primitive type {} for {}", primitiveDef.getPrimitiveDefCategory(), propertyName);
+                    return properties;
+                };
+        }
 
-        if (propertyValue != null) {
-            String propertyName = property.getAttributeName();
+        return (omrsRepositoryHelper, sourceName, properties, propertyValue, methodName) -> {
+            if (propertyValue == null) {
+                log.debug("Null property");
+                return properties;
+            }
             log.debug("Adding property {} for {}", propertyName, methodName);
+            try {
+                return converter.addPropertyToInstance(omrsRepositoryHelper, sourceName, properties, propertyValue, methodName);
+            } catch (ClassCastException e) {
+                log.error("Unable to cast {} to {} for {}", propertyValue, property.getAttributeType(), propertyName);
+            } catch (NumberFormatException e) {
+                log.warn("Unable to convert {} to {} for {}", propertyValue, property.getAttributeType(), propertyName);
+            }
+            return properties;
+        };
 
-            if (property.getAttributeType().getCategory() == AttributeTypeDefCategory.PRIMITIVE) {
-                try {
-                    PrimitiveDef primitiveDef = (PrimitiveDef) property.getAttributeType();
-                    switch (primitiveDef.getPrimitiveDefCategory()) {
-                        case OM_PRIMITIVE_TYPE_BOOLEAN:
-                            boolean booleanValue;
-                            if (propertyValue instanceof Boolean) {
-                                booleanValue = (Boolean) propertyValue;
-                            } else {
-                                booleanValue = Boolean.valueOf(propertyValue.toString());
-                            }
-                            resultingProperties = omrsRepositoryHelper.addBooleanPropertyToInstance(
-                                    sourceName,
-                                    properties,
-                                    propertyName,
-                                    booleanValue,
-                                    methodName
-                            );
-                            break;
-                        case OM_PRIMITIVE_TYPE_INT:
-                            int intValue;
-                            if (propertyValue instanceof Integer) {
-                                intValue = (Integer) propertyValue;
-                            } else if (propertyValue instanceof Number) {
-                                intValue = ((Number) propertyValue).intValue();
-                            } else {
-                                intValue = Integer.valueOf(propertyValue.toString());
-                            }
-                            resultingProperties = omrsRepositoryHelper.addIntPropertyToInstance(
-                                    sourceName,
-                                    properties,
-                                    propertyName,
-                                    intValue,
-                                    methodName
-                            );
-                            break;
-                        case OM_PRIMITIVE_TYPE_LONG:
-                            long longValue;
-                            if (propertyValue instanceof Long) {
-                                longValue = (Long) propertyValue;
-                            } else if (propertyValue instanceof Number) {
-                                longValue = ((Number) propertyValue).longValue();
-                            } else {
-                                longValue = Long.valueOf(propertyValue.toString());
-                            }
-                            resultingProperties = omrsRepositoryHelper.addLongPropertyToInstance(
-                                    sourceName,
-                                    properties,
-                                    propertyName,
-                                    longValue,
-                                    methodName
-                            );
-                            break;
-                        case OM_PRIMITIVE_TYPE_FLOAT:
-                            float floatValue;
-                            if (propertyValue instanceof Float) {
-                                floatValue = (Float) propertyValue;
-                            } else if (propertyValue instanceof Number) {
-                                floatValue = ((Number) propertyValue).floatValue();
-                            } else {
-                                floatValue = Float.valueOf(propertyValue.toString());
-                            }
-                            resultingProperties = omrsRepositoryHelper.addFloatPropertyToInstance(
-                                    sourceName,
-                                    properties,
-                                    propertyName,
-                                    floatValue,
-                                    methodName
-                            );
-                            break;
-                        case OM_PRIMITIVE_TYPE_STRING:
-                            String stringValue;
-                            if (propertyValue instanceof String) {
-                                stringValue = (String) propertyValue;
-                            } else {
-                                stringValue = propertyValue.toString();
-                            }
-                            resultingProperties = omrsRepositoryHelper.addStringPropertyToInstance(
-                                    sourceName,
-                                    properties,
-                                    propertyName,
-                                    stringValue,
-                                    methodName
-                            );
-                            break;
-                        case OM_PRIMITIVE_TYPE_DATE:
-                            Date date;
-                            if (propertyValue instanceof Date) {
-                                date = (Date) propertyValue;
-                            } else if(propertyValue instanceof String && ((String)propertyValue).matches("\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}:\\d{2}.\\d{2,3}Z")) {
-                                // Timestamp is ISO-8601
-                                // https://stackoverflow.com/a/60214805
-                                TemporalAccessor ta = DateTimeFormatter.ISO_INSTANT.parse((String) propertyValue);
-                                date = Date.from(Instant.from(ta));
-                            } else {
-                                date = new Date((Long)propertyValue);
-                            }
+    }
 
-                            resultingProperties = omrsRepositoryHelper.addDatePropertyToInstance(
-                                    sourceName,
-                                    properties,
-                                    propertyName,
-                                    date,
-                                    methodName
-                            );
-                            break;
-                        default:
-                            log.error("Unhandled primitive type {} for {}", primitiveDef.getPrimitiveDefCategory(), propertyName);
-                    }
-                } catch (ClassCastException e) {
-                    log.error("Unable to cast {} to {} for {}", propertyValue, property.getAttributeType(), propertyName);
-                } catch (NumberFormatException e) {
-                    log.warn("Unable to convert {} to {} for {}", propertyValue, property.getAttributeType(), propertyName);
-                }
-            } else {
-                log.error("Cannot translate non-primitive property {} this way.", propertyName);
-            }
-        } else {
-            log.debug("Null property");
+    private static boolean toBoolean(Object propertyValue) {
+        if (propertyValue instanceof Boolean) {
+            return (Boolean) propertyValue;
+        }
+        return Boolean.valueOf(propertyValue.toString());
+    }
+
+    private static int toInt(Object propertyValue) {
+        if (propertyValue instanceof Number) {
+            return ((Number) propertyValue).intValue();
+        }
+        return Integer.valueOf(propertyValue.toString());
+    }
+
+    private static long toLong(Object propertyValue) {
+        if (propertyValue instanceof Number) {
+            return ((Number) propertyValue).longValue();
         }
+        return Long.valueOf(propertyValue.toString());
+    }
 
-        return resultingProperties;
+    private static float toFloat(Object propertyValue) {
+        if (propertyValue instanceof Number) {
+            return ((Number) propertyValue).floatValue();
+        }
+        return Float.valueOf(propertyValue.toString());
+    }
 
+    private static Date toDate(Object propertyValue) {
+        if (propertyValue instanceof Date) {
+            return (Date) propertyValue;
+        } else if (propertyValue instanceof String && ISO_TIMESTAMP.matcher((String) propertyValue).matches()) {
+            // Timestamp is ISO-8601
+            // https://stackoverflow.com/a/60214805
+            TemporalAccessor ta = DateTimeFormatter.ISO_INSTANT.parse((String) propertyValue);
+            return Date.from(Instant.from(ta));
+        }
+        return new Date((Long) propertyValue);
+    }
+
+    /**
+     * Adds a value, converted to the type of an OMRS attribute selected beforehand, to an instance properties object.
+     */
+    @FunctionalInterface
+    interface PropertyConverter {
+
+        /**
+         * @param omrsRepositoryHelper the OMRS repository helper
+         * @param sourceName name of caller
+         * @param properties properties object to add property to (may be null)
+         * @param propertyValue value of property
+         * @param methodName calling method name
+         * @return InstanceProperties
+         */
+        InstanceProperties addPropertyToInstance(OMRSRepositoryHelper omrsRepositoryHelper,
+                                                 String sourceName,
+                                                 InstanceProperties properties,
+                                                 Object propertyValue,
+                                                 String methodName);
     }
 
     /**
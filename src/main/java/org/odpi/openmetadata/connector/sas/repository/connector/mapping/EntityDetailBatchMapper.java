@@ -0,0 +1,165 @@
+//---------------------------------------------------------------------------
+// Copyright (c) 2020, SAS Institute Inc., Cary, NC, USA.  All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+//---------------------------------------------------------------------------
+
+package org.odpi.openmetadata.connector.sas.repository.connector.mapping;
+
+import org.odpi.openmetadata.connector.sas.repository.connector.RepositoryConnector;
+import org.odpi.openmetadata.connector.sas.repository.connector.stores.TypeDefStore;
+import org.odpi.openmetadata.repositoryservices.connectors.stores.metadatacollectionstore.properties.instances.EntityDetail;
+import org.odpi.openmetadata.repositoryservices.ffdc.exception.RepositoryErrorException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Maps many Catalog entities to EntityDetails at once.
+ *
+ * The entities are grouped by Catalog type, and the mapping plan of each group looked up just once.  The entities are
+ * then mapped in parallel on a ForkJoin pool, each into its own position of the results, so that the results are in
+ * the same order as the entities.  Small batches are not worth splitting, and are mapped on the calling thread.
+ * As when mapping entities one at a time, an entity that cannot be mapped fails the whole batch.
+ */
+public class EntityDetailBatchMapper {
+
+    private static final Logger log = LoggerFactory.getLogger(EntityDetailBatchMapper.class);
+
+    // The fewest entities worth handing to another thread
+    private static final int MIN_SPLIT = 32;
+
+    private final RepositoryConnector repositoryConnector;
+    private final TypeDefStore typeDefStore;
+    private final ForkJoinPool pool;
+
+    public EntityDetailBatchMapper(RepositoryConnector repositoryConnector, TypeDefStore typeDefStore) {
+        this(repositoryConnector, typeDefStore, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param repositoryConnector connectivity to the SAS repository
+     * @param typeDefStore the store of mapped TypeDefs
+     * @param pool the pool on which to map the entities
+     */
+    public EntityDetailBatchMapper(RepositoryConnector repositoryConnector, TypeDefStore typeDefStore, ForkJoinPool pool) {
+        this.repositoryConnector = repositoryConnector;
+        this.typeDefStore = typeDefStore;
+        this.pool = pool;
+    }
+
+    /**
+     * Map a batch of Catalog entities.
+     *
+     * @param instances the Catalog entities to map
+     * @param prefix the prefix indicating a generated type (and GUID), or null if not generated
+     * @param userId the user through which to do the mapping
+     * @return the EntityDetail of each entity, in the order of the entities, with null for any whose type is not
+     *         mapped
+     * @throws RepositoryErrorException when an entity could not be mapped
+     */
+    public List<EntityDetail> getEntityDetails(List<SASCatalogObject> instances, String prefix, String userId)
+            throws RepositoryErrorException {
+        SASCatalogObject[] entities = instances.toArray(new SASCatalogObject[0]);
+        MappingPlan[] mappingPlans = new MappingPlan[entities.length];
+        Map<String, MappingPlan> byType = new HashMap<>();
+        for (int i = 0; i < entities.length; i++) {
+            try {
+                String typeName = entities[i].getTypeName();
+                mappingPlans[i] = byType.computeIfAbsent(typeName,
+                        catalogTypeName -> typeDefStore.getMappingPlan(catalogTypeName, prefix));
+            } catch (RuntimeException e) {
+                log.error("Could not determine the type of entity with GUID {}.", entities[i].guid, e);
+            }
+        }
+        log.debug("Mapping {} entities of {} types", entities.length, byType.size());
+
+        EntityDetail[] details = new EntityDetail[entities.length];
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        MapRange all = new MapRange(entities, mappingPlans, prefix, userId, details, failure, 0, entities.length);
+        if (entities.length < 2 * MIN_SPLIT) {
+            all.compute();
+        } else {
+            pool.invoke(all);
+        }
+        Exception e = failure.get();
+        if (e instanceof RepositoryErrorException) {
+            throw (RepositoryErrorException) e;
+        } else if (e != null) {
+            throw (RuntimeException) e;
+        }
+        return Arrays.asList(details);
+    }
+
+    /**
+     * Map one entity, recording the first failure of the batch (after which the rest of the batch is not mapped).
+     */
+    private EntityDetail getEntityDetail(SASCatalogObject entity,
+                                         MappingPlan mappingPlan,
+                                         String prefix,
+                                         String userId,
+                                         AtomicReference<Exception> failure) {
+        if (mappingPlan == null || failure.get() != null) {
+            return null;
+        }
+        try {
+            EntityMappingSASCatalog2OMRS mapping = new EntityMappingSASCatalog2OMRS(repositoryConnector, typeDefStore, null, entity, prefix, userId);
+            return mapping.getEntityDetail(mappingPlan);
+        } catch (RepositoryErrorException | RuntimeException e) {
+            log.error("Entity with GUID {} could not be mapped.", entity.guid, e);
+            failure.compareAndSet(null, e);
+            return null;
+        }
+    }
+
+    /**
+     * Maps a range of the entities, splitting it in two until it is too small to be worth splitting.
+     */
+    private final class MapRange extends RecursiveAction {
+        private final SASCatalogObject[] entities;
+        private final MappingPlan[] mappingPlans;
+        private final String prefix;
+        private final String userId;
+        private final EntityDetail[] details;
+        private final AtomicReference<Exception> failure;
+        private final int from;
+        private final int to;
+
+        private MapRange(SASCatalogObject[] entities,
+                         MappingPlan[] mappingPlans,
+                         String prefix,
+                         String userId,
+                         EntityDetail[] details,
+                         AtomicReference<Exception> failure,
+                         int from,
+                         int to) {
+            this.entities = entities;
+            this.mappingPlans = mappingPlans;
+            this.prefix = prefix;
+            this.userId = userId;
+            this.details = details;
+            this.failure = failure;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from < 2 * MIN_SPLIT) {
+                for (int i = from; i < to; i++) {
+                    details[i] = getEntityDetail(entities[i], mappingPlans[i], prefix, userId, failure);
+                }
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new MapRange(entities, mappingPlans, prefix, userId, details, failure, from, middle),
+                          new MapRange(entities, mappingPlans, prefix, userId, details, failure, middle, to));
+            }
+        }
+    }
+}
@@ -9,7 +9,6 @@ import org.odpi.openmetadata.connector.sas.auditlog.ErrorCode;
 import org.odpi.openmetadata.connector.sas.repository.connector.RepositoryConnector;
 import org.odpi.openmetadata.connector.sas.repository.connector.model.SASCatalogGuid;
 import org.odpi.openmetadata.connector.sas.repository.connector.stores.TypeDefStore;
-import org.apache.commons.lang3.StringUtils;
 import org.odpi.openmetadata.repositoryservices.connectors.stores.metadatacollectionstore.properties.SequencingOrder;
 import org.odpi.openmetadata.repositoryservices.connectors.stores.metadatacollectionstore.properties.instances.EntityDetail;
 import org.odpi.openmetadata.repositoryservices.connectors.stores.metadatacollectionstore.properties.instances.EntitySummary;
@@ -18,7 +17,6 @@ import org.odpi.openmetadata.repositoryservices.connectors.stores.metadatacollec
 import org.odpi.openmetadata.repositoryservices.connectors.stores.metadatacollectionstore.properties.instances.InstanceStatus;
 import org.odpi.openmetadata.repositoryservices.connectors.stores.metadatacollectionstore.properties.instances.Relationship;
 import org.odpi.openmetadata.repositoryservices.connectors.stores.metadatacollectionstore.properties.typedefs.TypeDef;
-import org.odpi.openmetadata.repositoryservices.connectors.stores.metadatacollectionstore.properties.typedefs.TypeDefAttribute;
 import org.odpi.openmetadata.repositoryservices.connectors.stores.metadatacollectionstore.repositoryconnector.OMRSRepositoryHelper;
 import org.odpi.openmetadata.repositoryservices.ffdc.exception.RepositoryErrorException;
 import org.odpi.openmetadata.repositoryservices.ffdc.exception.TypeErrorException;
@@ -33,6 +31,7 @@ import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -45,8 +44,6 @@ public class EntityMappingSASCatalog2OMRS {
 
     private static final Logger log = LoggerFactory.getLogger(EntityMappingSASCatalog2OMRS.class);
 
-    private static final String SASPROPERTY_CONSTANT_PREFIX = "constant.";
-    private static final String OMRSPROPERTY_ADDITIONALPROPERTIES_PREFIX = "additionalProperties.";
     private RepositoryConnector sasRepositoryConnector;
     private TypeDefStore typeDefStore;
     // private AttributeTypeDefStore attributeDefStore;
@@ -117,12 +114,24 @@ public class EntityMappingSASCatalog2OMRS {
      * @throws RepositoryErrorException when unable to retrieve the EntityDetail
      */
     public EntityDetail getEntityDetail() throws RepositoryErrorException {
+        return getEntityDetail(typeDefStore.getMappingPlan(sasEntity.getTypeName(), prefix));
+    }
+
+    /**
+     * Retrieve the mapped OMRS EntityDetail from the sas EntityInstance used to
+     * construct this mapping object, using the mapping plan already compiled for its
+     * Catalog type and prefix.
+     *
+     * @param mappingPlan the compiled mappings for the entity's Catalog type and prefix
+     * @return EntityDetail
+     * @throws RepositoryErrorException when unable to retrieve the EntityDetail
+     */
+    public EntityDetail getEntityDetail(MappingPlan mappingPlan) throws RepositoryErrorException {
 
-        final String attribute = "attribute";
         final String methodName = "getEntityDetail";
-        String sasTypeDefName = sasEntity.getTypeName();
-        String omrsTypeDefName = typeDefStore.getMappedOMRSTypeDefName(sasTypeDefName, prefix);
-        log.info("Found mapped type for Sas type '{}' with prefix '{}': {}", sasTypeDefName, prefix, omrsTypeDefName);
+        String sasTypeDefName = mappingPlan.getCatalogTypeName();
+        String omrsTypeDefName = mappingPlan.getOmrsTypeDefName();
+        log.debug("Found mapped type for Sas type '{}' with prefix '{}': {}", sasTypeDefName, prefix, omrsTypeDefName);
 
         EntityDetail detail = null;
         if (omrsTypeDefName != null) {
@@ -137,73 +146,49 @@ public class EntityMappingSASCatalog2OMRS {
                 OMRSRepositoryHelper omrsRepositoryHelper = sasRepositoryConnector.getRepositoryHelper();
                 String repositoryName = sasRepositoryConnector.getRepositoryName();
 
-                Map<String, TypeDefAttribute> omrsAttributeMap = typeDefStore
-                        .getAllTypeDefAttributesForName(omrsTypeDefName);
-
-                // Iterate through the provided mappings to set an OMRS instance property for
-                // each one
-                Map<String, String> sasToOmrsProperties = typeDefStore
-                        .getPropertyMappingsForCatalogTypeDef(sasTypeDefName, prefix);
-
                 if (sasEntity != null) {
+                    // Apply each of the compiled mappings to set an OMRS instance property (or
+                    // an entry of additionalProperties)
                     Set<String> alreadyMapped = new HashSet<>();
-                    for (Map.Entry<String, String> property : sasToOmrsProperties.entrySet()) {
-                        String sasProperty = property.getKey();
-                        String omrsProperty = property.getValue();
-
-                        // If omrsProperty is of the form "additionalProperties.xxxxx" then extract
-                        // "xxxxx" as the
-                        // name of the property to add under additionalProperties (and extract value and
-                        // actually
-                        // add the entry in the following IF block
-                        String additionalPropertyName = "";
-                        if (omrsProperty.startsWith(OMRSPROPERTY_ADDITIONALPROPERTIES_PREFIX)) {
-                            additionalPropertyName = omrsProperty
-                                    .substring(OMRSPROPERTY_ADDITIONALPROPERTIES_PREFIX.length());
-                        }
-
-                        if (sasProperty.startsWith(SASPROPERTY_CONSTANT_PREFIX)) {
-                            String constantVal = sasProperty.substring(SASPROPERTY_CONSTANT_PREFIX.length());
-                            log.info("Adding constant value: '" + constantVal + "' for property " + omrsProperty);
-                            if (StringUtils.isNotEmpty(additionalPropertyName)) {
-                                additionalProperties.put(additionalPropertyName, constantVal);
-                            } else {
+                    for (MappingPlan.PropertyMapping mapping : mappingPlan.getPropertyMappings()) {
+                        switch (mapping.getKind()) {
+                            case CONSTANT:
+                                log.debug("Adding constant value: '{}' for property {}", mapping.getConstant(), mapping.getTargetName());
                                 instanceProperties = omrsRepositoryHelper.addStringPropertyToInstance(repositoryName,
-                                        instanceProperties, omrsProperty, constantVal, methodName);
-                            }
-                        } else if (StringUtils.isNotEmpty(additionalPropertyName)) {
-                            log.info("Mapping {} to additionalProperties '{}'", sasProperty, omrsProperty);
-                            Object propertyValue = sasEntity.get(sasProperty);
-                            if (propertyValue != null) {
-                                additionalProperties.put(additionalPropertyName, propertyValue.toString());
-                            } else {
-                                log.warn("Null property value for SAS property '{}'.", sasProperty);
-                            }
-                        } else if (omrsAttributeMap.containsKey(omrsProperty)) {
-                            log.info("Mapping {} to {}", sasProperty, omrsProperty);
-                            TypeDefAttribute typeDefAttribute = omrsAttributeMap.get(omrsProperty);
-                            instanceProperties = AttributeMapping.addPropertyToInstance(omrsRepositoryHelper,
-                                    repositoryName,
-                                    typeDefAttribute,
-                                    instanceProperties,
-                                    sasEntity.get(sasProperty),
-                                    methodName);
-                            if (instanceProperties.getPropertyValue(omrsProperty) != null) {
-                                if (sasProperty.startsWith(attribute)) {
-                                    sasProperty = sasProperty.substring(attribute.length());
+                                        instanceProperties, mapping.getTargetName(), mapping.getConstant(), methodName);
+                                break;
+                            case CONSTANT_ADDITIONAL_PROPERTY:
+                                log.debug("Adding constant value: '{}' for additionalProperties '{}'", mapping.getConstant(), mapping.getTargetName());
+                                additionalProperties.put(mapping.getTargetName(), mapping.getConstant());
+                                break;
+                            case ADDITIONAL_PROPERTY:
+                                log.debug("Mapping {} to additionalProperties '{}'", mapping.getSasProperty(), mapping.getTargetName());
+                                Object propertyValue = mapping.getValue(sasEntity);
+                                if (propertyValue != null) {
+                                    additionalProperties.put(mapping.getTargetName(), propertyValue.toString());
+                                } else {
+                                    log.warn("Null property value for SAS property '{}'.", mapping.getSasProperty());
+                                }
+                                break;
+                            case ATTRIBUTE:
+                                log.debug("Mapping {} to {}", mapping.getSasProperty(), mapping.getTargetName());
+                                instanceProperties = mapping.getConverter().addPropertyToInstance(omrsRepositoryHelper,
+                                        repositoryName,
+                                        instanceProperties,
+                                        mapping.getValue(sasEntity),
+                                        methodName);
+                                if (instanceProperties.getPropertyValue(mapping.getTargetName()) != null) {
+                                    alreadyMapped.add(mapping.getMappedName());
                                 }
-                                alreadyMapped.add(sasProperty);
-                            }
-                        } else {
-                            log.warn("No OMRS attribute {} defined for asset type {} -- skipping mapping.",
-                                    omrsProperty, omrsTypeDefName);
+                                break;
                         }
                     }
 
                     // And map any other simple (non-relationship) properties that are not otherwise
                     // mapped into 'additionalProperties'
 
-                    Set<String> nonRelationshipSet = sasEntity.getAttributes().keySet();
+                    // (copied, so that the entity itself is left as it was)
+                    Set<String> nonRelationshipSet = new HashSet<>(sasEntity.getAttributes().keySet());
 
                     // Remove all of the already-mapped properties from our list of non-relationship
                     // properties
@@ -273,6 +258,8 @@ public class EntityMappingSASCatalog2OMRS {
         List<Relationship> omrsRelationships = new ArrayList<>();
         String repositoryName = sasRepositoryConnector.getRepositoryName();
 
+        Map<String, SASCatalogObject> endpoints = resolveEndpoints(relationships, relationshipTypeGUID);
+
         for (SASCatalogObject relationship : relationships) {
             String catalogRelationshipType = relationship.getTypeName();
             String relationshipGuid = relationship.getGuid();
@@ -286,6 +273,11 @@ public class EntityMappingSASCatalog2OMRS {
                 String omrsRelationshipType = entry.getValue();
 
                 TypeDef omrsTypeDef = typeDefStore.getTypeDefByName(omrsRelationshipType);
+                if (omrsTypeDef == null) {
+                    // Mapped, but the OMRS type is not implemented in this repository
+                    log.debug("Skipping relationship {} of unimplemented type {}", relationshipGuid, omrsRelationshipType);
+                    continue;
+                }
                 String omrsTypeDefGuid = omrsTypeDef.getGUID();
 
                 // Only include the relationship if we are including all or those that match
@@ -298,6 +290,7 @@ public class EntityMappingSASCatalog2OMRS {
                             null,
                             new SASCatalogGuid(relationshipGuid, relationshipPrefix),
                             relationship,
+                            endpoints,
                             userId);
 
                     log.debug("EntityMappingSASCatalog2OMRS:get relationship from mapping");
@@ -380,6 +373,56 @@ public class EntityMappingSASCatalog2OMRS {
         return (omrsRelationships.isEmpty() ? null : omrsRelationships);
     }
 
+    /**
+     * Retrieve, in a single batch, what is needed to proxy every distinct entity
+     * at the ends of the relationships that will be mapped.
+     *
+     * @param relationships        the Catalog relationships that will be mapped
+     * @param relationshipTypeGUID the OMRS GUID of the relationship TypeDef to
+     *                             which results are limited (or null for all)
+     * @return the endpoint proxy headers keyed by SAS GUID, or null if they could
+     *         not be retrieved as a batch (endpoints are then retrieved one by one)
+     */
+    private Map<String, SASCatalogObject> resolveEndpoints(List<SASCatalogObject> relationships,
+            String relationshipTypeGUID) {
+
+        Set<String> endpointGuids = new LinkedHashSet<>();
+        for (SASCatalogObject relationship : relationships) {
+            Map<String, String> omrsPrefixToType = typeDefStore
+                    .getMappedOMRSTypeDefNameWithPrefixes(relationship.getTypeName());
+            for (String omrsRelationshipType : omrsPrefixToType.values()) {
+                TypeDef omrsTypeDef = typeDefStore.getTypeDefByName(omrsRelationshipType);
+                if (omrsTypeDef == null) {
+                    // Will not be mapped, so its endpoints are not needed
+                    continue;
+                }
+                if (relationshipTypeGUID == null || omrsTypeDef.getGUID().equals(relationshipTypeGUID)) {
+                    for (String endpoint : new String[] { "instance.endpoint1Id", "instance.endpoint2Id" }) {
+                        String endpointGuid = (String) relationship.get(endpoint);
+                        if (endpointGuid != null) {
+                            endpointGuids.add(endpointGuid);
+                        }
+                    }
+                    break;
+                }
+            }
+        }
+        // No need to retrieve the entity we already have
+        endpointGuids.remove(sasEntity.getGuid());
+
+        Map<String, SASCatalogObject> endpoints = new HashMap<>();
+        if (!endpointGuids.isEmpty()) {
+            Map<String, SASCatalogObject> retrieved = sasRepositoryConnector.getEntityProxyHeadersByGUIDs(endpointGuids);
+            if (retrieved == null) {
+                return null;
+            }
+            endpoints.putAll(retrieved);
+        }
+        endpoints.put(sasEntity.getGuid(), sasEntity);
+        return endpoints;
+
+    }
+
     /**
      * Create the base skeleton of an EntitySummary, irrespective of the specific
      * sas object.
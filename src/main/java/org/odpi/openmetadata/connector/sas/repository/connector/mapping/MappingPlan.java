@@ -0,0 +1,227 @@
+//---------------------------------------------------------------------------
+// Copyright (c) 2020, SAS Institute Inc., Cary, NC, USA.  All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+//---------------------------------------------------------------------------
+
+package org.odpi.openmetadata.connector.sas.repository.connector.mapping;
+
+import org.odpi.openmetadata.connector.sas.repository.connector.stores.TypeDefStore;
+import org.odpi.openmetadata.repositoryservices.connectors.stores.metadatacollectionstore.properties.typedefs.TypeDefAttribute;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * The property mappings of one Catalog type and prefix (from TypeDefMappings.json), compiled against the attributes
+ * of the OMRS type it maps to.
+ *
+ * Each mapping has its Catalog property resolved to an accessor, its OMRS attribute and the conversion of values to
+ * that attribute's type selected, and any constant value extracted, so that mapping an entity does no parsing of
+ * property names or lookups by name.  A plan is immutable, and can be shared by every entity of the type, on any
+ * thread.  Plans are compiled and kept by {@link TypeDefStore#getMappingPlan(String, String)}.
+ */
+public final class MappingPlan {
+
+    private static final Logger log = LoggerFactory.getLogger(MappingPlan.class);
+
+    private static final String SASPROPERTY_CONSTANT_PREFIX = "constant.";
+    private static final String SASPROPERTY_ATTRIBUTE_PREFIX = "attribute";
+    private static final String OMRSPROPERTY_ADDITIONALPROPERTIES_PREFIX = "additionalProperties.";
+
+    /**
+     * How the value of a mapped property is found, and where it is put.
+     */
+    enum Kind {
+        /** A constant value for an OMRS property */
+        CONSTANT,
+        /** A constant value for an entry of additionalProperties */
+        CONSTANT_ADDITIONAL_PROPERTY,
+        /** A Catalog property for an entry of additionalProperties */
+        ADDITIONAL_PROPERTY,
+        /** A Catalog property for an OMRS attribute */
+        ATTRIBUTE
+    }
+
+    private final String catalogTypeName;
+    private final String prefix;
+    private final String omrsTypeDefName;
+    private final List<PropertyMapping> propertyMappings;
+
+    private MappingPlan(String catalogTypeName,
+                        String prefix,
+                        String omrsTypeDefName,
+                        List<PropertyMapping> propertyMappings) {
+        this.catalogTypeName = catalogTypeName;
+        this.prefix = prefix;
+        this.omrsTypeDefName = omrsTypeDefName;
+        this.propertyMappings = Collections.unmodifiableList(propertyMappings);
+    }
+
+    /**
+     * Compile the property mappings of a Catalog type and prefix.
+     *
+     * @param typeDefStore the store of mapped TypeDefs
+     * @param catalogTypeName the name of the Catalog type
+     * @param prefix the prefix indicating a generated type, or null if not generated
+     * @return MappingPlan, whose OMRS type is null if the Catalog type is not mapped
+     */
+    public static MappingPlan compile(TypeDefStore typeDefStore, String catalogTypeName, String prefix) {
+        String omrsTypeDefName = typeDefStore.getMappedOMRSTypeDefName(catalogTypeName, prefix);
+        List<PropertyMapping> propertyMappings = new ArrayList<>();
+        if (omrsTypeDefName == null) {
+            return new MappingPlan(catalogTypeName, prefix, null, propertyMappings);
+        }
+
+        Map<String, TypeDefAttribute> omrsAttributeMap = typeDefStore.getAllTypeDefAttributesForName(omrsTypeDefName);
+        if (omrsAttributeMap == null) {
+            omrsAttributeMap = Collections.emptyMap();
+        }
+        Map<String, String> sasToOmrsProperties = typeDefStore.getPropertyMappingsForCatalogTypeDef(catalogTypeName, prefix);
+        if (sasToOmrsProperties == null) {
+            sasToOmrsProperties = Collections.emptyMap();
+        }
+
+        for (Map.Entry<String, String> property : sasToOmrsProperties.entrySet()) {
+            String sasProperty = property.getKey();
+            String omrsProperty = property.getValue();
+
+            // If omrsProperty is of the form "additionalProperties.xxxxx" then "xxxxx" is the name of the entry to add
+            // under additionalProperties
+            String additionalPropertyName = null;
+            if (omrsProperty.startsWith(OMRSPROPERTY_ADDITIONALPROPERTIES_PREFIX)) {
+                additionalPropertyName = omrsProperty.substring(OMRSPROPERTY_ADDITIONALPROPERTIES_PREFIX.length());
+                if (additionalPropertyName.isEmpty()) {
+                    additionalPropertyName = null;
+                }
+            }
+
+            if (sasProperty.startsWith(SASPROPERTY_CONSTANT_PREFIX)) {
+                String constantVal = sasProperty.substring(SASPROPERTY_CONSTANT_PREFIX.length());
+                propertyMappings.add(additionalPropertyName != null
+                        ? new PropertyMapping(Kind.CONSTANT_ADDITIONAL_PROPERTY, sasProperty, null, additionalPropertyName, constantVal, null, null, null)
+                        : new PropertyMapping(Kind.CONSTANT, sasProperty, null, omrsProperty, constantVal, null, null, null));
+            } else if (additionalPropertyName != null) {
+                propertyMappings.add(new PropertyMapping(Kind.ADDITIONAL_PROPERTY, sasProperty,
+                        SASCatalogObject.getAccessor(sasProperty), additionalPropertyName, null, null, null, null));
+            } else if (omrsAttributeMap.containsKey(omrsProperty)) {
+                TypeDefAttribute typeDefAttribute = omrsAttributeMap.get(omrsProperty);
+                String mappedName = sasProperty.startsWith(SASPROPERTY_ATTRIBUTE_PREFIX)
+                        ? sasProperty.substring(SASPROPERTY_ATTRIBUTE_PREFIX.length()) : sasProperty;
+                propertyMappings.add(new PropertyMapping(Kind.ATTRIBUTE, sasProperty,
+                        SASCatalogObject.getAccessor(sasProperty), omrsProperty, null, typeDefAttribute,
+                        AttributeMapping.getPropertyConverter(typeDefAttribute), mappedName));
+            } else {
+                log.warn("No OMRS attribute {} defined for asset type {} -- skipping mapping.",
+                        omrsProperty, omrsTypeDefName);
+            }
+        }
+        log.debug("Compiled {} property mappings from Sas type '{}' with prefix '{}' to {}",
+                propertyMappings.size(), catalogTypeName, prefix, omrsTypeDefName);
+
+        return new MappingPlan(catalogTypeName, prefix, omrsTypeDefName, propertyMappings);
+    }
+
+    public String getCatalogTypeName() {
+        return catalogTypeName;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * @return the name of the OMRS type mapped to, or null if there is none
+     */
+    public String getOmrsTypeDefName() {
+        return omrsTypeDefName;
+    }
+
+    /**
+     * @return the compiled property mappings, in the order they are applied
+     */
+    List<PropertyMapping> getPropertyMappings() {
+        return propertyMappings;
+    }
+
+    /**
+     * One compiled property mapping.
+     */
+    static final class PropertyMapping {
+        private final Kind kind;
+        private final String sasProperty;
+        private final Function<SASCatalogObject, Object> source;
+        private final String targetName;
+        private final String constant;
+        private final TypeDefAttribute target;
+        private final AttributeMapping.PropertyConverter converter;
+        private final String mappedName;
+
+        private PropertyMapping(Kind kind,
+                                String sasProperty,
+                                Function<SASCatalogObject, Object> source,
+                                String targetName,
+                                String constant,
+                                TypeDefAttribute target,
+                                AttributeMapping.PropertyConverter converter,
+                                String mappedName) {
+            this.kind = kind;
+            this.sasProperty = sasProperty;
+            this.source = source;
+            this.targetName = targetName;
+            this.constant = constant;
+            this.target = target;
+            this.converter = converter;
+            this.mappedName = mappedName;
+        }
+
+        Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * @return the Catalog property, as named in the mappings
+         */
+        String getSasProperty() {
+            return sasProperty;
+        }
+
+        /**
+         * @param entity the Catalog entity
+         * @return the value of the Catalog property for the entity
+         */
+        Object getValue(SASCatalogObject entity) {
+            return source.apply(entity);
+        }
+
+        /**
+         * @return the OMRS property, or the entry of additionalProperties, to which the value is mapped
+         */
+        String getTargetName() {
+            return targetName;
+        }
+
+        String getConstant() {
+            return constant;
+        }
+
+        TypeDefAttribute getTarget() {
+            return target;
+        }
+
+        AttributeMapping.PropertyConverter getConverter() {
+            return converter;
+        }
+
+        /**
+         * @return the name under which the Catalog property is left out of additionalProperties once mapped
+         */
+        String getMappedName() {
+            return mappedName;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+//---------------------------------------------------------------------------
+// Copyright (c) 2020, SAS Institute Inc., Cary, NC, USA.  All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+//---------------------------------------------------------------------------
+
+package org.odpi.openmetadata.connector.sas.repository.connector.mapping;
+
+import org.odpi.openmetadata.connector.sas.client.CatalogFilter;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Helpers for the regular expressions OMRS searches by.
+ *
+ * Most search values are built by the OMRS repository helper as one of a few shapes: an exact value
+ * ({@code \Qvalue\E}, or a value without any metacharacters), a prefix ({@code \Qvalue\E.*}), a suffix
+ * ({@code .*\Qvalue\E}) or a substring ({@code .*\Qvalue\E.*}).  These are recognised so that they can be sent to
+ * Catalog as the cheapest equivalent filter: eq, startsWith, endsWith or contains.  Patterns that have to be matched
+ * here are compiled once, and kept in a bounded cache.
+ */
+public class RegexUtils {
+
+    private static final int MAX_PATTERNS = 1000;
+    private static final String METACHARACTERS = ".[]{}()*+?^$|";
+
+    private static final Map<String, Pattern> patterns = Collections.synchronizedMap(
+            new LinkedHashMap<String, Pattern>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Pattern> eldest) {
+                    return size() > MAX_PATTERNS;
+                }
+            });
+
+    /**
+     * The shapes of regular expression that can be matched without one.
+     */
+    public enum Kind {
+        /** Matches only the literal */
+        EXACT,
+        /** Matches values starting with the literal */
+        PREFIX,
+        /** Matches values ending with the literal */
+        SUFFIX,
+        /** Matches values containing the literal */
+        CONTAINS,
+        /** Matches every value */
+        ANY,
+        /** Needs a regular expression */
+        REGEX
+    }
+
+    /**
+     * A regular expression, analysed.
+     */
+    public static final class Analysis {
+        private final Kind kind;
+        private final String literal;
+
+        private Analysis(Kind kind, String literal) {
+            this.kind = kind;
+            this.literal = literal;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * @return the literal text matched, or null for ANY and REGEX
+         */
+        public String getLiteral() {
+            return literal;
+        }
+    }
+
+    private RegexUtils() {
+        // Do nothing...
+    }
+
+    /**
+     * @param regex a regular expression
+     * @return the compiled pattern, from the cache where possible
+     * @throws java.util.regex.PatternSyntaxException if the regular expression is invalid
+     */
+    public static Pattern getPattern(String regex) {
+        Pattern pattern = patterns.get(regex);
+        if (pattern == null) {
+            pattern = Pattern.compile(regex);
+            patterns.put(regex, pattern);
+        }
+        return pattern;
+    }
+
+    /**
+     * @param regex a regular expression
+     * @param value the value to test
+     * @return true if the whole value matches the regular expression
+     */
+    public static boolean matches(String regex, String value) {
+        return getPattern(regex).matcher(value).matches();
+    }
+
+    /**
+     * Work out whether a regular expression is one of the shapes that can be matched without one.
+     *
+     * @param regex a regular expression
+     * @return the analysis
+     */
+    public static Analysis analyse(String regex) {
+        String body = regex;
+        boolean anyBefore = false;
+        boolean anyAfter = false;
+        // matches() always anchors to the whole value
+        if (body.startsWith("^")) {
+            body = body.substring(1);
+        }
+        if (body.endsWith("$") && !isEscaped(body, body.length() - 1)) {
+            body = body.substring(0, body.length() - 1);
+        }
+        if (body.startsWith(".*")) {
+            anyBefore = true;
+            body = body.substring(2);
+        }
+        if (body.endsWith(".*") && !isEscaped(body, body.length() - 2)) {
+            anyAfter = true;
+            body = body.substring(0, body.length() - 2);
+        }
+        String literal = getLiteral(body);
+        if (literal == null) {
+            return new Analysis(Kind.REGEX, null);
+        }
+        if (literal.isEmpty() && (anyBefore || anyAfter)) {
+            return new Analysis(Kind.ANY, null);
+        }
+        if (anyBefore && anyAfter) {
+            return new Analysis(Kind.CONTAINS, literal);
+        }
+        if (anyBefore) {
+            return new Analysis(Kind.SUFFIX, literal);
+        }
+        return new Analysis(anyAfter ? Kind.PREFIX : Kind.EXACT, literal);
+    }
+
+    /**
+     * Translate a regular expression on a Catalog field into the cheapest Catalog filter that matches the same
+     * values.  A regular expression Catalog cannot evaluate is sent as a contains() of the expression itself.
+     *
+     * @param field the Catalog field
+     * @param regex the regular expression
+     * @return the filter, or null if every value matches
+     */
+    public static CatalogFilter toCatalogFilter(String field, String regex) {
+        Analysis analysis = analyse(regex);
+        switch (analysis.getKind()) {
+            case EXACT:
+                return CatalogFilter.eq(field, analysis.getLiteral());
+            case PREFIX:
+                return CatalogFilter.startsWith(field, analysis.getLiteral());
+            case SUFFIX:
+                return CatalogFilter.endsWith(field, analysis.getLiteral());
+            case CONTAINS:
+                return CatalogFilter.contains(field, analysis.getLiteral());
+            case ANY:
+                return null;
+            default:
+                return CatalogFilter.contains(field, regex);
+        }
+    }
+
+    /**
+     * @return the literal text matched by a regular expression without any quantifiers or classes, or null if it has
+     *         any; {@code \Q...\E} quoting and escaped metacharacters are unquoted
+     */
+    private static String getLiteral(String body) {
+        StringBuilder literal = new StringBuilder(body.length());
+        int i = 0;
+        while (i < body.length()) {
+            char c = body.charAt(i);
+            if (body.startsWith("\\Q", i)) {
+                int end = body.indexOf("\\E", i + 2);
+                literal.append(body, i + 2, end < 0 ? body.length() : end);
+                i = end < 0 ? body.length() : end + 2;
+            } else if (c == '\\') {
+                if (i + 1 >= body.length() || Character.isLetterOrDigit(body.charAt(i + 1))) {
+                    // A class such as \d, or a back reference
+                    return null;
+                }
+                literal.append(body.charAt(i + 1));
+                i += 2;
+            } else if (METACHARACTERS.indexOf(c) >= 0) {
+                return null;
+            } else {
+                literal.append(c);
+                i++;
+            }
+        }
+        return literal.toString();
+    }
+
+    /**
+     * @return true if the character at the index is preceded by an odd number of backslashes, or is within a
+     *         {@code \Q...\E} quote
+     */
+    private static boolean isEscaped(String regex, int index) {
+        int quote = regex.lastIndexOf("\\Q", index);
+        if (quote >= 0 && regex.indexOf("\\E", quote) < 0) {
+            return true;
+        }
+        int backslashes = 0;
+        for (int i = index - 1; i >= 0 && regex.charAt(i) == '\\'; i--) {
+            backslashes++;
+        }
+        return backslashes % 2 == 1;
+    }
+}
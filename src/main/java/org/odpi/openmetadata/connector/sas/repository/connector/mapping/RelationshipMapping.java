@@ -26,6 +26,7 @@ import org.slf4j.LoggerFactory;
 
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Map;
 
@@ -41,6 +42,7 @@ public class RelationshipMapping {
     private AttributeTypeDefStore attributeDefStore;
     private SASCatalogGuid sasCatalogGuid;
     private SASCatalogObject relationship;
+    private Map<String, SASCatalogObject> resolvedEndpoints;
     private String userId;
 
     /**
@@ -67,6 +69,29 @@ public class RelationshipMapping {
         this.userId = userId;
     }
 
+    /**
+     * Mapping that resolves its endpoints from a set of already-retrieved entities, rather than retrieving each
+     * endpoint from SAS individually.  Used when mapping many relationships at once.
+     *
+     * @param SASRepositoryConnector connectivity to an SAS repository
+     * @param typeDefStore the store of mapped TypeDefs for the SAS repository
+     * @param attributeDefStore the store of mapped AttributeTypeDefs for the SAS repository
+     * @param sasCatalogGuid the GUID that was used to retrieve this relationship
+     * @param relationship the SAS relationship to be mapped
+     * @param resolvedEndpoints the endpoint entities (or their proxy headers) already retrieved, keyed by SAS GUID
+     * @param userId the user through which to do the mapping
+     */
+    public RelationshipMapping(RepositoryConnector SASRepositoryConnector,
+                               TypeDefStore typeDefStore,
+                               AttributeTypeDefStore attributeDefStore,
+                               SASCatalogGuid sasCatalogGuid,
+                               SASCatalogObject relationship,
+                               Map<String, SASCatalogObject> resolvedEndpoints,
+                               String userId) {
+        this(SASRepositoryConnector, typeDefStore, attributeDefStore, sasCatalogGuid, relationship, userId);
+        this.resolvedEndpoints = resolvedEndpoints;
+    }
+
     /**
      * Retrieve the mapped OMRS Relationship from the SAS relationship used to construct this mapping object.
      *
@@ -91,8 +116,8 @@ public class RelationshipMapping {
             SASCatalogObject ep2Object = null;
     
             try {
-              ep1Object = SASRepositoryConnector.getEntityByGUID(ep1Id);
-              ep2Object = SASRepositoryConnector.getEntityByGUID(ep2Id);
+              ep1Object = getEndpoint(ep1Id);
+              ep2Object = getEndpoint(ep2Id);
             } catch (Exception e) {
                 raiseRepositoryErrorException(ErrorCode.ENTITY_NOT_KNOWN, methodName, e, ep1Id, methodName, repositoryName);
             }
@@ -135,6 +160,20 @@ public class RelationshipMapping {
 
     }
 
+    /**
+     * Retrieve what is needed to proxy an endpoint entity, from the already-resolved endpoints if they were provided.
+     *
+     * @param guid the SAS GUID of the endpoint entity
+     * @return SASCatalogObject, or null if the entity does not exist
+     */
+    private SASCatalogObject getEndpoint(String guid) {
+        if (resolvedEndpoints != null) {
+            return resolvedEndpoints.get(guid);
+        }
+        Map<String, SASCatalogObject> headers = SASRepositoryConnector.getEntityProxyHeadersByGUIDs(Collections.singletonList(guid));
+        return headers == null ? null : headers.get(guid);
+    }
+
     /**
      * Create a mapped relationship based on the provided criteria
      *
@@ -403,9 +442,9 @@ public class RelationshipMapping {
                 SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSSSS'Z'");
                 entityProxy.setCreatedBy((String) SASObj.get("instance.createdBy"));
                 entityProxy.setUpdatedBy((String) SASObj.get("instance.modifiedBy"));
-                entityProxy.setVersion((long) ((double) SASObj.get("instance.version")));
-                entityProxy.setCreateTime(format.parse((String) SASObj.get("instance.creationTimeStamp")));
-                entityProxy.setUpdateTime(format.parse((String) SASObj.get("instance.modifiedTimeStamp")));
+                entityProxy.setVersion(((Number) SASObj.get("instance.version")).longValue());
+                entityProxy.setCreateTime(getTimestamp(SASObj.get("instance.creationTimeStamp"), format));
+                entityProxy.setUpdateTime(getTimestamp(SASObj.get("instance.modifiedTimeStamp"), format));
             } catch (TypeErrorException e) {
                 log.error("Unable to create new EntityProxy.", e);
             } catch (ParseException e) {
@@ -420,6 +459,22 @@ public class RelationshipMapping {
 
     }
 
+    /**
+     * Retrieves a timestamp of a SAS object as a Date.  Objects read from the Catalog API hold timestamps as strings,
+     * while those built from events already hold Dates.
+     *
+     * @param timestamp the timestamp, as a Date or a string
+     * @param format the format of timestamps held as strings
+     * @return Date, or null if there is no timestamp
+     * @throws ParseException when a string timestamp cannot be parsed
+     */
+    private static Date getTimestamp(Object timestamp, SimpleDateFormat format) throws ParseException {
+        if (timestamp == null || timestamp instanceof Date) {
+            return (Date) timestamp;
+        }
+        return format.parse(timestamp.toString());
+    }
+
     /**
      * Create the base skeleton of a Relationship, irrespective of the specific SAS object.
      *
@@ -11,6 +11,7 @@ import org.odpi.openmetadata.connector.sas.event.model.catalog.instance.Instance
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.function.Function;
 
 public class SASCatalogObject {
     public String guid;
@@ -26,17 +27,28 @@ public class SASCatalogObject {
     }
 
     public Object get(String sasProperty) {
+        return getAccessor(sasProperty).apply(this);
+    }
+
+    /**
+     * Resolve a property name of the form "instance.x", "definition.x" or "attribute.x" to a function that reads the
+     * property from any SASCatalogObject, so that the name need only be parsed once.
+     *
+     * @param sasProperty the qualified name of the property
+     * @return a function returning the value of the property, or null for a name of any other form
+     */
+    public static Function<SASCatalogObject, Object> getAccessor(String sasProperty) {
         if(sasProperty.startsWith("instance.")) {
             String propertyName = sasProperty.substring("instance.".length());
-            return getInstanceProperty(propertyName);
+            return object -> object.getInstanceProperty(propertyName);
         } else if(sasProperty.startsWith("definition.")) {
             String propertyName = sasProperty.substring("definition.".length());
-            return getDefinitionProperty(propertyName);
+            return object -> object.getDefinitionProperty(propertyName);
         } else if(sasProperty.startsWith("attribute.")) {
             String propertyName = sasProperty.substring("attribute.".length());
-            return getAttribute(propertyName);
+            return object -> object.getAttribute(propertyName);
         }
-        return null;
+        return object -> null;
     }
 
     public String getTypeName() {
@@ -62,6 +74,25 @@ public class SASCatalogObject {
         return guid;
     }
 
+    /**
+     * Create a copy of this object holding only what is needed to build an EntityProxy:
+     * the type, name, audit details and version.
+     * @return SASCatalogObject
+     */
+    public SASCatalogObject getProxyHeader() {
+        SASCatalogObject header = new SASCatalogObject();
+        header.guid = guid;
+        header.defId = defId;
+        for (String property : new String[] { "name", "type", "version", "createdBy", "modifiedBy", "creationTimeStamp", "modifiedTimeStamp" }) {
+            header.addInstanceProperty(property, instanceProperties.get(property));
+        }
+        header.addDefinitionProperty("name", definitionProperties.get("name"));
+        if (attributes != null && attributes.containsKey("referencedType")) {
+            header.attributes.put("referencedType", attributes.get("referencedType"));
+        }
+        return header;
+    }
+
     public void addInstanceProperty(String property, Object instanceVal) {
         instanceProperties.put(property, instanceVal);
     }
@@ -11,10 +11,16 @@ import org.odpi.openmetadata.repositoryservices.connectors.stores.metadatacollec
 import org.odpi.openmetadata.repositoryservices.connectors.stores.metadatacollectionstore.properties.instances.InstancePropertyValue;
 import org.odpi.openmetadata.repositoryservices.connectors.stores.metadatacollectionstore.properties.instances.Relationship;
 
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
 
 public class SequencingUtils {
 
+    private static final String CATALOG_INSTANCE_PREFIX = "instance.";
+
     private SequencingUtils() {
         // Do nothing...
     }
@@ -147,4 +153,133 @@ public class SequencingUtils {
 
     }
 
+    /**
+     * Translate a sequencing order into a Catalog sortBy clause, so that Catalog returns the results in that order.
+     * Only instance fields can be sorted by Catalog; sorting by any other property is left to the comparators above.
+     *
+     * @param sequencingOrder the order by which to sort the results
+     * @param catalogPropertyName the Catalog property mapped to the sequencing property (e.g. instance.name), if any
+     * @return the sortBy clause, or null if Catalog cannot return the results in this order
+     */
+    public static String getCatalogSortBy(SequencingOrder sequencingOrder, String catalogPropertyName) {
+
+        String sortBy = null;
+        if (sequencingOrder != null) {
+            switch (sequencingOrder) {
+                case GUID:
+                    sortBy = "id:ascending";
+                    break;
+                case LAST_UPDATE_OLDEST:
+                    sortBy = "modifiedTimeStamp:ascending";
+                    break;
+                case LAST_UPDATE_RECENT:
+                    sortBy = "modifiedTimeStamp:descending";
+                    break;
+                case CREATION_DATE_OLDEST:
+                    sortBy = "creationTimeStamp:ascending";
+                    break;
+                case CREATION_DATE_RECENT:
+                    sortBy = "creationTimeStamp:descending";
+                    break;
+                case PROPERTY_ASCENDING:
+                case PROPERTY_DESCENDING:
+                    if (catalogPropertyName != null && catalogPropertyName.startsWith(CATALOG_INSTANCE_PREFIX)) {
+                        sortBy = catalogPropertyName.substring(CATALOG_INSTANCE_PREFIX.length())
+                                + (sequencingOrder == SequencingOrder.PROPERTY_ASCENDING ? ":ascending" : ":descending");
+                    }
+                    break;
+                default:
+                    // Do nothing -- no sorting
+                    break;
+            }
+        }
+        return sortBy;
+
+    }
+
+    /**
+     * Merge lists that are each already in sequence into a single list in that sequence.  Only the heads of the lists
+     * are compared, so at most {@code limit} results are ever looked at.  Results that compare equal keep the order of
+     * the lists they came from.
+     *
+     * @param sortedLists the lists to merge, each ordered by the comparator
+     * @param comparator the sequence of the results, or null to simply append the lists one after another
+     * @param limit the maximum number of results to return, or 0 for all of them
+     * @param <T> the type of result
+     * @return the merged results
+     */
+    public static <T> List<T> mergeSorted(List<List<T>> sortedLists, Comparator<? super T> comparator, int limit) {
+        List<Iterator<T>> cursors = new ArrayList<>(sortedLists.size());
+        for (List<T> list : sortedLists) {
+            cursors.add(list.iterator());
+        }
+        return mergeSortedIterators(cursors, comparator, limit);
+    }
+
+    /**
+     * Merge iterators that each return results in sequence, as for {@link #mergeSorted(List, Comparator, int)}.  No
+     * iterator is read further than the merged results need: without a comparator, an iterator is only read once
+     * all those before it are exhausted.
+     *
+     * @param cursors the iterators to merge, each ordered by the comparator
+     * @param comparator the sequence of the results, or null to simply append the iterators' results one after another
+     * @param limit the maximum number of results to return, or 0 for all of them
+     * @param <T> the type of result
+     * @return the merged results
+     */
+    public static <T> List<T> mergeSortedIterators(List<Iterator<T>> cursors, Comparator<? super T> comparator, int limit) {
+
+        List<T> merged = new ArrayList<>();
+        int max = limit > 0 ? limit : Integer.MAX_VALUE;
+        if (comparator == null) {
+            for (Iterator<T> cursor : cursors) {
+                while (merged.size() < max && cursor.hasNext()) {
+                    merged.add(cursor.next());
+                }
+            }
+            return merged;
+        }
+
+        PriorityQueue<MergeCursor<T>> heads = new PriorityQueue<>((a, b) -> {
+            int compared = comparator.compare(a.head, b.head);
+            return compared != 0 ? compared : Integer.compare(a.index, b.index);
+        });
+        for (int i = 0; i < cursors.size(); i++) {
+            Iterator<T> results = cursors.get(i);
+            if (results.hasNext()) {
+                heads.add(new MergeCursor<>(i, results));
+            }
+        }
+        while (!heads.isEmpty() && merged.size() < max) {
+            MergeCursor<T> cursor = heads.poll();
+            merged.add(cursor.head);
+            // Only read on once this result has been taken, so nothing past the last page is requested
+            if (merged.size() < max && cursor.advance()) {
+                heads.add(cursor);
+            }
+        }
+        return merged;
+
+    }
+
+    private static final class MergeCursor<T> {
+        private final int index;
+        private final Iterator<T> remaining;
+        private T head;
+
+        private MergeCursor(int index, Iterator<T> remaining) {
+            this.index = index;
+            this.remaining = remaining;
+            this.head = remaining.next();
+        }
+
+        private boolean advance() {
+            if (remaining.hasNext()) {
+                head = remaining.next();
+                return true;
+            }
+            return false;
+        }
+    }
+
 }
@@ -0,0 +1,93 @@
+//---------------------------------------------------------------------------
+// Copyright (c) 2020, SAS Institute Inc., Cary, NC, USA.  All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+//---------------------------------------------------------------------------
+
+package org.odpi.openmetadata.connector.sas.repository.connector.stores;
+
+import org.odpi.openmetadata.connector.sas.repository.connector.mapping.SASCatalogObject;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded, thread-safe cache of the minimal entity information needed to build an EntityProxy, keyed by SAS GUID.
+ *
+ * Headers are collected from every entity the connector retrieves and from entity events, so that the ends of a
+ * relationship can usually be proxied without going back to SAS.  Entries expire after their time-to-live.
+ */
+public class ProxyHeaderCache {
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final LongSupplier clock;
+    private final Map<String, Entry> entries;
+
+    public ProxyHeaderCache(int maxEntries, long ttlMillis) {
+        this(maxEntries, ttlMillis, System::currentTimeMillis);
+    }
+
+    ProxyHeaderCache(int maxEntries, long ttlMillis, LongSupplier clock) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > ProxyHeaderCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Retrieve the proxy header for an entity, if one is cached and has not expired.
+     *
+     * @param guid the SAS GUID of the entity
+     * @return SASCatalogObject holding only the proxy header, or null
+     */
+    public synchronized SASCatalogObject get(String guid) {
+        Entry entry = entries.get(guid);
+        if (entry == null) {
+            return null;
+        }
+        if (clock.getAsLong() - entry.cachedAt >= ttlMillis) {
+            entries.remove(guid);
+            return null;
+        }
+        return entry.header;
+    }
+
+    /**
+     * Cache the proxy header of an entity that was just retrieved or reported by an event.
+     *
+     * @param entity the SAS entity
+     */
+    public void put(SASCatalogObject entity) {
+        if (maxEntries <= 0 || entity == null || entity.getGuid() == null) {
+            return;
+        }
+        SASCatalogObject header = entity.getProxyHeader();
+        synchronized (this) {
+            entries.put(header.getGuid(), new Entry(header, clock.getAsLong()));
+        }
+    }
+
+    public synchronized void invalidate(String guid) {
+        entries.remove(guid);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private static final class Entry {
+        private final SASCatalogObject header;
+        private final long cachedAt;
+
+        private Entry(SASCatalogObject header, long cachedAt) {
+            this.header = header;
+            this.cachedAt = cachedAt;
+        }
+    }
+}
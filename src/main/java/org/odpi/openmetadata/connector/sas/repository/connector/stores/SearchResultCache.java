@@ -0,0 +1,297 @@
+//---------------------------------------------------------------------------
+// Copyright (c) 2020, SAS Institute Inc., Cary, NC, USA.  All Rights Reserved.
+// SPDX-License-Identifier: Apache-2.0
+//---------------------------------------------------------------------------
+
+package org.odpi.openmetadata.connector.sas.repository.connector.stores;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded, thread-safe cache of the results of entity searches, keyed by a canonical form of the search.
+ *
+ * Only the GUIDs of the results are kept, each with a stamp of the version that was found, so that the entities can be
+ * retrieved directly rather than by searching again, and checked for changes made since.  Each entry records the
+ * Catalog types it was searched for, and is dropped as soon as an event reports an entity of one of those types was
+ * created, updated or removed.  Entries also expire after their time-to-live, in case an event was missed.
+ *
+ * A search that was running while an entry was invalidated may have read the catalog before the change, so results
+ * are only cached if nothing has been invalidated since the search began (see {@link #getGeneration()}).
+ */
+public class SearchResultCache {
+
+    /**
+     * The Catalog type recorded for a search that is not limited by type, and so is invalidated by every event.
+     */
+    public static final String ANY_TYPE = "*";
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final LongSupplier clock;
+    private final Map<String, Entry> entries;
+    private final Map<String, Set<String>> keysByType = new LinkedHashMap<>();
+    private long generation;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+    private long invalidations;
+    private long stale;
+
+    public SearchResultCache(int maxEntries, long ttlMillis) {
+        this(maxEntries, ttlMillis, System::currentTimeMillis);
+    }
+
+    SearchResultCache(int maxEntries, long ttlMillis, LongSupplier clock) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > SearchResultCache.this.maxEntries) {
+                    evictions++;
+                    unindex(eldest.getKey(), eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Retrieve the cached results of a search, if they have not been invalidated or expired.
+     *
+     * @param key the canonical form of the search
+     * @return the cached results, or null
+     */
+    public synchronized Entry get(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null && clock.getAsLong() - entry.cachedAt >= ttlMillis) {
+            expirations++;
+            remove(key);
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return entry;
+    }
+
+    /**
+     * @return a number that changes whenever results are invalidated; take it before a search begins, and pass it
+     *         to {@link #put} once the search is complete
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Cache the results of a search, unless something was invalidated while it ran.
+     *
+     * @param key the canonical form of the search
+     * @param catalogTypeNames the Catalog types searched, or {@link #ANY_TYPE}
+     * @param guids the GUIDs of the results, in order
+     * @param versions the version stamp of each result
+     * @param generation the generation taken before the search began
+     * @return true if the results were cached
+     */
+    public synchronized boolean put(String key, Collection<String> catalogTypeNames, List<String> guids,
+                                    List<String> versions, long generation) {
+        if (maxEntries <= 0 || generation != this.generation) {
+            return false;
+        }
+        Entry previous = entries.remove(key);
+        if (previous != null) {
+            unindex(key, previous);
+        }
+        Entry entry = new Entry(new HashSet<>(catalogTypeNames), guids, versions, clock.getAsLong());
+        for (String typeName : entry.catalogTypeNames) {
+            keysByType.computeIfAbsent(typeName, k -> new HashSet<>()).add(key);
+        }
+        entries.put(key, entry);
+        return true;
+    }
+
+    /**
+     * Drop the cached results of every search for a type, because an entity of that type was created, updated or
+     * removed.
+     *
+     * @param catalogTypeName the Catalog type of the entity, or null if it is not known (which drops everything)
+     */
+    public synchronized void invalidateType(String catalogTypeName) {
+        generation++;
+        if (catalogTypeName == null) {
+            invalidations += entries.size();
+            entries.clear();
+            keysByType.clear();
+            return;
+        }
+        Set<String> keys = new HashSet<>();
+        keys.addAll(keysByType.getOrDefault(catalogTypeName, Collections.emptySet()));
+        keys.addAll(keysByType.getOrDefault(ANY_TYPE, Collections.emptySet()));
+        for (String key : keys) {
+            invalidations++;
+            remove(key);
+        }
+    }
+
+    /**
+     * Drop the cached results of a search, because one of the entities had changed when they were retrieved.
+     *
+     * @param key the canonical form of the search
+     */
+    public synchronized void stale(String key) {
+        stale++;
+        remove(key);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the hit rate, evictions and staleness of the cache so far
+     */
+    public synchronized Stats getStats() {
+        return new Stats(hits, misses, evictions, expirations, invalidations, stale, entries.size());
+    }
+
+    private void remove(String key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            unindex(key, entry);
+        }
+    }
+
+    private void unindex(String key, Entry entry) {
+        for (String typeName : entry.catalogTypeNames) {
+            Set<String> keys = keysByType.get(typeName);
+            if (keys != null && keys.remove(key) && keys.isEmpty()) {
+                keysByType.remove(typeName);
+            }
+        }
+    }
+
+    public static final class Entry {
+        private final Set<String> catalogTypeNames;
+        private final List<String> guids;
+        private final List<String> versions;
+        private final long cachedAt;
+
+        private Entry(Set<String> catalogTypeNames, List<String> guids, List<String> versions, long cachedAt) {
+            this.catalogTypeNames = catalogTypeNames;
+            this.guids = Collections.unmodifiableList(new ArrayList<>(guids));
+            this.versions = Collections.unmodifiableList(new ArrayList<>(versions));
+            this.cachedAt = cachedAt;
+        }
+
+        /**
+         * @return the GUIDs of the results, in order
+         */
+        public List<String> getGuids() {
+            return guids;
+        }
+
+        /**
+         * @return the version stamp of each result, in the order of the GUIDs
+         */
+        public List<String> getVersions() {
+            return versions;
+        }
+    }
+
+    /**
+     * A snapshot of the cache's statistics.
+     */
+    public static final class Stats {
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final long expirations;
+        private final long invalidations;
+        private final long stale;
+        private final int size;
+
+        private Stats(long hits, long misses, long evictions, long expirations, long invalidations, long stale, int size) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.expirations = expirations;
+            this.invalidations = invalidations;
+            this.stale = stale;
+            this.size = size;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        /**
+         * @return the fraction of lookups that found results, or 0 if there have been none
+         */
+        public double getHitRate() {
+            return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+        }
+
+        /**
+         * @return the number of entries dropped to make room for others
+         */
+        public long getEvictions() {
+            return evictions;
+        }
+
+        /**
+         * @return the number of entries dropped once their time-to-live had passed
+         */
+        public long getExpirations() {
+            return expirations;
+        }
+
+        /**
+         * @return the number of entries dropped because of an event
+         */
+        public long getInvalidations() {
+            return invalidations;
+        }
+
+        /**
+         * @return the number of hits found to be out of date when their entities were retrieved
+         */
+        public long getStale() {
+            return stale;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        @Override
+        public String toString() {
+            return "SearchResultCache.Stats{" +
+                    "hits=" + hits +
+                    ", misses=" + misses +
+                    ", hitRate=" + String.format("%.3f", getHitRate()) +
+                    ", evictions=" + evictions +
+                    ", expirations=" + expirations +
+                    ", invalidations=" + invalidations +
+                    ", stale=" + stale +
+                    ", size=" + size +
+                    '}';
+        }
+    }
+}
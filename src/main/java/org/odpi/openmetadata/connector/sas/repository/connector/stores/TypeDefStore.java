@@ -8,6 +8,7 @@ package org.odpi.openmetadata.connector.sas.repository.connector.stores;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.odpi.openmetadata.connector.sas.repository.connector.mapping.MappingFromFile;
+import org.odpi.openmetadata.connector.sas.repository.connector.mapping.MappingPlan;
 import org.odpi.openmetadata.repositoryservices.connectors.stores.metadatacollectionstore.properties.typedefs.TypeDef;
 import org.odpi.openmetadata.repositoryservices.connectors.stores.metadatacollectionstore.properties.typedefs.TypeDefAttribute;
 import org.odpi.openmetadata.repositoryservices.connectors.stores.metadatacollectionstore.properties.typedefs.TypeDefLink;
@@ -17,12 +18,15 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Store of implemented TypeDefs for the repository.
@@ -36,6 +40,8 @@ public class TypeDefStore {
     private Map<String, TypeDef> omrsGuidToTypeDef;
     private Map<String, String> omrsNameToGuid;
     private Map<String, Map<String, TypeDefAttribute>> omrsGuidToAttributeMap;
+    private Map<String, Map<String, TypeDefAttribute>> omrsGuidToAllAttributeMap;
+    private Map<String, Set<String>> omrsGuidToSubTypeGuids;
     private Map<String, TypeDef> unimplementedTypeDefs;
 
     // Mapping details
@@ -48,6 +54,9 @@ public class TypeDefStore {
     private Map<String, Map<String, EndpointMapping>> catalogNameToEndpointMapByPrefix;
     private Set<String> superTypesToAdd;
 
+    // Compiled mappings, by Catalog type name and prefix
+    private Map<List<String>, MappingPlan> mappingPlans;
+
     private Set<String> unmappedTypes;
 
     private ObjectMapper mapper;
@@ -60,6 +69,8 @@ public class TypeDefStore {
         omrsGuidToTypeDef = new HashMap<>();
         omrsNameToGuid = new HashMap<>();
         omrsGuidToAttributeMap = new HashMap<>();
+        omrsGuidToAllAttributeMap = new ConcurrentHashMap<>();
+        omrsGuidToSubTypeGuids = new HashMap<>();
         prefixToOmrsTypeName = new HashMap<>();
         omrsNameToCatalogNamesByPrefix = new HashMap<>();
         catalogNameToOmrsNamesByPrefix = new HashMap<>();
@@ -70,6 +81,7 @@ public class TypeDefStore {
         catalogNameToEndpointMapByPrefix = new HashMap<>();
         unmappedTypes = new HashSet<>();
         superTypesToAdd = new HashSet<>();
+        mappingPlans = new ConcurrentHashMap<>();
         mapper = new ObjectMapper();
         loadMappings();
     }
@@ -234,6 +246,19 @@ public class TypeDefStore {
         }
     }
 
+    /**
+     * Retrieves the property mappings for the provided Catalog TypeDef name, compiled against the attributes of the
+     * OMRS TypeDef it maps to.  Each is compiled the first time it is needed, and kept until another TypeDef is added.
+     *
+     * @param catalogName the name of the Catalog TypeDef
+     * @param prefix the prefix (if any) when mappings to multiple types exist
+     * @return MappingPlan
+     */
+    public MappingPlan getMappingPlan(String catalogName, String prefix) {
+        return mappingPlans.computeIfAbsent(Arrays.asList(catalogName, prefix),
+                key -> MappingPlan.compile(this, catalogName, prefix));
+    }
+
     /**
      * Retrieve the relationship endpoint mapping from the  Catalog details provided.
      *
@@ -374,6 +399,29 @@ public class TypeDefStore {
         }
     }
 
+    /**
+     * Retrieves every Catalog TypeDef name that maps to the provided OMRS TypeDef name, under any prefix.  This is
+     * the reverse of {@link #getMappedOMRSTypeDefNameWithPrefixes(String)}, and unlike
+     * {@link #getAllMappedCatalogTypeDefNames(String)} includes all Catalog types mapped without a prefix.  As there,
+     * an implemented OMRS type is taken to be a Catalog type of the same name only when no mapping names it.
+     *
+     * @param omrsName the name of the OMRS TypeDef
+     * @return {@code Set<String>}
+     */
+    public Set<String> getAllCatalogTypeDefNamesMappedTo(String omrsName) {
+        Set<String> catalogNames = new TreeSet<>();
+        for (Map.Entry<String, Map<String, String>> entry : catalogNameToOmrsNamesByPrefix.entrySet()) {
+            if (entry.getValue().containsValue(omrsName)) {
+                catalogNames.add(entry.getKey());
+            }
+        }
+        if (!isTypeDefMapped(omrsName) && !catalogNameToOmrsNamesByPrefix.containsKey(omrsName) && omrsNameToGuid.containsKey(omrsName)) {
+            // A Catalog type with the same name as the OMRS type maps to it directly
+            catalogNames.add(omrsName);
+        }
+        return catalogNames;
+    }
+
     /**
      * Adds the provided TypeDef to the list of those that are implemented in the repository.
      *
@@ -384,6 +432,9 @@ public class TypeDefStore {
         omrsGuidToTypeDef.put(guid, typeDef);
         omrsNameToGuid.put(typeDef.getName(), guid);
         addAttributes(typeDef.getPropertiesDefinition(), guid, typeDef.getName());
+        addInheritance(typeDef);
+        // The new type (or its attributes) may change how Catalog types are mapped
+        mappingPlans.clear();
 
         // No longer need to add this type
         superTypesToAdd.remove(typeDef.getGUID());
@@ -415,6 +466,8 @@ public class TypeDefStore {
         String guid = typeDef.getGUID();
         unimplementedTypeDefs.put(guid, typeDef);
         addAttributes(typeDef.getPropertiesDefinition(), guid, typeDef.getName());
+        addInheritance(typeDef);
+        mappingPlans.clear();
     }
 
     /**
@@ -443,6 +496,52 @@ public class TypeDefStore {
         }
     }
 
+    /**
+     * Records the provided TypeDef as a subtype of its supertype, and flattens the attributes of the TypeDef and of
+     * every type already known to inherit from it.  A type whose supertype has not yet been added is flattened with
+     * the attributes known so far, and flattened again once the supertype arrives.
+     *
+     * @param typeDef the type definition that has been added
+     */
+    private void addInheritance(TypeDef typeDef) {
+        TypeDefLink superType = typeDef.getSuperType();
+        if (superType != null) {
+            omrsGuidToSubTypeGuids.computeIfAbsent(superType.getGUID(), k -> new HashSet<>()).add(typeDef.getGUID());
+        }
+        // Supertypes before subtypes, so that each can build on its supertype's flattened attributes
+        List<String> subtree = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        subtree.add(typeDef.getGUID());
+        seen.add(typeDef.getGUID());
+        for (int i = 0; i < subtree.size(); i++) {
+            for (String subTypeGuid : omrsGuidToSubTypeGuids.getOrDefault(subtree.get(i), Collections.emptySet())) {
+                if (seen.add(subTypeGuid)) {
+                    subtree.add(subTypeGuid);
+                }
+            }
+        }
+        for (String guid : subtree) {
+            omrsGuidToAllAttributeMap.put(guid, flattenAttributes(guid));
+        }
+    }
+
+    /**
+     * Combines the attributes of the specified type definition with the flattened attributes of its supertype.
+     *
+     * @param guid of the type definition
+     * @return {@code Map<String, TypeDefAttribute>}
+     */
+    private Map<String, TypeDefAttribute> flattenAttributes(String guid) {
+        Map<String, TypeDefAttribute> all = new HashMap<>();
+        TypeDef typeDef = omrsGuidToTypeDef.getOrDefault(guid, unimplementedTypeDefs.get(guid));
+        TypeDefLink superType = typeDef == null ? null : typeDef.getSuperType();
+        if (superType != null) {
+            all.putAll(omrsGuidToAllAttributeMap.getOrDefault(superType.getGUID(), Collections.emptyMap()));
+        }
+        all.putAll(omrsGuidToAttributeMap.getOrDefault(guid, Collections.emptyMap()));
+        return Collections.unmodifiableMap(all);
+    }
+
     /**
      * Retrieves an unimplemented TypeDef by its GUID.
      *
@@ -515,39 +614,18 @@ public class TypeDefStore {
         }
     }
 
-    /**
-     * Retrieves a map from attribute name to attribute definition for all attributes of the specified type definition.
-     *
-     * @param guid of the type definition
-     * @return {@code Map<String, TypeDefAttribute>}
-     */
-    private Map<String, TypeDefAttribute> getTypeDefAttributesByGUID(String guid) {
-        if (omrsGuidToAttributeMap.containsKey(guid)) {
-            return omrsGuidToAttributeMap.get(guid);
-        } else {
-            log.warn("Unable to find attributes for OMRS TypeDef by GUID: {}", guid);
-            return null;
-        }
-    }
-
     /**
      * Retrieves a map from attribute name to attribute definition for all attributes of the specified type definition,
-     * including all of its supertypes' attributes.
+     * including all of its supertypes' attributes.  The map is flattened when the type definitions are added, and
+     * cannot be modified.
      *
      * @param guid of the type definition
      * @return {@code Map<String, TypeDefAttribute>}
      */
     private Map<String, TypeDefAttribute> getAllTypeDefAttributesForGUID(String guid) {
-        Map<String, TypeDefAttribute> all = getTypeDefAttributesByGUID(guid);
-        if (all != null) {
-            TypeDef typeDef = getTypeDefByGUID(guid, false);
-            if (typeDef == null) {
-                typeDef = getUnimplementedTypeDefByGUID(guid);
-            }
-            TypeDefLink superType = typeDef.getSuperType();
-            if (superType != null) {
-                all.putAll(getAllTypeDefAttributesForGUID(superType.getGUID()));
-            }
+        Map<String, TypeDefAttribute> all = omrsGuidToAllAttributeMap.get(guid);
+        if (all == null) {
+            log.warn("Unable to find attributes for OMRS TypeDef by GUID: {}", guid);
         }
         return all;
     }
@@ -0,0 +1,54 @@
+package org.odpi.openmetadata.connector.sas.client
+
+import spock.lang.Specification
+
+import static org.odpi.openmetadata.connector.sas.client.CatalogFilter.*
+
+class CatalogFilterTest extends Specification {
+    def "Filters are serialized in canonical form"() {
+        expect: "nested operations are flattened and operands sorted"
+        and(eq("type", "table"), and(contains("name", "b"), contains("name", "a"))).toString() ==
+                'and(contains(name,"a"),contains(name,"b"),eq(type,"table"))'
+
+        and: "equivalent filters are equal"
+        or(eq("a", "1"), eq("b", "2")) == or(eq("b", "2"), eq("a", "1"), eq("a", "1"))
+
+        and: "in values are de-duplicated and sorted, and a single value is an eq"
+        in("id", ["b", "a", "b"]).toString() == 'in(id,"a","b")'
+        in("id", ["a"]).toString() == 'eq(id,"a")'
+
+        and: "a single operand is used on its own, and none gives no filter"
+        and(eq("type", "table"), null).toString() == 'eq(type,"table")'
+        or([]) == null
+    }
+
+    def "Values are escaped"() {
+        expect:
+        contains("name", 'say "hi" \\ bye').toString() == 'contains(name,"say \\"hi\\" \\\\ bye")'
+    }
+
+    def "Long filters are split into filters that together match the same instances"() {
+        List<String> ids = (1..50).collect { String.format("%036d", it) }
+        CatalogFilter filter = and(eq("type", "table"), in("id", ids))
+
+        when: "I split a filter that is too long"
+        List<CatalogFilter> parts = filter.split(400)
+
+        then: "each part fits, keeps the other conditions, and no value is lost"
+        parts.size() > 1
+        parts.every { it.length() <= 400 }
+        parts.every { it.operands.contains(eq("type", "table")) }
+        parts.collectMany { part -> part.operands.find { it.field == "id" }.values } == ids
+
+        when: "I split an or"
+        parts = or(ids.collect { eq("id", it) }).split(400)
+
+        then: "its operands are grouped"
+        parts.size() > 1
+        parts.every { it.length() <= 400 }
+        parts.collectMany { it.operands }.size() == 50
+
+        expect: "a short filter is left as it is"
+        filter.split(5000) == [filter]
+    }
+}
@@ -0,0 +1,66 @@
+package org.odpi.openmetadata.connector.sas.client
+
+import spock.lang.Specification
+
+class CatalogJsonCodecTest extends Specification {
+    CatalogJsonCodec codec = CatalogJsonCodec.INSTANCE
+
+    def "ReadPage"() {
+        String json = '''{
+            "links": [{"rel": "self", "href": "/catalog/instances"}],
+            "name": "instances",
+            "start": 0,
+            "count": 3,
+            "items": [
+                {"id": "a", "version": 2, "attributes": {"rowCount": 12, "ratio": 0.5}},
+                {"id": "b", "attributes": {}}
+            ],
+            "limit": 2
+        }'''
+        List<Map> items = []
+
+        when: "I read a collection response"
+        CatalogJsonCodec.Page page = codec.readPage(new StringReader(json), { items.add(it) } as CatalogJsonCodec.ItemHandler)
+
+        then: "each item is passed on in order"
+        items*.id == ["a", "b"]
+        page.getItemCount() == 2
+
+        and: "the paging information is read"
+        page.getCount() == 3
+        page.getStart() == 0
+        page.getLimit() == 2
+
+        and: "whole numbers are decoded as longs"
+        items[0].version instanceof Long
+        items[0].attributes.rowCount == 12L
+        items[0].attributes.ratio == 0.5d
+    }
+
+    def "ReadPage without items or paging"() {
+        when: "I read a response with no items"
+        CatalogJsonCodec.Page page = codec.readPage(new StringReader('{"items": null}'), { throw new IllegalStateException() } as CatalogJsonCodec.ItemHandler)
+
+        then: "nothing is passed on and the paging information is missing"
+        page.getItemCount() == 0
+        page.getCount() == -1
+    }
+
+    def "ReadPage of an error response"() {
+        when: "I read a response that is not a collection"
+        codec.readPage(new StringReader('{"errorCode": 500, "message": "failed", "httpStatusCode": 500}'), { } as CatalogJsonCodec.ItemHandler)
+
+        then: "it is rejected rather than read as an empty page"
+        thrown(IOException)
+    }
+
+    def "ReadObject"() {
+        when: "I read a single object"
+        Map definition = codec.readObject(new StringReader('{"name": "table", "version": 1, "attributes": {"a": [1, "b"]}}'))
+
+        then: "it is decoded in full"
+        definition.name == "table"
+        definition.version == 1L
+        definition.attributes.a == [1L, "b"]
+    }
+}
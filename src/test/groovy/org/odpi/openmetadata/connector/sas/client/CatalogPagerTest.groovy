@@ -0,0 +1,138 @@
+package org.odpi.openmetadata.connector.sas.client
+
+import spock.lang.Specification
+
+import java.util.concurrent.CompletableFuture
+import java.util.function.Consumer
+import java.util.stream.Collectors
+
+class CatalogPagerTest extends Specification {
+    List<Integer> catalog = (0..<25).collect { it }
+    List<List<Long>> requests = []
+
+    // Serves pages of the catalog list, keeping only the items accepted by the filter
+    CatalogPager.PageFetcher<Integer> fetcher(Closure<Boolean> filter) {
+        return { long start, int limit, Consumer<Integer> sink ->
+            requests.add([start, limit as long])
+            List<Integer> page = catalog.subList((int) Math.min(start, catalog.size()), (int) Math.min(start + limit, catalog.size()))
+            page.findAll(filter).each { sink.accept(it) }
+            return new CatalogJsonCodec.Page(catalog.size(), start, limit, page.size())
+        } as CatalogPager.PageFetcher<Integer>
+    }
+
+    def "All results are read a page at a time"() {
+        when: "I iterate without a window"
+        List<Integer> results = new CatalogPager<>(fetcher({ true }), 0, 0, 10, false).collect()
+
+        then: "everything is returned, using as many pages as needed"
+        results == catalog
+        requests == [[0, 10], [10, 10], [20, 10]]
+    }
+
+    def "A listing asked for in full stops at the cap"() {
+        CatalogPager<Integer> pager = new CatalogPager<>(fetcher({ true }), 0, 0, 10, false).limitTo(12)
+
+        when: "I iterate without a window"
+        List<Integer> results = pager.collect()
+
+        then: "no more than the cap is read, and the listing is known to be incomplete"
+        results == catalog.subList(0, 12)
+        requests == [[0, 10], [10, 2]]
+        pager.isTruncated()
+
+        when: "the window asks for fewer results than the cap"
+        requests.clear()
+        pager = new CatalogPager<>(fetcher({ true }), 20, 5, 10, false).limitTo(12)
+        results = pager.collect()
+
+        then: "the window is used as it is"
+        results == catalog.subList(20, 25)
+        requests == [[20, 5]]
+        !pager.isTruncated()
+    }
+
+    def "The window is pushed down to Catalog"() {
+        when: "I ask for 5 results starting at 12"
+        List<Integer> results = new CatalogPager<>(fetcher({ true }), 12, 5, 10, false).collect()
+
+        then: "only those are requested"
+        results == [12, 13, 14, 15, 16]
+        requests == [[12, 5]]
+    }
+
+    def "Filtered results are skipped after filtering"() {
+        when: "I ask for the 3 even numbers after the first 2"
+        List<Integer> results = new CatalogPager<>(fetcher({ it % 2 == 0 }), 2, 3, 4, true).collect()
+
+        then: "pages are read from the beginning until enough results are found"
+        results == [4, 6, 8]
+        requests == [[0, 4], [4, 4], [8, 4]]
+    }
+
+    def "An observer is told how many items of each page passed the filter"() {
+        List<List<Long>> observed = []
+
+        when: "I read the even numbers with an observer"
+        new CatalogPager<>(fetcher({ it % 2 == 0 }), 0, 0, 10, true)
+                .observe({ long count, int read, int matched -> observed.add([count, read as long, matched as long]) } as ListingObserver)
+                .collect()
+
+        then: "every page is reported, with the total count"
+        observed == [[25, 10, 5], [25, 10, 5], [25, 5, 3]]
+    }
+
+    def "A later pager carries on from where an earlier one stopped"() {
+        CatalogPager<Integer> first = new CatalogPager<>(fetcher({ it % 2 == 0 }), 0, 3, 4, true)
+
+        when: "I read the first 3 even numbers"
+        List<Integer> results = first.collect()
+        CatalogPager.ResumePoint resumePoint = first.getResumePoint()
+
+        then: "the position is the page holding the next result, less those already read from it"
+        results == [0, 2, 4]
+        resumePoint.start == 4
+        resumePoint.skip == 1
+
+        when: "I read the next 3 from there"
+        requests.clear()
+        results = new CatalogPager<>(fetcher({ it % 2 == 0 }), 3, 3, 4, true).resumeFrom(resumePoint).collect()
+
+        then: "the earlier pages are not read again"
+        results == [6, 8, 10]
+        requests == [[4, 4], [8, 4]]
+    }
+
+    def "Pages are only requested as they are consumed"() {
+        CatalogPager<Integer> pager = new CatalogPager<>(fetcher({ true }), 0, 0, 10, false)
+
+        when: "I take the first 3 results from the stream"
+        List<Integer> results = pager.stream().limit(3).collect(Collectors.toList())
+
+        then: "only one page is requested"
+        results == [0, 1, 2]
+        pager.getPagesFetched() == 1
+    }
+
+    def "A non-blocking fetcher can request the first page ahead"() {
+        CompletableFuture<CatalogPager.FetchedPage<Integer>> response = new CompletableFuture<>()
+        CatalogPager.AsyncPageFetcher<Integer> asyncFetcher = { long start, int limit ->
+            requests.add([start, limit as long])
+            return start == 0 ? response : CompletableFuture.completedFuture(
+                    new CatalogJsonCodec.Page(catalog.size(), start, limit, 0).with { new CatalogPager.FetchedPage<Integer>(it, []) })
+        } as CatalogPager.AsyncPageFetcher<Integer>
+
+        when: "I prefetch before reading"
+        CatalogPager<Integer> pager = new CatalogPager<>(asyncFetcher, 0, 3, 10, false).prefetch()
+
+        then: "the first page has been requested, once"
+        requests == [[0, 3]]
+
+        when: "the response arrives and I read"
+        response.complete(new CatalogPager.FetchedPage<Integer>(new CatalogJsonCodec.Page(catalog.size(), 0, 3, 3), [0, 1, 2]))
+        List<Integer> results = pager.collect()
+
+        then: "the prefetched page is used"
+        results == [0, 1, 2]
+        requests == [[0, 3]]
+    }
+}
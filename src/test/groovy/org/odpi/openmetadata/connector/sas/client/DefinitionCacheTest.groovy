@@ -0,0 +1,68 @@
+package org.odpi.openmetadata.connector.sas.client
+
+import spock.lang.Specification
+
+import java.util.function.LongSupplier
+
+class DefinitionCacheTest extends Specification {
+    def "Entries go stale after their time-to-live"() {
+        long now = 0
+        DefinitionCache cache = new DefinitionCache(10, 1000, { now } as LongSupplier)
+
+        when: "I cache a definition"
+        cache.put("def1", [name: "table"], "\"etag1\"")
+
+        then: "it is fresh until the TTL passes"
+        cache.isFresh(cache.get("def1"))
+        cache.get("def1").getDefinition().get("name") == "table"
+        cache.get("def1").getEtag() == "\"etag1\""
+
+        when: "time moves past the TTL"
+        now = 1500
+
+        then: "the entry is kept for revalidation but is no longer fresh"
+        cache.get("def1") != null
+        !cache.isFresh(cache.get("def1"))
+
+        when: "Catalog confirms the definition has not changed"
+        cache.revalidated("def1")
+
+        then: "it is fresh again"
+        cache.isFresh(cache.get("def1"))
+    }
+
+    def "Least recently used entries are evicted when full"() {
+        DefinitionCache cache = new DefinitionCache(2, 1000)
+
+        when: "I add more definitions than the cache holds"
+        cache.put("def1", [:], null)
+        cache.put("def2", [:], null)
+        cache.get("def1")
+        cache.put("def3", [:], null)
+
+        then: "the least recently used one is evicted"
+        cache.size() == 2
+        cache.get("def1") != null
+        cache.get("def2") == null
+        cache.get("def3") != null
+    }
+
+    def "Invalidate"() {
+        DefinitionCache cache = new DefinitionCache(10, 1000)
+        cache.put("def1", [:], null)
+        cache.put("def2", [:], null)
+
+        when: "I invalidate a single definition"
+        cache.invalidate("def1")
+
+        then: "only that definition is removed"
+        cache.get("def1") == null
+        cache.get("def2") != null
+
+        when: "I invalidate everything"
+        cache.invalidateAll()
+
+        then: "the cache is empty"
+        cache.size() == 0
+    }
+}
@@ -0,0 +1,143 @@
+package org.odpi.openmetadata.connector.sas.client
+
+import com.google.gson.Gson
+import com.sun.net.httpserver.HttpExchange
+import com.sun.net.httpserver.HttpServer
+import spock.lang.Specification
+
+import javax.net.ssl.SSLContext
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.Callable
+import java.util.concurrent.CompletionException
+import java.util.concurrent.Executors
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.function.LongSupplier
+
+class SASCatalogAsyncRestClientTest extends Specification {
+    HttpServer server
+    ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor()
+    AtomicInteger tokens = new AtomicInteger()
+    TokenManager tokenManager = new TokenManager({ [access_token: "token" + tokens.incrementAndGet(), expires_in: 3600.0d] } as Callable<Map>,
+            { System.currentTimeMillis() } as LongSupplier, scheduler)
+    SASCatalogAsyncRestClient client
+
+    // Requests seen by the server, as "<token> <path>?<query>"
+    List<String> requests = Collections.synchronizedList([])
+    // Status to answer instance requests with, by the token they carry
+    Map<String, Integer> statusByToken = [:]
+    // Relationship pages being answered at once, and the most seen
+    AtomicInteger relationshipPages = new AtomicInteger()
+    AtomicInteger peakRelationshipPages = new AtomicInteger()
+
+    def setup() {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0)
+        server.createContext("/catalog/instances") { HttpExchange exchange -> handleInstances(exchange) }
+        server.createContext("/catalog/definitions") { HttpExchange exchange ->
+            respond(exchange, 200, [id: "def1", name: "table", definitionType: "entity"])
+        }
+        server.setExecutor(Executors.newCachedThreadPool())
+        server.start()
+        client = new SASCatalogAsyncRestClient("http://127.0.0.1:" + server.getAddress().getPort(), SSLContext.getDefault(),
+                tokenManager, new DefinitionCache(100, 60000), 4, 10, 100, 1000, 5000, 5000)
+    }
+
+    def cleanup() {
+        client.close()
+        server.stop(0)
+        scheduler.shutdownNow()
+    }
+
+    private void handleInstances(HttpExchange exchange) {
+        String token = exchange.getRequestHeaders().getFirst("Authorization").substring("Bearer ".length())
+        requests.add(token + " " + exchange.getRequestURI().getPath() + "?" + exchange.getRequestURI().getQuery())
+        int status = statusByToken.getOrDefault(token, 200)
+        if (status != 200) {
+            respond(exchange, status, [errorCode: status, message: "failed"])
+            return
+        }
+        String filter = exchange.getRequestURI().getQuery().find(/filter=([^&]*)/) { match, value -> value }
+        if (filter.contains("endpoint1Id")) {
+            handleRelationships(exchange)
+            return
+        }
+        // Answer in a different order to the one asked for
+        List<String> guids = filter.findAll(/"([^"]+)"/) { match, guid -> guid }.reverse()
+        respond(exchange, 200, [count: guids.size(), start: 0, limit: guids.size(),
+                                items: guids.collect { [id: it, name: it, type: "table", definitionId: "def1", attributes: [:]] }])
+    }
+
+    private void handleRelationships(HttpExchange exchange) {
+        int count = 20
+        int start = exchange.getRequestURI().getQuery().find(/start=(\d+)/) { match, value -> value } as int
+        int limit = exchange.getRequestURI().getQuery().find(/limit=(\d+)/) { match, value -> value } as int
+        peakRelationshipPages.accumulateAndGet(relationshipPages.incrementAndGet(), Math.&max)
+        // Answer later pages sooner, so that they arrive out of order
+        Thread.sleep((count - start) * 5)
+        relationshipPages.decrementAndGet()
+        List<Integer> ids = (start..<Math.min(start + limit, count)).toList()
+        respond(exchange, 200, [count: count, start: start, limit: limit,
+                                items: ids.collect { [id: "r" + it, type: "dataSetDataFields", definitionId: "def1", attributes: [:],
+                                                      endpoint1Id: "e", endpoint2Id: "f" + it] }])
+    }
+
+    private static void respond(HttpExchange exchange, int status, Map body) {
+        byte[] bytes = new Gson().toJson(body).getBytes(StandardCharsets.UTF_8)
+        exchange.sendResponseHeaders(status, bytes.length)
+        exchange.getResponseBody().withStream { it.write(bytes) }
+    }
+
+    def "GetInstancesByGuids"() {
+        when: "I look up several instances"
+        Map<String, ?> instances = client.getInstancesByGuids(["a", "b", "c"], "entity").get(5, TimeUnit.SECONDS)
+
+        then: "they are returned in the order asked for, with their definitions"
+        instances.keySet() as List == ["a", "b", "c"]
+        instances["b"].getDefinitionProperty("name") == "table"
+        requests.size() == 1
+        requests[0].startsWith("token1 /catalog/instances?")
+    }
+
+    def "Rejected token is replaced and the request retried"() {
+        statusByToken["token1"] = 401
+
+        when: "the first token is rejected"
+        Map<String, ?> instances = client.getInstancesByGuids(["a"], "entity").get(5, TimeUnit.SECONDS)
+
+        then: "a new token is requested and the request is sent again with it"
+        instances.keySet() as List == ["a"]
+        requests*.split(" ")*.getAt(0) == ["token1", "token2"]
+        tokens.get() == 2
+    }
+
+    def "Error responses fail the request"() {
+        statusByToken["token1"] = 500
+
+        when: "Catalog answers with an error"
+        client.getInstancesByGuids(["a"], "entity").join()
+
+        then: "the error body is not read as a page of results"
+        CompletionException e = thrown()
+        e.getCause().getMessage().contains("500")
+    }
+
+    def "GetRelationshipsByEntityGuid - Pages in flight"() {
+        SASCatalogAsyncRestClient wideClient = new SASCatalogAsyncRestClient("http://127.0.0.1:" + server.getAddress().getPort(),
+                SSLContext.getDefault(), tokenManager, new DefinitionCache(100, 60000), 20, 2, 100, 1000, 5000, 5000)
+
+        when: "an entity has many pages of relationships"
+        List<?> relationships = wideClient.getRelationshipsByEntityGuid("e").get(10, TimeUnit.SECONDS)
+
+        then: "every page is read, but only a few at a time"
+        requests.size() == 10
+        peakRelationshipPages.get() > 1
+        peakRelationshipPages.get() <= SASCatalogAsyncRestClient.MAX_PAGES_IN_FLIGHT
+
+        and: "the pages are combined in start order, whatever order they arrived in"
+        relationships*.getGuid() == (0..<20).collect { "r" + it }
+
+        cleanup:
+        wideClient.close()
+    }
+}
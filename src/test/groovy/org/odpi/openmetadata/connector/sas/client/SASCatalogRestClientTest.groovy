@@ -0,0 +1,194 @@
+package org.odpi.openmetadata.connector.sas.client
+
+import com.google.gson.Gson
+import com.sun.net.httpserver.HttpExchange
+import com.sun.net.httpserver.HttpServer
+import org.odpi.openmetadata.connector.sas.repository.connector.mapping.SASCatalogObject
+import spock.lang.Specification
+
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.Executors
+
+class SASCatalogRestClientTest extends Specification {
+    def "PartitionForIdFilter"() {
+        List<String> guids = (1..100).collect { String.format("%036d", it) }
+
+        when: "I partition more GUIDs than fit in a single filter"
+        List<List<String>> chunks = SASCatalogRestClient.partitionForIdFilter(guids, 500)
+
+        then: "every filter stays within the limit and no GUID is lost or reordered"
+        chunks.size() > 1
+        chunks.every { SASCatalogRestClient.buildIdFilter(it).length() <= 500 }
+        chunks.flatten() == guids
+
+        when: "the GUIDs contain duplicates and nulls"
+        chunks = SASCatalogRestClient.partitionForIdFilter(["a", null, "b", "a"], 500)
+
+        then: "they are dropped"
+        chunks == [["a", "b"]]
+
+        when: "there are no GUIDs"
+        chunks = SASCatalogRestClient.partitionForIdFilter([], 500)
+
+        then: "there are no requests to make"
+        chunks.isEmpty()
+    }
+
+    def "BuildIdFilter"() {
+        expect:
+        SASCatalogRestClient.buildIdFilter(["a", "b"]) == 'in(id,"a","b")'
+    }
+
+    def "BuildRelationshipFilter"() {
+        expect:
+        SASCatalogRestClient.buildRelationshipFilter("g", types) == filter
+        SASCatalogRestClient.needsRelationshipTypeCheck(types) == checkTypes
+
+        where:
+        types                                                   | filter                                                                                              | checkTypes
+        null                                                    | 'or(eq(endpoint1Id,"g"),eq(endpoint2Id,"g"))'                                                       | false
+        ["dataSetDataFields"]                                   | 'and(eq(type,"dataSetDataFields"),or(eq(endpoint1Id,"g"),eq(endpoint2Id,"g")))'                     | false
+        ["processAssets", "relatedObjects.Dependent"]           | 'and(in(type,"processAssets","relatedObjects"),or(eq(endpoint1Id,"g"),eq(endpoint2Id,"g")))'        | true
+        ["relatedObjects.Dependent", "relatedObjects.Contains"] | 'and(eq(type,"relatedObjects"),or(eq(endpoint1Id,"g"),eq(endpoint2Id,"g")))'                        | true
+    }
+
+    def "SearchPager"() {
+        List<String> index = (1..10).collect { "g" + it }
+        List<List<Long>> requests = []
+        List<List<String>> lookups = []
+        CatalogPager.PageFetcher<String> hits = { long start, int limit, java.util.function.Consumer<String> sink ->
+            requests.add([start, (long) limit])
+            List<String> page = index.subList((int) Math.min(start, index.size()), (int) Math.min(start + limit, index.size()))
+            page.each { sink.accept(it) }
+            return new CatalogJsonCodec.Page(index.size(), start, limit, page.size())
+        } as CatalogPager.PageFetcher<String>
+        SASCatalogRestClient.InstanceLookup lookup = { List<String> guids ->
+            lookups.add(guids)
+            // g4 has been deleted since it was indexed
+            guids.findAll { it != "g4" }.collectEntries { [(it): new SASCatalogObject(guid: it)] }
+        } as SASCatalogRestClient.InstanceLookup
+
+        when: "I search for a window of hits"
+        List<String> found = SASCatalogRestClient.searchPager(hits, lookup, 2, 4, 3).collect { it.guid }
+
+        then: "the window is sent with the search, and each page of hits is looked up together"
+        requests == [[2L, 3L], [5L, 2L]]
+        lookups == [["g3", "g4", "g5"], ["g6", "g7"]]
+
+        and: "the instances are returned in hit order, without those no longer in the catalog"
+        found == ["g3", "g5", "g6", "g7"]
+    }
+
+    def "BuildSearchQuery"() {
+        expect:
+        SASCatalogRestClient.buildSearchQuery('sales "2020" \\ q1') == '"sales \\"2020\\" \\\\ q1"'
+    }
+
+    def "SearchEntities - Requests to the search endpoint"() {
+        // Searches seen by the server, as the token and the decoded query parameters
+        List<List> searches = Collections.synchronizedList([])
+        int tokens = 0
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0)
+        server.createContext("/SASLogon/oauth/token") { HttpExchange exchange ->
+            respond(exchange, 200, [access_token: "token" + (++tokens), expires_in: 3600])
+        }
+        server.createContext("/catalog/search") { HttpExchange exchange ->
+            String token = exchange.getRequestHeaders().getFirst("Authorization")
+            searches.add([token, exchange.getRequestURI().getRawQuery().split("&").collectEntries {
+                it.split("=", 2).collect { URLDecoder.decode(it, "UTF-8") }
+            }])
+            if (token == "Bearer token1") {
+                // The first token has expired
+                respond(exchange, 401, [errorCode: 401, message: "unauthorized"])
+                return
+            }
+            respond(exchange, 200, [count: 5, start: 0, limit: 2,
+                                    items: [[id: "g1", name: "sales q1", type: "table"], [id: "g2", name: "sales q2", type: "table"]]])
+        }
+        server.createContext("/catalog/instances") { HttpExchange exchange ->
+            List<String> guids = exchange.getRequestURI().getQuery().findAll(/"([^"]+)"/) { match, guid -> guid }
+            respond(exchange, 200, [count: guids.size(), start: 0, limit: guids.size(),
+                                    items: guids.collect { [id: it, name: it, type: "table", definitionId: "def1", attributes: [:]] }])
+        }
+        server.createContext("/catalog/definitions") { HttpExchange exchange ->
+            respond(exchange, 200, [id: "def1", name: "table", definitionType: "entity"])
+        }
+        server.setExecutor(Executors.newCachedThreadPool())
+        server.start()
+        String uri = "http://127.0.0.1:" + server.getAddress().getPort()
+        SASCatalogRestClient client = new SASCatalogRestClient(uri, uri, uri, "user", "password", [:])
+
+        when: "I search for a phrase with quotes in it"
+        List<String> found = client.searchEntities('sales "q1"', 0, 2).collect { it.guid }
+
+        then: "the phrase is quoted, and the window sent with the search"
+        searches.size() == 2
+        searches.every { it[1] == [q: '"sales \\"q1\\""', start: "0", limit: "2"] }
+
+        and: "a rejected token is replaced, and the search sent again with the new one"
+        searches*.getAt(0) == ["Bearer token1", "Bearer token2"]
+
+        and: "the instances of the hits are returned, in hit order"
+        found == ["g1", "g2"]
+
+        cleanup:
+        client?.close()
+        server.stop(0)
+    }
+
+    def "IterateEntitiesWithParams - Error responses fail the listing"() {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0)
+        server.createContext("/SASLogon/oauth/token") { HttpExchange exchange ->
+            respond(exchange, 200, [access_token: "token", expires_in: 3600])
+        }
+        server.createContext("/catalog/instances") { HttpExchange exchange ->
+            respond(exchange, 400, [errorCode: 400, message: "filter is too long", httpStatusCode: 400])
+        }
+        server.setExecutor(Executors.newCachedThreadPool())
+        server.start()
+        String uri = "http://127.0.0.1:" + server.getAddress().getPort()
+        SASCatalogRestClient client = new SASCatalogRestClient(uri, uri, uri, "user", "password", [:])
+
+        when: "Catalog rejects a listing"
+        client.iterateEntitiesWithParams([filter: 'eq(name,"x")'], [:]).hasNext()
+
+        then: "the error body is not read as an empty listing"
+        RuntimeException e = thrown()
+        e.getMessage().contains("400")
+
+        cleanup:
+        client?.close()
+        server.stop(0)
+    }
+
+    def "DefinitionExistsByName - Error responses fail the lookup"() {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0)
+        server.createContext("/SASLogon/oauth/token") { HttpExchange exchange ->
+            respond(exchange, 200, [access_token: "token", expires_in: 3600])
+        }
+        server.createContext("/catalog/definitions") { HttpExchange exchange ->
+            respond(exchange, 503, [errorCode: 503, message: "unavailable", httpStatusCode: 503])
+        }
+        server.setExecutor(Executors.newCachedThreadPool())
+        server.start()
+        String uri = "http://127.0.0.1:" + server.getAddress().getPort()
+        SASCatalogRestClient client = new SASCatalogRestClient(uri, uri, uri, "user", "password", [:])
+
+        when: "Catalog cannot answer whether a definition exists"
+        client.definitionExistsByName("casTable", "entity")
+
+        then: "the error is not taken to mean that it does not"
+        RuntimeException e = thrown()
+        e.getMessage().contains("503")
+
+        cleanup:
+        client?.close()
+        server.stop(0)
+    }
+
+    private static void respond(HttpExchange exchange, int status, Map body) {
+        byte[] bytes = new Gson().toJson(body).getBytes(StandardCharsets.UTF_8)
+        exchange.sendResponseHeaders(status, bytes.length)
+        exchange.getResponseBody().withStream { it.write(bytes) }
+    }
+}
@@ -0,0 +1,117 @@
+package org.odpi.openmetadata.connector.sas.client
+
+import spock.lang.Specification
+
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.ScheduledFuture
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.function.LongSupplier
+
+class TokenManagerTest extends Specification {
+    ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor()
+
+    def cleanup() {
+        scheduler.shutdownNow()
+    }
+
+    def "Tokens are reused until they expire"() {
+        long now = 0
+        AtomicInteger requests = new AtomicInteger()
+        Callable<Map> tokenRequest = { [access_token: "token" + requests.incrementAndGet(), expires_in: 3600.0d] }
+        TokenManager manager = new TokenManager(tokenRequest, { now } as LongSupplier, scheduler)
+
+        when: "I ask for a token twice"
+        String first = manager.getToken()
+        String second = manager.getToken()
+
+        then: "SASLogon is only called once"
+        first == "token1"
+        second == "token1"
+        requests.get() == 1
+
+        when: "the token expires"
+        now = 3600 * 1000
+
+        then: "a new token is requested"
+        manager.getToken() == "token2"
+        requests.get() == 2
+    }
+
+    def "Concurrent refreshes of the same rejected token share one request"() {
+        AtomicInteger requests = new AtomicInteger()
+        Callable<Map> tokenRequest = {
+            Thread.sleep(50)
+            [access_token: "token" + requests.incrementAndGet(), expires_in: 3600.0d]
+        }
+        TokenManager manager = new TokenManager(tokenRequest, { System.currentTimeMillis() } as LongSupplier, scheduler)
+        String rejected = manager.getToken()
+
+        when: "several requests are rejected with the same token at once"
+        List<String> refreshed = Collections.synchronizedList([])
+        List<Thread> threads = (1..5).collect { Thread.start { refreshed.add(manager.refresh(rejected)) } }
+        threads*.join()
+
+        then: "only one new token is requested, and everyone gets it"
+        requests.get() == 2
+        refreshed.size() == 5
+        refreshed.every { it == "token2" }
+    }
+
+    def "Missing access token"() {
+        TokenManager manager = new TokenManager({ [error: "unauthorized"] } as Callable<Map>, { 0L } as LongSupplier, scheduler)
+
+        when: "SASLogon does not return a token"
+        manager.getToken()
+
+        then: "an error is raised"
+        thrown(RuntimeException)
+    }
+
+    def "Refreshes are scheduled ahead of expiry"() {
+        List<Long> delays = []
+        ScheduledExecutorService refreshScheduler = Mock()
+        refreshScheduler.schedule(_ as Runnable, _, TimeUnit.MILLISECONDS) >> { Runnable task, long delay, TimeUnit unit ->
+            delays.add(delay)
+            return Mock(ScheduledFuture)
+        }
+        TokenManager manager = new TokenManager({ [access_token: "token", expires_in: expiresIn] } as Callable<Map>,
+                { 0L } as LongSupplier, refreshScheduler)
+
+        when: "a token is obtained"
+        manager.getToken()
+
+        then: "its refresh is scheduled before it expires, but never straight away"
+        delays == [delay]
+
+        where:
+        expiresIn | delay
+        3600.0d   | 3240000L
+        120.0d    | 90000L
+        30.0d     | 15000L
+        1.0d      | TokenManager.MIN_REFRESH_DELAY_MILLIS
+        0.0d      | TokenManager.MIN_REFRESH_DELAY_MILLIS
+    }
+
+    def "Tokens without an expiry are never refreshed in the background"() {
+        long now = 0
+        ScheduledExecutorService refreshScheduler = Mock()
+        AtomicInteger requests = new AtomicInteger()
+        TokenManager manager = new TokenManager({ [access_token: "token" + requests.incrementAndGet()] } as Callable<Map>,
+                { now } as LongSupplier, refreshScheduler)
+
+        when: "SASLogon returns a token with no expires_in"
+        String first = manager.getToken()
+        now = Long.MAX_VALUE - 1
+
+        then: "no refresh is scheduled"
+        0 * refreshScheduler.schedule(*_)
+
+        and: "the token is used for as long as it is accepted"
+        first == "token1"
+        manager.getToken() == "token1"
+        requests.get() == 1
+    }
+}
@@ -0,0 +1,93 @@
+package org.odpi.openmetadata.connector.sas.repository.connector
+
+import org.odpi.openmetadata.connector.sas.client.CatalogFilter
+import org.odpi.openmetadata.connector.sas.client.CatalogPager
+import spock.lang.Specification
+
+class CatalogQueryPlannerTest extends Specification {
+    CatalogQueryPlanner planner = new CatalogQueryPlanner()
+    CatalogFilter typeFilter = CatalogFilter.eq("type", "dataSet")
+    List<CatalogFilter> namePredicate = [CatalogFilter.contains("name", "sales")]
+
+    def "Predicates are placed in Catalog or after the fact"() {
+        when: "all predicates must match"
+        List<CatalogQuery> queries = planner.planQueries("DataSet", "dataSet", typeFilter, namePredicate, [creator: "bob"], [:], false)
+
+        then: "a single query filters on instance fields in Catalog, and on attributes afterwards"
+        queries*.queryParams.filter == ['and(contains(name,"sales"),eq(type,"dataSet"))']
+        queries*.attributeFilter == [[creator: "bob"]]
+
+        when: "any predicate may match"
+        queries = planner.planQueries("DataSet", "dataSet", typeFilter, namePredicate, [creator: "bob"], [referencedType: "x"], true)
+
+        then: "the attribute predicate is run as a query of its own, so its matches are not filtered out in Catalog"
+        queries*.queryParams.filter == ['and(contains(name,"sales"),eq(type,"dataSet"))', 'eq(type,"dataSet")']
+        queries*.attributeFilter == [[referencedType: "x"], [referencedType: "x", creator: "bob"]]
+    }
+
+    def "Post-filtered queries read enough items to fill the page"() {
+        CatalogQuery query = planner.planQueries("DataSet", "dataSet", typeFilter, [], [creator: "bob"], [:], false)[0]
+
+        when: "nothing is known about the filter"
+        planner.planPaging([query], 0, 100, false, [] as Set)
+
+        then: "half the items are assumed to pass"
+        query.pageSize == 250
+
+        when: "1 in 20 items have been seen to pass"
+        query.observer.pageRead(-1, 2000, 100)
+        planner.planPaging([query], 0, 100, false, [] as Set)
+
+        then: "enough items are read to fill the page at once"
+        query.pageSize == Math.ceil(100 * 1.25 / (101 / 2002)) as int
+
+        when: "Catalog has reported how many items there are"
+        query.observer.pageRead(600, 0, 0)
+        planner.planPaging([query], 0, 100, false, [] as Set)
+
+        then: "no more than those are asked for"
+        query.pageSize == 600
+    }
+
+    def "Queries that are not filtered afterwards ask for what is wanted"() {
+        CatalogQuery query = planner.planQueries("DataSet", "dataSet", typeFilter, namePredicate, [:], [:], false)[0]
+
+        when:
+        planner.planPaging([query], 0, 30, false, [] as Set)
+
+        then:
+        query.pageSize == 30
+        planner.getSelectivity(query) == 1
+    }
+
+    def "Queries read as cursors carry on from where the previous page stopped"() {
+        List<CatalogQuery> queries = planner.planQueries("DataSet", "dataSet", typeFilter, [], [creator: "bob"], [:], false)
+        CatalogPager.ResumePoint stopped = new CatalogPager.ResumePoint(400, 3)
+
+        Set<String> returned = [] as Set
+
+        when: "the first page has been read"
+        boolean resumed = planner.planPaging(queries, 0, 10, true, returned)
+        planner.recordResumePoints(queries, 10, [stopped], ["g1"] as Set)
+
+        then:
+        !resumed
+        queries[0].resumePoint == null
+        returned.isEmpty()
+
+        when: "the next page is planned"
+        resumed = planner.planPaging(queries, 10, 10, true, returned)
+
+        then: "the query resumes where it stopped, knowing what was returned before"
+        resumed
+        queries[0].resumePoint.is(stopped)
+        returned == ["g1"] as Set
+
+        when: "another page is planned"
+        resumed = planner.planPaging(queries, 20, 10, true, [] as Set)
+
+        then: "the query is read from the start"
+        !resumed
+        queries[0].resumePoint == null
+    }
+}
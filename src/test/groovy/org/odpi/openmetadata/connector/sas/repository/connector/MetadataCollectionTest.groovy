@@ -0,0 +1,43 @@
+package org.odpi.openmetadata.connector.sas.repository.connector
+
+import org.odpi.openmetadata.connector.sas.client.SASCatalogClient
+import org.odpi.openmetadata.repositoryservices.connectors.stores.metadatacollectionstore.properties.MatchCriteria
+import org.odpi.openmetadata.repositoryservices.connectors.stores.metadatacollectionstore.properties.typedefs.EntityDef
+import org.odpi.openmetadata.repositoryservices.connectors.stores.metadatacollectionstore.properties.typedefs.TypeDefCategory
+import org.odpi.openmetadata.repositoryservices.connectors.stores.metadatacollectionstore.repositoryconnector.OMRSRepositoryHelper
+import org.odpi.openmetadata.repositoryservices.connectors.stores.metadatacollectionstore.repositoryconnector.OMRSRepositoryValidator
+import org.odpi.openmetadata.repositoryservices.ffdc.exception.TypeDefNotSupportedException
+import spock.lang.Specification
+
+class MetadataCollectionTest extends Specification {
+    SASCatalogClient mockClient = Mock()
+    RepositoryConnector repositoryConnector = new RepositoryConnector(mockClient)
+    MetadataCollection metadataCollection
+
+    def setup() {
+        repositoryConnector.setRepositoryHelper(Mock(OMRSRepositoryHelper))
+        repositoryConnector.setRepositoryValidator(Mock(OMRSRepositoryValidator))
+        repositoryConnector.setMetadataCollectionId("test-collection")
+        repositoryConnector.start()
+        metadataCollection = repositoryConnector.getMetadataCollection() as MetadataCollection
+    }
+
+    def "FindEntitiesByProperty - Paged search on an unmapped type"() {
+        EntityDef unmappedTypeDef = new EntityDef(TypeDefCategory.ENTITY_DEF, "6f0e4a0b-3b1e-4c1c-9b55-4e0a6c0f7a11", "UnmappedType", 1L, "1")
+
+        when: "a type that Catalog does not have is added"
+        metadataCollection.addTypeDef("user", unmappedTypeDef)
+
+        then: "it is not supported"
+        thrown(TypeDefNotSupportedException)
+
+        when: "a page of entities of the type is searched for"
+        def results = metadataCollection.findEntitiesByProperty("user", unmappedTypeDef.getGUID(), null, MatchCriteria.ALL,
+                0, null, null, null, null, null, 10)
+
+        then: "there are none, and no Catalog listing is made"
+        results == null
+        0 * mockClient.getInstancesWithParams(*_)
+        0 * mockClient.iterateEntitiesWithParams(*_)
+    }
+}
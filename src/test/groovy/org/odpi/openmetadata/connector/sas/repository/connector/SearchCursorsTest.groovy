@@ -0,0 +1,83 @@
+package org.odpi.openmetadata.connector.sas.repository.connector
+
+import org.odpi.openmetadata.connector.sas.client.CatalogPager
+import org.odpi.openmetadata.repositoryservices.connectors.stores.metadatacollectionstore.properties.instances.EntityDetail
+import spock.lang.Specification
+
+import java.util.function.LongSupplier
+
+class SearchCursorsTest extends Specification {
+    long now = 0
+    SearchCursors cursors = new SearchCursors(3, 10, 1000, { now } as LongSupplier)
+
+    List<EntityDetail> results(int count) {
+        (1..count).collect { new EntityDetail() }
+    }
+
+    def "A search carries on from where its last page stopped"() {
+        CatalogPager.ResumePoint stopped = new CatalogPager.ResumePoint(40, 2)
+
+        Set<String> returned = [] as Set
+
+        when: "a page of a search has been read up to position 10"
+        cursors.putResumePoints("search", 10, [stopped], ["g1", "g2"] as Set)
+
+        then: "the next page resumes from there, and other positions from the start"
+        cursors.getResumePoints("search", 10, returned) == [stopped]
+        cursors.getResumePoints("search", 20, [] as Set) == null
+        cursors.getResumePoints("other", 10, [] as Set) == null
+
+        and: "the GUIDs already returned are given back with it"
+        returned == ["g1", "g2"] as Set
+
+        when: "more GUIDs have been returned than can be held"
+        cursors.putResumePoints("long", 20, [stopped], (1..11).collect { "g" + it } as Set)
+
+        then: "the search is not kept"
+        cursors.getResumePoints("long", 20, [] as Set) == null
+    }
+
+    def "Cursors expire once idle"() {
+        List<EntityDetail> held = results(4)
+        cursors.putResults("sorted", held)
+
+        when: "the cursor is used within its idle time"
+        now = 900
+
+        then: "its results are returned, and its idle time starts again"
+        cursors.getResults("sorted") == held
+
+        when: "it is not used for its idle time"
+        now = 1900
+
+        then: "it is dropped"
+        cursors.getResults("sorted") == null
+        cursors.size() == 0
+        cursors.getHeldResults() == 0
+    }
+
+    def "Cursors are bounded in number and in results held"() {
+        when: "cursors holding more results than allowed are kept"
+        cursors.putResults("a", results(4))
+        cursors.putResults("b", results(4))
+        cursors.getResults("a")
+        cursors.putResults("c", results(4))
+
+        then: "the least recently used are dropped"
+        cursors.getResults("b") == null
+        cursors.getResults("a") != null
+        cursors.getHeldResults() == 8
+
+        when: "more cursors are kept than allowed"
+        ["p1", "p2", "p3"].each { cursors.putResumePoints(it, 10, [], [] as Set) }
+
+        then: "no more than that are kept"
+        cursors.size() == 3
+
+        when: "a search has more results than can be held at all"
+        cursors.putResults("d", results(11))
+
+        then: "they are not held"
+        cursors.getResults("d") == null
+    }
+}
@@ -2,6 +2,8 @@ package org.odpi.openmetadata.connector.sas.repository.connector.mapping
 
 import groovy.transform.VisibilityOptions
 import org.odpi.openmetadata.connector.sas.client.SASCatalogClient
+import org.odpi.openmetadata.connector.sas.event.model.catalog.CatalogType
+import org.odpi.openmetadata.connector.sas.event.model.catalog.instance.Instance
 import org.odpi.openmetadata.connector.sas.repository.connector.RepositoryConnector
 import org.odpi.openmetadata.connector.sas.repository.connector.stores.TypeDefStore
 import org.odpi.openmetadata.frameworks.connectors.properties.ConnectionProperties
@@ -10,10 +12,12 @@ import org.odpi.openmetadata.repositoryservices.auditlog.OMRSAuditLog
 import org.odpi.openmetadata.repositoryservices.auditlog.OMRSAuditLogDestination
 import org.odpi.openmetadata.repositoryservices.auditlog.OMRSAuditingComponent
 import org.odpi.openmetadata.repositoryservices.connectors.stores.metadatacollectionstore.properties.instances.EntityDetail
+import org.odpi.openmetadata.repositoryservices.connectors.stores.metadatacollectionstore.properties.instances.EntityProxy
 import org.odpi.openmetadata.repositoryservices.connectors.stores.metadatacollectionstore.properties.instances.InstancePropertyValue
 import org.odpi.openmetadata.repositoryservices.connectors.stores.metadatacollectionstore.properties.typedefs.EntityDef
 import org.odpi.openmetadata.repositoryservices.connectors.stores.metadatacollectionstore.properties.typedefs.PrimitiveDef
 import org.odpi.openmetadata.repositoryservices.connectors.stores.metadatacollectionstore.properties.typedefs.PrimitiveDefCategory
+import org.odpi.openmetadata.repositoryservices.connectors.stores.metadatacollectionstore.properties.typedefs.RelationshipDef
 import org.odpi.openmetadata.repositoryservices.connectors.stores.metadatacollectionstore.properties.typedefs.TypeDefAttribute
 import org.odpi.openmetadata.repositoryservices.connectors.stores.metadatacollectionstore.properties.typedefs.TypeDefCategory
 import org.odpi.openmetadata.repositoryservices.localrepository.repositorycontentmanager.OMRSRepositoryContentHelper
@@ -23,6 +27,7 @@ import spock.lang.Specification
 
 import java.time.Instant
 import java.time.format.DateTimeFormatter
+import java.time.format.DateTimeParseException
 import java.time.temporal.TemporalAccessor
 
 class EntityMappingSASCatalog2OMRSTest extends Specification {
@@ -593,4 +598,139 @@ class EntityMappingSASCatalog2OMRSTest extends Specification {
         getAdditionalProperty(detail, "sasModelSource") == "Analytic Store"
         detail.instanceURL.contains("/catalog/instances/" + instance.guid)
     }
+
+    def "GetEntityDetails - Batch of mixed types"() {
+        // Setup test instances, more than are mapped on the calling thread
+        List<SASCatalogObject> instances = (0..<100).collect { i ->
+            SASCatalogObject instance = new SASCatalogObject()
+            instance.addInstanceProperty("name", "Object " + i)
+            instance.addInstanceProperty("createdBy", "steven")
+            instance.addInstanceProperty("modifiedBy", "ben")
+            instance.addInstanceProperty("creationTimeStamp", "2020-07-14T18:40:02.788574Z")
+            instance.addInstanceProperty("modifiedTimeStamp", "2020-07-15T18:40:02.788574Z")
+            instance.addInstanceProperty("version", 1)
+            instance.addDefinitionProperty("name", i % 10 == 9 ? "unmappedType" : "casTable")
+            Map<String, String> attributes = new HashMap<>()
+            attributes.put("isLoaded", "true")
+            instance.attributes = attributes
+            instance.guid = "00000000-0000-0000-0000-" + String.format("%012d", i)
+            return instance
+        }
+
+        when: "I get entity details for the batch"
+        List<EntityDetail> details = new EntityDetailBatchMapper(repositoryConnector, typeDefStore).getEntityDetails(instances, null, "steven")
+
+        then: "Each is mapped in the order of the batch, and unmapped types are null"
+        details.size() == instances.size()
+        (0..<100).every { i ->
+            i % 10 == 9 ? details[i] == null
+                        : details[i].getType().getTypeDefName() == relTableTypeDef.getName() &&
+                          getDetailPropAsString(details[i], "qualifiedName") == "Object " + i &&
+                          details[i].instanceURL.contains("/catalog/instances/" + instances[i].guid)
+        }
+
+        and: "The instances are left as they were"
+        instances.every { it.attributes == [isLoaded: "true"] }
+    }
+
+    def "GetEntityDetails - Batch with an entity that cannot be mapped"() {
+        List<SASCatalogObject> instances = (0..<100).collect { i ->
+            SASCatalogObject instance = new SASCatalogObject()
+            instance.addInstanceProperty("name", "Object " + i)
+            instance.addInstanceProperty("creationTimeStamp", i == 70 ? "not a timestamp" : "2020-07-14T18:40:02.788574Z")
+            instance.addInstanceProperty("modifiedTimeStamp", "2020-07-15T18:40:02.788574Z")
+            instance.addInstanceProperty("version", 1)
+            instance.addDefinitionProperty("name", "casTable")
+            instance.attributes = [:]
+            instance.guid = "00000000-0000-0000-0000-" + String.format("%012d", i)
+            return instance
+        }
+
+        when: "I get entity details for the batch"
+        new EntityDetailBatchMapper(repositoryConnector, typeDefStore).getEntityDetails(instances, null, "steven")
+
+        then: "The failure is raised rather than the entity being left out"
+        thrown(DateTimeParseException)
+    }
+
+    def "GetEntityProxyForObject - Event-sourced header"() {
+        // Setup an instance as reported by an event, whose timestamps are Dates
+        Date created = isoToDate("2020-07-14T18:40:02.788Z")
+        Date modified = isoToDate("2020-07-15T18:40:02.788Z")
+        Instance event = new Instance()
+        event.id = "1bbc58c1-d350-4a0d-ab88-492705fe448b"
+        event.instanceType = CatalogType.ENTITY
+        event.name = "Event CAS Table"
+        event.createdBy = "steven"
+        event.modifiedBy = "ben"
+        event.creationTimeStamp = created
+        event.modifiedTimeStamp = modified
+        event.version = 2
+        event.attributes = [:]
+        SASCatalogObject instance = new SASCatalogObject()
+        instance.addInstance(event)
+        instance.addDefinitionProperty("name", "casTable")
+        instance.guid = event.id
+
+        when: "I get the proxy for the cached header of the instance"
+        EntityProxy proxy = RelationshipMapping.getEntityProxyForObject(repositoryConnector, typeDefStore, instance.getProxyHeader(), null, "steven")
+
+        then: "The timestamps are taken as they are"
+        proxy.getType().getTypeDefName() == relTableTypeDef.getName()
+        proxy.createTime == created
+        proxy.updateTime == modified
+        proxy.version == 2
+        proxy.uniqueProperties.getPropertyValue("qualifiedName").valueAsString() == "Event CAS Table"
+    }
+
+    def createRelationship(String guid, String type, String endpoint1Id, String endpoint2Id) {
+        SASCatalogObject relationship = new SASCatalogObject()
+        relationship.guid = guid
+        relationship.addInstanceProperty("type", type)
+        relationship.addInstanceProperty("endpoint1Id", endpoint1Id)
+        relationship.addInstanceProperty("endpoint2Id", endpoint2Id)
+        relationship.addDefinitionProperty("name", type)
+        relationship.attributes = [:]
+        return relationship
+    }
+
+    def "GetRelationships - Batch resolution of endpoints"() {
+        // Only ResourceList of the mapped relationship types is implemented
+        TypeDefStore relationshipTypeDefStore = new TypeDefStore()
+        relationshipTypeDefStore.addTypeDef(relTableTypeDef)
+        RelationshipDef resourceListTypeDef = new RelationshipDef()
+        resourceListTypeDef.setGUID("73cf5658-6a73-40ab-8f11-2a1b3c8d9e0f")
+        resourceListTypeDef.setName("ResourceList")
+        relationshipTypeDefStore.addTypeDef(resourceListTypeDef)
+
+        SASCatalogObject entity = new SASCatalogObject()
+        entity.guid = "entity"
+        entity.addDefinitionProperty("name", "casTable")
+        List<SASCatalogObject> relationships = [
+                // Mapped, but to a type with no TypeDef
+                createRelationship("r1", "dataSetDataFields", "entity", "column"),
+                createRelationship("r2", "processAssets", "entity", "found"),
+                // Endpoint missing from Catalog, and from the relationship itself
+                createRelationship("r3", "processAssets", "entity", "missing"),
+                createRelationship("r4", "processAssets", "entity", null),
+                // Not mapped at all
+                createRelationship("r5", "unmappedType", "entity", "other")
+        ]
+        SASCatalogObject found = new SASCatalogObject()
+        found.guid = "found"
+        found.addDefinitionProperty("name", "casTable")
+        SASCatalogClient client = Mock()
+        RepositoryConnector connector = new RepositoryConnector(client)
+
+        when: "I map the ResourceList relationships of an entity"
+        new EntityMappingSASCatalog2OMRS(connector, relationshipTypeDefStore, null, entity, null, "steven")
+                .getRelationships(relationships, resourceListTypeDef.getGUID(), 0, null, null, 0)
+
+        then: "Only the endpoints of relationships that can be mapped are retrieved, in a single batch"
+        1 * client.getInstancesByGuids({ it as Set == ["found", "missing"] as Set }, "entity") >> [found: found]
+        0 * client.getInstancesByGuids(*_)
+
+        and: "Relationships that cannot be mapped are skipped rather than failing the rest"
+        noExceptionThrown()
+    }
 }
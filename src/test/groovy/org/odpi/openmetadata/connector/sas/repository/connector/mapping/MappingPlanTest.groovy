@@ -0,0 +1,56 @@
+package org.odpi.openmetadata.connector.sas.repository.connector.mapping
+
+import org.odpi.openmetadata.connector.sas.repository.connector.stores.TypeDefStore
+import org.odpi.openmetadata.repositoryservices.connectors.stores.metadatacollectionstore.properties.typedefs.EntityDef
+import org.odpi.openmetadata.repositoryservices.connectors.stores.metadatacollectionstore.properties.typedefs.PrimitiveDef
+import org.odpi.openmetadata.repositoryservices.connectors.stores.metadatacollectionstore.properties.typedefs.PrimitiveDefCategory
+import org.odpi.openmetadata.repositoryservices.connectors.stores.metadatacollectionstore.properties.typedefs.TypeDefAttribute
+import org.odpi.openmetadata.repositoryservices.connectors.stores.metadatacollectionstore.properties.typedefs.TypeDefCategory
+import spock.lang.Specification
+
+class MappingPlanTest extends Specification {
+
+    def createStringTypeDefAttr(String name) {
+        def attr = new TypeDefAttribute()
+        attr.attributeName = name
+        attr.attributeType = new PrimitiveDef(PrimitiveDefCategory.OM_PRIMITIVE_TYPE_STRING)
+        return attr
+    }
+
+    def "GetMappingPlan - CAS Table"() {
+        TypeDefStore typeDefStore = new TypeDefStore()
+        def relTableTypeDef = new EntityDef(TypeDefCategory.ENTITY_DEF, "ce7e72b8-396a-4013-8688-f9d973067425", "RelationalTable", 1L, "1")
+        // No "displayName" attribute, so instance.label cannot be mapped
+        relTableTypeDef.setPropertiesDefinition(["qualifiedName", "description", "nativeClass", "comment"].collect { createStringTypeDefAttr(it) })
+        typeDefStore.addTypeDef(relTableTypeDef)
+
+        when: "I get the mapping plan of a Catalog type"
+        MappingPlan plan = typeDefStore.getMappingPlan("casTable", null)
+        Map<String, MappingPlan.PropertyMapping> byTarget = plan.getPropertyMappings().collectEntries { [it.getTargetName(), it] }
+
+        then: "Each property mapping is compiled against the OMRS type"
+        plan.getOmrsTypeDefName() == "RelationalTable"
+        byTarget.keySet() == ["qualifiedName", "description", "comment", "nativeClass"] as Set
+        byTarget["qualifiedName"].getKind() == MappingPlan.Kind.ATTRIBUTE
+        byTarget["qualifiedName"].getTarget().getAttributeName() == "qualifiedName"
+        byTarget["comment"].getKind() == MappingPlan.Kind.CONSTANT
+        byTarget["comment"].getConstant() == "CAS Table"
+
+        and: "Its accessors read the Catalog properties"
+        SASCatalogObject instance = new SASCatalogObject()
+        instance.addInstanceProperty("name", "Catalog CAS Table")
+        byTarget["qualifiedName"].getValue(instance) == "Catalog CAS Table"
+
+        and: "The plan is kept for later entities of the type"
+        typeDefStore.getMappingPlan("casTable", null).is(plan)
+
+        when: "Another TypeDef is added"
+        typeDefStore.addTypeDef(new EntityDef(TypeDefCategory.ENTITY_DEF, "1321bcc0-dc6a-48ed-9ca6-0c6f934b0b98", "RelationalTableType", 1L, "1"))
+
+        then: "The plan is compiled again"
+        !typeDefStore.getMappingPlan("casTable", null).is(plan)
+
+        and: "Unmapped types have a plan with no OMRS type"
+        typeDefStore.getMappingPlan("unmappedType", null).getOmrsTypeDefName() == null
+    }
+}
@@ -0,0 +1,31 @@
+package org.odpi.openmetadata.connector.sas.repository.connector.mapping
+
+import spock.lang.Specification
+
+class RegexUtilsTest extends Specification {
+    def "OMRS search values are sent to Catalog as the cheapest equivalent filter"() {
+        expect:
+        String.valueOf(RegexUtils.toCatalogFilter("name", regex)) == filter
+
+        where:
+        regex                 | filter
+        "\\Qsales.csv\\E"     | 'eq(name,"sales.csv")'
+        "sales"               | 'eq(name,"sales")'
+        "sales\\.csv"         | 'eq(name,"sales.csv")'
+        "\\Qsales\\E.*"       | 'startsWith(name,"sales")'
+        ".*\\Q.csv\\E"        | 'endsWith(name,".csv")'
+        ".*\\Qsales\\E.*"     | 'contains(name,"sales")'
+        "^\\Qa.*b\\E\$"       | 'eq(name,"a.*b")'
+        ".*"                  | 'null'
+        "sales[0-9]+"         | 'contains(name,"sales[0-9]+")'
+        "\\d+"                | 'contains(name,"\\\\d+")'
+        "sales\\.*"           | 'contains(name,"sales\\\\.*")'
+    }
+
+    def "Patterns are compiled once"() {
+        expect:
+        RegexUtils.getPattern("a.*b").is(RegexUtils.getPattern("a.*b"))
+        RegexUtils.matches(".*\\Q.csv\\E", "sales.csv")
+        !RegexUtils.matches(".*\\Q.csv\\E", "sales.csv.bak")
+    }
+}
@@ -77,4 +77,26 @@ class SASCatalogObjectTest extends Specification {
         then: "getGuid() returns the correct guid"
         instance.getGuid() == "cfaae74d-5d49-40b6-8707-4a448e5323e9"
     }
+
+    def "GetProxyHeader"() {
+        SASCatalogObject instance
+
+        when: "I take the proxy header of a reference entity"
+        instance = new SASCatalogObject()
+        instance.guid = "cfaae74d-5d49-40b6-8707-4a448e5323e9"
+        instance.addInstanceProperty("name", "testName")
+        instance.addInstanceProperty("description", "testDescription")
+        instance.addInstanceProperty("version", 2)
+        instance.addDefinitionProperty("name", "reference")
+        instance.attributes = ["referencedType": "testRef", "other": "otherVal"]
+        SASCatalogObject header = instance.getProxyHeader()
+
+        then: "it keeps only what a proxy needs"
+        header.getGuid() == "cfaae74d-5d49-40b6-8707-4a448e5323e9"
+        header.getTypeName() == "reference.testRef"
+        header.get("instance.name") == "testName"
+        header.get("instance.version") == 2
+        header.get("instance.description") == null
+        header.getAttributes().keySet() == ["referencedType"] as Set
+    }
 }
@@ -0,0 +1,61 @@
+package org.odpi.openmetadata.connector.sas.repository.connector.mapping
+
+import org.odpi.openmetadata.repositoryservices.connectors.stores.metadatacollectionstore.properties.SequencingOrder
+import spock.lang.Specification
+
+class SequencingUtilsTest extends Specification {
+    def "MergeSorted"() {
+        when: "Sorted lists are merged"
+        List<Integer> merged = SequencingUtils.mergeSorted([[1, 4, 7], [2, 5], [], [3, 6, 8]], Comparator.naturalOrder(), 0)
+        then: "all results are returned in order"
+        merged == [1, 2, 3, 4, 5, 6, 7, 8]
+
+        when: "Only the first results are wanted"
+        merged = SequencingUtils.mergeSorted([[1, 4, 7], [2, 5], [3, 6, 8]], Comparator.naturalOrder(), 4)
+        then: "the merge stops early"
+        merged == [1, 2, 3, 4]
+
+        when: "There is no sequence"
+        merged = SequencingUtils.mergeSorted([[3, 1], [2]], null, 0)
+        then: "the lists are appended in order"
+        merged == [3, 1, 2]
+    }
+
+    def "MergeSortedKeepsListOrderForEqualResults"() {
+        when: "Results compare equal"
+        List<String> merged = SequencingUtils.mergeSorted([["b1", "c1"], ["a2", "b2"]], Comparator.comparing({ String s -> s.charAt(0) }), 0)
+        then: "those from earlier lists come first"
+        merged == ["a2", "b1", "b2", "c1"]
+    }
+
+    def "MergeSortedIteratorsOnlyReadsWhatIsNeeded"() {
+        List<Integer> read = []
+        Closure<Iterator<Integer>> cursor = { List<Integer> results ->
+            Iterator<Integer> iterator = results.iterator()
+            return [hasNext: { iterator.hasNext() }, next: { Integer next = iterator.next(); read.add(next); next }] as Iterator<Integer>
+        }
+
+        when: "The first 3 results of two sorted cursors are merged"
+        List<Integer> merged = SequencingUtils.mergeSortedIterators([cursor([1, 3, 5, 7]), cursor([2, 4, 6])], Comparator.naturalOrder(), 3)
+        then: "no cursor is read more than one result past the page"
+        merged == [1, 2, 3]
+        read.sort() == [1, 2, 3, 4]
+    }
+
+    def "GetCatalogSortBy"() {
+        expect:
+        SequencingUtils.getCatalogSortBy(order, property) == sortBy
+
+        where:
+        order                                | property              | sortBy
+        SequencingOrder.GUID                 | null                  | "id:ascending"
+        SequencingOrder.CREATION_DATE_RECENT | null                  | "creationTimeStamp:descending"
+        SequencingOrder.LAST_UPDATE_OLDEST   | null                  | "modifiedTimeStamp:ascending"
+        SequencingOrder.PROPERTY_ASCENDING   | "instance.name"       | "name:ascending"
+        SequencingOrder.PROPERTY_DESCENDING  | "instance.label"      | "label:descending"
+        SequencingOrder.PROPERTY_ASCENDING   | "attribute.creator"   | null
+        SequencingOrder.PROPERTY_ASCENDING   | null                  | null
+        SequencingOrder.ANY                  | null                  | null
+        null                                 | null                  | null
+    }
+}
@@ -0,0 +1,53 @@
+package org.odpi.openmetadata.connector.sas.repository.connector.stores
+
+import org.odpi.openmetadata.connector.sas.repository.connector.mapping.SASCatalogObject
+import spock.lang.Specification
+
+import java.util.function.LongSupplier
+
+class ProxyHeaderCacheTest extends Specification {
+    def "Headers expire after their time-to-live"() {
+        long now = 0
+        ProxyHeaderCache cache = new ProxyHeaderCache(10, 1000, { now } as LongSupplier)
+        SASCatalogObject entity = new SASCatalogObject()
+        entity.guid = "guid1"
+        entity.addInstanceProperty("name", "testName")
+        entity.addDefinitionProperty("name", "table")
+
+        when: "I cache an entity"
+        cache.put(entity)
+
+        then: "its header is returned"
+        cache.get("guid1").get("instance.name") == "testName"
+        cache.get("guid1").getTypeName() == "table"
+
+        when: "time moves past the TTL"
+        now = 1000
+
+        then: "the header is gone"
+        cache.get("guid1") == null
+        cache.size() == 0
+    }
+
+    def "Invalidate and eviction"() {
+        ProxyHeaderCache cache = new ProxyHeaderCache(2, 1000)
+
+        when: "I cache more entities than the cache holds"
+        ["guid1", "guid2", "guid3"].each {
+            SASCatalogObject entity = new SASCatalogObject()
+            entity.guid = it
+            cache.put(entity)
+        }
+
+        then: "the oldest is evicted"
+        cache.size() == 2
+        cache.get("guid1") == null
+
+        when: "I invalidate an entity"
+        cache.invalidate("guid2")
+
+        then: "it is removed"
+        cache.get("guid2") == null
+        cache.get("guid3") != null
+    }
+}
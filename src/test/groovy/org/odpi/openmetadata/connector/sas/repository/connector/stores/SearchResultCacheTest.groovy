@@ -0,0 +1,84 @@
+package org.odpi.openmetadata.connector.sas.repository.connector.stores
+
+import spock.lang.Specification
+
+import java.util.function.LongSupplier
+
+class SearchResultCacheTest extends Specification {
+    def "Results are invalidated by type"() {
+        SearchResultCache cache = new SearchResultCache(10, 1000)
+        long generation = cache.getGeneration()
+        cache.put("tables", ["table"], ["g1", "g2"], ["1@10", "1@20"], generation)
+        cache.put("columns", ["column"], ["g3"], ["1@30"], generation)
+        cache.put("everything", [SearchResultCache.ANY_TYPE], ["g1", "g3"], ["1@10", "1@30"], generation)
+
+        expect: "the results are cached, in order, with their versions"
+        cache.get("tables").getGuids() == ["g1", "g2"]
+        cache.get("tables").getVersions() == ["1@10", "1@20"]
+
+        when: "an event reports a table has changed"
+        cache.invalidateType("table")
+
+        then: "only the searches that could have found it are dropped"
+        cache.get("tables") == null
+        cache.get("everything") == null
+        cache.get("columns").getGuids() == ["g3"]
+        cache.getStats().getInvalidations() == 2
+
+        when: "the type of a changed entity is not known"
+        cache.invalidateType(null)
+
+        then: "every search is dropped"
+        cache.size() == 0
+    }
+
+    def "Results of a search overtaken by an event are not cached"() {
+        SearchResultCache cache = new SearchResultCache(10, 1000)
+
+        when: "an entity changes while a search is running"
+        long generation = cache.getGeneration()
+        cache.invalidateType("column")
+
+        then: "the search's results are not cached"
+        !cache.put("tables", ["table"], ["g1"], ["1@10"], generation)
+        cache.get("tables") == null
+
+        and: "a later search's are"
+        cache.put("tables", ["table"], ["g1"], ["1@10"], cache.getGeneration())
+        cache.get("tables") != null
+    }
+
+    def "Hit rate, evictions, expiry and staleness are counted"() {
+        long now = 0
+        SearchResultCache cache = new SearchResultCache(2, 1000, { now } as LongSupplier)
+
+        when: "more searches are cached than the cache holds, and looked up"
+        ["s1", "s2", "s3"].each { cache.put(it, ["table"], [], [], cache.getGeneration()) }
+        cache.get("s1")
+        cache.get("s2")
+        cache.get("s3")
+
+        then: "the least recently used is evicted"
+        cache.getStats().getEvictions() == 1
+        cache.getStats().getHits() == 2
+        cache.getStats().getMisses() == 1
+
+        when: "time moves past the TTL"
+        now = 1000
+        cache.get("s2")
+
+        then: "the entry has expired"
+        cache.getStats().getExpirations() == 1
+
+        when: "a hit turns out to be out of date"
+        now = 0
+        cache.put("s4", ["table"], ["g1"], ["1@10"], cache.getGeneration())
+        cache.get("s4")
+        cache.stale("s4")
+
+        then: "it is dropped and counted"
+        cache.get("s4") == null
+        cache.getStats().getStale() == 1
+        cache.getStats().getHitRate() == 3 / 6
+    }
+}
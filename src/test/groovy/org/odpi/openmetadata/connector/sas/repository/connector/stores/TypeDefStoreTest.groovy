@@ -0,0 +1,72 @@
+package org.odpi.openmetadata.connector.sas.repository.connector.stores
+
+import org.odpi.openmetadata.repositoryservices.connectors.stores.metadatacollectionstore.properties.typedefs.EntityDef
+import org.odpi.openmetadata.repositoryservices.connectors.stores.metadatacollectionstore.properties.typedefs.PrimitiveDef
+import org.odpi.openmetadata.repositoryservices.connectors.stores.metadatacollectionstore.properties.typedefs.PrimitiveDefCategory
+import org.odpi.openmetadata.repositoryservices.connectors.stores.metadatacollectionstore.properties.typedefs.TypeDefAttribute
+import org.odpi.openmetadata.repositoryservices.connectors.stores.metadatacollectionstore.properties.typedefs.TypeDefCategory
+import org.odpi.openmetadata.repositoryservices.connectors.stores.metadatacollectionstore.properties.typedefs.TypeDefLink
+import spock.lang.Specification
+
+class TypeDefStoreTest extends Specification {
+    def "GetAllCatalogTypeDefNamesMappedTo"() {
+        TypeDefStore typeDefStore = new TypeDefStore()
+
+        expect: "every Catalog type mapped to the OMRS type is found"
+        typeDefStore.getAllCatalogTypeDefNamesMappedTo("LineageMapping") == ["relatedObjects.Associated", "relatedObjects.Equivalent"] as Set
+        typeDefStore.getAllCatalogTypeDefNamesMappedTo("NotAType").isEmpty()
+
+        when: "the OMRS types are implemented"
+        typeDefStore.addTypeDef(createEntityDef("LineageMapping", null, []))
+        typeDefStore.addTypeDef(createEntityDef("UnmappedType", null, []))
+
+        then: "a mapped type is not also taken to be a Catalog type of its own name"
+        typeDefStore.getAllCatalogTypeDefNamesMappedTo("LineageMapping") == ["relatedObjects.Associated", "relatedObjects.Equivalent"] as Set
+        typeDefStore.getAllCatalogTypeDefNamesMappedTo("UnmappedType") == ["UnmappedType"] as Set
+    }
+
+    EntityDef createEntityDef(String name, EntityDef superType, List<String> attributeNames) {
+        EntityDef typeDef = new EntityDef(TypeDefCategory.ENTITY_DEF, UUID.randomUUID().toString(), name, 1L, "1")
+        if (superType != null) {
+            typeDef.setSuperType(new TypeDefLink(superType.getGUID(), superType.getName()))
+        }
+        typeDef.setPropertiesDefinition(attributeNames.collect {
+            TypeDefAttribute attribute = new TypeDefAttribute()
+            attribute.attributeName = it
+            attribute.attributeType = new PrimitiveDef(PrimitiveDefCategory.OM_PRIMITIVE_TYPE_STRING)
+            return attribute
+        })
+        return typeDef
+    }
+
+    def "GetAllTypeDefAttributesForName"() {
+        TypeDefStore typeDefStore = new TypeDefStore()
+        EntityDef root = createEntityDef("TestRoot", null, ["qualifiedName"])
+        EntityDef middle = createEntityDef("TestMiddle", root, ["middle"])
+        EntityDef leaf = createEntityDef("TestLeaf", middle, ["leaf"])
+
+        when: "A type is added before its supertypes"
+        typeDefStore.addTypeDef(leaf)
+
+        then: "Only its own attributes are known"
+        typeDefStore.getAllTypeDefAttributesForName("TestLeaf").keySet() == ["leaf"] as Set
+
+        when: "Its supertypes arrive"
+        typeDefStore.addUnimplementedTypeDef(root)
+        typeDefStore.addTypeDef(middle)
+        Map<String, TypeDefAttribute> attributes = typeDefStore.getAllTypeDefAttributesForName("TestLeaf")
+
+        then: "It inherits their attributes"
+        attributes.keySet() == ["leaf", "middle", "qualifiedName"] as Set
+        typeDefStore.getAllTypeDefAttributesForName("TestMiddle").keySet() == ["middle", "qualifiedName"] as Set
+
+        and: "The same unmodifiable map is returned each time"
+        typeDefStore.getAllTypeDefAttributesForName("TestLeaf").is(attributes)
+
+        when: "The map is modified"
+        attributes.put("other", null)
+
+        then: "It is refused"
+        thrown(UnsupportedOperationException)
+    }
+}